@@ -72,7 +72,27 @@ if ($LASTEXITCODE -ne 0) {
 }
 Write-Host "Compilation Successful." -ForegroundColor Green
 
-# 5. Deploy
+# 5. Precompress static assets
+# Writes a .gz copy next to each text asset; Tomcat serves it to clients that accept gzip
+Write-Host "Precompressing static assets..." -ForegroundColor Cyan
+Get-ChildItem -Path $webContent -Recurse -Include *.html, *.css, *.js, *.json, *.svg, *.txt |
+    Where-Object { $_.FullName -notlike "$webContent\WEB-INF\*" } |
+    ForEach-Object {
+        $gzPath = "$($_.FullName).gz"
+        if ((Test-Path $gzPath) -and (Get-Item $gzPath).LastWriteTime -ge $_.LastWriteTime) { return }
+        $in = [System.IO.File]::OpenRead($_.FullName)
+        try {
+            $out = [System.IO.File]::Create($gzPath)
+            try {
+                $gzip = New-Object System.IO.Compression.GZipStream($out, [System.IO.Compression.CompressionLevel]::Optimal)
+                try { $in.CopyTo($gzip) } finally { $gzip.Dispose() }
+            } finally { $out.Dispose() }
+        } finally { $in.Dispose() }
+        # A copy that does not pay for its decompression is left out
+        if ((Get-Item $gzPath).Length -ge $_.Length) { Remove-Item $gzPath }
+    }
+
+# 6. Deploy
 Write-Host "Deploying..." -ForegroundColor Cyan
 $deployPath = "$tomcatHome\webapps\ROOT"
 try {
@@ -85,7 +105,7 @@ catch {
 Copy-Item -Recurse -Force $webContent $deployPath
 Write-Host "Deployed to $deployPath" -ForegroundColor Green
 
-# 6. Start Tomcat
+# 7. Start Tomcat
 Write-Host "Starting Tomcat..." -ForegroundColor Cyan
 & "$tomcatHome\bin\startup.bat"
 
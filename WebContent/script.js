@@ -1,6 +1,6 @@
 // State
+// On the cars page this is the page of search results on screen
 let cars = [];
-let filteredCars = [];
 let bookings = [];
 let currentUser = JSON.parse(localStorage.getItem('currentUser')) || null;
 
@@ -24,6 +24,12 @@ function getImageUrl(carImage) {
     return carImage;
 }
 
+// Thumbnail candidates for grid cards, which are about 350-450px wide
+function srcsetAttrs(car) {
+    if (!car.srcset) return '';
+    return `srcset="${car.srcset}" sizes="(max-width: 768px) 100vw, 450px"`;
+}
+
 // Pagination state
 let currentPage = 1;
 let pageSize = parseInt(localStorage.getItem('pageSize') || '6', 10);
@@ -47,6 +53,8 @@ const navLinks = document.querySelector('.nav-links');
 const searchInput = document.getElementById('search-input');
 const priceFilter = document.getElementById('price-filter');
 const sortFilter = document.getElementById('sort-filter');
+const typeFilter = document.getElementById('type-filter');
+const pageSizeSelect = document.getElementById('page-size');
 
 // Initialize
 function init() {
@@ -148,44 +156,89 @@ function closeAddCarModal() {
     if (modal) modal.classList.remove('active');
 }
 
+// Search state: /api/cars/search filters, sorts and pages on the server
+let searchTotal = 0;
+let searchSeq = 0;
+let searchTimer = null;
+
 async function fetchCars() {
+    if (carListEl) carListEl.innerHTML = '<div class="loading">Loading cars...</div>';
+    currentPage = 1;
+    await searchCars();
+}
+
+async function searchCars() {
+    const params = new URLSearchParams();
+    if (searchInput && searchInput.value.trim()) params.set('q', searchInput.value.trim());
+    if (typeFilter && typeFilter.value !== 'all') params.set('type', typeFilter.value);
+    if (priceFilter && priceFilter.value !== 'all') params.set('price', priceFilter.value);
+    if (sortFilter) params.set('sort', sortFilter.value);
+    params.set('limit', pageSize);
+    params.set('offset', (currentPage - 1) * pageSize);
+
+    // Latest search wins; slower earlier responses are ignored
+    const seq = ++searchSeq;
     try {
-        if (carListEl) carListEl.innerHTML = '<div class="loading">Loading cars...</div>';
-        const response = await fetch('/api/cars');
+        const response = await fetch('/api/cars/search?' + params);
         if (!response.ok) throw new Error('Failed to load car data');
         const data = await response.json();
-        cars = Array.isArray(data) ? data : [];
-        filteredCars = [...cars];
-        currentPage = 1;
+        if (seq !== searchSeq) return;
+        cars = Array.isArray(data.cars) ? data.cars : [];
+        searchTotal = data.total || 0;
+        renderFacets(data.facets || {});
         renderCars();
     } catch (error) {
+        if (seq !== searchSeq) return;
         console.error('Error loading cars:', error);
         if (carListEl) carListEl.innerHTML = '<p class="empty-state">Error loading cars. Please try again later.</p>';
     }
 }
 
+// Bucket labels are base prices ("50-100", "500+"); show them as displayed prices
+function priceBucketLabel(bucket) {
+    const [low, high] = bucket.replace('+', '').split('-');
+    const format = value => '₹' + getDisplayedPrice(value).toLocaleString('en-IN');
+    return high ? `${format(low)} - ${format(high)}` : `${format(low)}+`;
+}
+
+// Refill the filter options with the counts for the current search, keeping the selection
+function renderFacets(facets) {
+    if (typeFilter && facets.type) {
+        const selected = typeFilter.value;
+        typeFilter.innerHTML = '<option value="all">All Types</option>' + Object.entries(facets.type)
+            .map(([type, count]) => `<option value="${escapeHtml(type)}">${escapeHtml(type)} (${count})</option>`).join('');
+        if (selected !== 'all' && !facets.type[selected]) {
+            typeFilter.insertAdjacentHTML('beforeend', `<option value="${escapeHtml(selected)}">${escapeHtml(selected)} (0)</option>`);
+        }
+        typeFilter.value = selected;
+    }
+    if (priceFilter && facets.price) {
+        const selected = priceFilter.value;
+        priceFilter.innerHTML = '<option value="all">All Prices</option>' + facets.price
+            .map(p => `<option value="${p.bucket}">${priceBucketLabel(p.bucket)} (${p.count})</option>`).join('');
+        priceFilter.value = facets.price.some(p => p.bucket === selected) ? selected : 'all';
+    }
+}
+
 function renderCars() {
     if (!carListEl) return;
-    if (filteredCars.length === 0) {
+    if (cars.length === 0) {
         carListEl.innerHTML = '<p class="empty-state">No cars found. Try adjusting your search or filters.</p>';
+        renderPagination(searchTotal, Math.max(1, Math.ceil(searchTotal / pageSize)));
         return;
     }
 
-    const total = filteredCars.length;
+    const total = searchTotal;
     const totalPages = Math.max(1, Math.ceil(total / pageSize));
-    if (currentPage > totalPages) currentPage = totalPages;
-    const start = (currentPage - 1) * pageSize;
-    const end = start + pageSize;
-    const pageItems = filteredCars.slice(start, end);
 
-    carListEl.innerHTML = pageItems.map(car => {
+    carListEl.innerHTML = cars.map(car => {
         const imageUrl = getImageUrl(car.image);
         const displayed = getDisplayedPrice(car.price);
         return `
             <div class="car-card">
                 <div class="car-image-container">
-                    <img src="${imageUrl}" alt="${car.name}" class="car-image" 
-                         onerror="this.src='images/default.jpg'; this.onerror=null;" 
+                    <img src="${imageUrl}" ${srcsetAttrs(car)} alt="${car.name}" class="car-image" 
+                         onerror="this.srcset=''; this.src='images/default.jpg'; this.onerror=null;" 
                          loading="lazy">
                     <div class="car-badge">${formatCurrency(displayed)}/day</div>
                 </div>
@@ -205,46 +258,28 @@ function renderCars() {
 }
 
 function setupSearchFilters() {
-    if (searchInput) searchInput.addEventListener('input', applyFilters);
+    if (searchInput) searchInput.addEventListener('input', () => {
+        // Search as the user types, once they pause
+        clearTimeout(searchTimer);
+        searchTimer = setTimeout(applyFilters, 200);
+    });
+    if (typeFilter) typeFilter.addEventListener('change', applyFilters);
     if (priceFilter) priceFilter.addEventListener('change', applyFilters);
     if (sortFilter) sortFilter.addEventListener('change', applyFilters);
-}
-
-function applyFilters() {
-    let filtered = [...cars];
-
-    if (searchInput && searchInput.value) {
-        const searchTerm = searchInput.value.toLowerCase();
-        filtered = filtered.filter(car =>
-            car.name.toLowerCase().includes(searchTerm) ||
-            (car.type && car.type.toLowerCase().includes(searchTerm))
-        );
-    }
-
-    if (priceFilter) {
-        const value = priceFilter.value;
-        filtered = filtered.filter(car => {
-            const price = getDisplayedPrice(car.price); // Filter based on displayed price
-            switch (value) {
-                case 'low': return price <= 2000; // Adjusted for INR
-                case 'medium': return price > 2000 && price <= 5000;
-                case 'high': return price > 5000;
-                default: return true;
-            }
+    if (pageSizeSelect) {
+        pageSizeSelect.value = String(pageSize);
+        pageSizeSelect.addEventListener('change', () => {
+            pageSize = parseInt(pageSizeSelect.value, 10);
+            localStorage.setItem('pageSize', pageSize);
+            applyFilters();
         });
     }
+}
 
-    if (sortFilter) {
-        switch (sortFilter.value) {
-            case 'name': filtered.sort((a, b) => a.name.localeCompare(b.name)); break;
-            case 'price-low': filtered.sort((a, b) => getDisplayedPrice(a.price) - getDisplayedPrice(b.price)); break;
-            case 'price-high': filtered.sort((a, b) => getDisplayedPrice(b.price) - getDisplayedPrice(a.price)); break;
-        }
-    }
-
-    filteredCars = filtered;
+function applyFilters() {
+    clearTimeout(searchTimer);
     currentPage = 1;
-    renderCars();
+    searchCars();
 }
 
 function renderPagination(totalItems, totalPages) {
@@ -279,7 +314,7 @@ function renderPagination(totalItems, totalPages) {
 
 function changePage(page) {
     currentPage = page;
-    renderCars();
+    searchCars();
 }
 
 async function fetchBookings() {
@@ -422,23 +457,41 @@ function closeModal() {
     if (modal) modal.classList.remove('active');
 }
 
-function updateTotal() {
-    if (!modalPrice || !pickupTimeInput || !dropoffTimeInput || !modalTotal) return;
-    const price = parseFloat(modalPrice.textContent.replace(/[^0-9.]/g, '')) || 0;
+// Latest quote request wins; slower earlier responses are ignored
+let quoteSeq = 0;
+
+async function updateTotal() {
+    if (!carIdInput || !pickupTimeInput || !dropoffTimeInput || !modalTotal) return;
+    const car = cars.find(c => c.id === parseInt(carIdInput.value));
     const pickup = new Date(pickupTimeInput.value);
     const dropoff = new Date(dropoffTimeInput.value);
-    if (isNaN(pickup.getTime()) || isNaN(dropoff.getTime())) {
+    if (!car || isNaN(pickup.getTime()) || isNaN(dropoff.getTime()) || dropoff <= pickup) {
         modalTotal.textContent = "0.00";
         return;
     }
-    const diffMs = dropoff - pickup;
-    const diffDays = Math.ceil(diffMs / (1000 * 60 * 60 * 24));
-    if (diffDays <= 0) {
+    const seq = ++quoteSeq;
+    const params = new URLSearchParams({
+        carId: car.id,
+        pickupDateTime: pickupTimeInput.value,
+        dropoffDateTime: dropoffTimeInput.value
+    });
+    try {
+        const response = await fetch('/api/quote?' + params.toString());
+        const data = await response.json();
+        if (seq !== quoteSeq) return;
+        if (!response.ok || !data.success) {
+            modalTotal.textContent = data.message || "0.00";
+            return;
+        }
+        // Quotes are in base-price units; scale them the same way as the listed daily price
+        const base = parseFloat(car.price) || 0;
+        const scale = base > 0 ? getDisplayedPrice(base) / base : 1;
+        modalTotal.textContent = formatCurrency(data.totalPrice * scale);
+    } catch (error) {
+        if (seq !== quoteSeq) return;
+        console.error('Error fetching quote:', error);
         modalTotal.textContent = "0.00";
-        return;
     }
-    const total = price * diffDays;
-    modalTotal.textContent = formatCurrency(total);
 }
 
 async function handleBooking(e) {
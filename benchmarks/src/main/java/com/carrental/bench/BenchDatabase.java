@@ -0,0 +1,96 @@
+package com.carrental.bench;
+
+import com.carrental.util.DBConnection;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+/**
+ * Fills the benchmark database. Benchmarks fork with {@link #JVM_ARGS_DB},
+ * which points DBConnection at a private in-memory H2 instance, so each fork
+ * gets its own freshly migrated and seeded schema.
+ */
+final class BenchDatabase {
+
+    static final String JVM_ARGS_DB = "-Dcarrental.db.url=jdbc:h2:mem:bench;DB_CLOSE_DELAY=-1";
+    static final String JVM_ARGS_HEAP = "-Xmx2g";
+
+    private BenchDatabase() {
+    }
+
+    static int count(String table) throws SQLException {
+        try (Connection conn = DBConnection.getConnection();
+                Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM " + table)) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    /** Tops the cars table up to {@code target} rows. */
+    static void ensureCars(int target) throws SQLException {
+        int existing = count("cars");
+        String sql = "INSERT INTO cars (name, price, image, features, type, registration_number) VALUES (?, ?, ?, ?, ?, ?)";
+        try (Connection conn = DBConnection.getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            conn.setAutoCommit(false);
+            for (int i = existing; i < target; i++) {
+                pstmt.setString(1, "Bench Car " + i);
+                pstmt.setDouble(2, 40 + (i % 60));
+                pstmt.setString(3, "images/default.jpg");
+                pstmt.setString(4, "GPS Navigation, Bluetooth, \"Sport\" Mode, Heated Seats");
+                pstmt.setString(5, i % 5 == 0 ? "BIKE" : "CAR");
+                pstmt.setString(6, "KA-" + (10 + i % 90) + "-" + i);
+                pstmt.addBatch();
+                if (i % 1000 == 999) {
+                    pstmt.executeBatch();
+                }
+            }
+            pstmt.executeBatch();
+            conn.commit();
+        }
+    }
+
+    /** Tops the bookings table up to {@code target} rows spread over the seeded users and cars. */
+    static void ensureBookings(int target) throws SQLException {
+        int existing = count("bookings");
+        int cars = count("cars");
+        String sql = "INSERT INTO bookings (user_id, car_id, start_date, end_date, pickup_datetime, dropoff_datetime, "
+                + "driving_license_path, total_price, status, payment_status, created_at) "
+                + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        String[] statuses = { "PENDING", "ACCEPTED", "CANCELLED", "REJECTED" };
+        String[] payments = { "UNPAID", "PAYMENT_REQUESTED", "PAID" };
+        LocalDateTime base = LocalDateTime.of(2020, 1, 1, 10, 0);
+        try (Connection conn = DBConnection.getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            conn.setAutoCommit(false);
+            for (int i = existing; i < target; i++) {
+                LocalDateTime pickup = base.plusHours(i * 3L);
+                LocalDateTime dropoff = pickup.plusDays(1 + i % 6);
+                pstmt.setInt(1, 1 + i % 2);
+                pstmt.setInt(2, 1 + i % cars);
+                pstmt.setDate(3, java.sql.Date.valueOf(pickup.toLocalDate()));
+                pstmt.setDate(4, java.sql.Date.valueOf(dropoff.toLocalDate()));
+                pstmt.setTimestamp(5, Timestamp.valueOf(pickup));
+                pstmt.setTimestamp(6, Timestamp.valueOf(dropoff));
+                pstmt.setString(7, "C:\\licenses\\dl_" + i + ".jpg");
+                pstmt.setDouble(8, 45.0 * (1 + i % 6));
+                pstmt.setString(9, statuses[i % statuses.length]);
+                pstmt.setString(10, payments[i % payments.length]);
+                pstmt.setTimestamp(11, Timestamp.valueOf(pickup.minusDays(7)));
+                pstmt.addBatch();
+                if (i % 5000 == 4999) {
+                    pstmt.executeBatch();
+                    conn.commit();
+                }
+            }
+            pstmt.executeBatch();
+            conn.commit();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.carrental.bench;
+
+import com.carrental.dao.BookingDAO;
+import com.carrental.dao.BookingPage;
+import com.carrental.dao.BookingQuery;
+import com.carrental.model.Booking;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Booking listings at growing table sizes: the unpaged admin listing
+ * (getAllBookings) and the first and a deep keyset page of the paged one.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgsAppend = { BenchDatabase.JVM_ARGS_DB, BenchDatabase.JVM_ARGS_HEAP })
+public class BookingDaoBenchmark {
+
+    @Param({ "10000", "100000", "1000000" })
+    public int rows;
+
+    private final BookingDAO bookingDAO = new BookingDAO();
+    private String deepCursor;
+
+    @Setup
+    public void setUp() throws SQLException {
+        BenchDatabase.ensureBookings(rows);
+
+        // Cursor roughly 90% of the way through the history
+        BookingQuery query = new BookingQuery();
+        query.setLimit(BookingQuery.MAX_LIMIT);
+        int pages = (int) (rows * 0.9) / BookingQuery.MAX_LIMIT;
+        String cursor = null;
+        for (int i = 0; i < pages; i++) {
+            query.setCursor(cursor);
+            cursor = bookingDAO.findBookings(query).getNextCursor();
+        }
+        deepCursor = cursor;
+    }
+
+    @Benchmark
+    public List<Booking> getAllBookings() {
+        return bookingDAO.getAllBookings();
+    }
+
+    @Benchmark
+    public BookingPage firstPage() throws SQLException {
+        BookingQuery query = new BookingQuery();
+        query.setLimit(BookingQuery.DEFAULT_LIMIT);
+        return bookingDAO.findBookings(query);
+    }
+
+    @Benchmark
+    public BookingPage deepPage() throws SQLException {
+        BookingQuery query = new BookingQuery();
+        query.setLimit(BookingQuery.DEFAULT_LIMIT);
+        query.setCursor(deepCursor);
+        return bookingDAO.findBookings(query);
+    }
+}
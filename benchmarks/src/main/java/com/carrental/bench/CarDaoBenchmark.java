@@ -0,0 +1,89 @@
+package com.carrental.bench;
+
+import com.carrental.dao.CarCatalogCache;
+import com.carrental.dao.CarDAO;
+import com.carrental.dao.CarPage;
+import com.carrental.dao.CarQuery;
+import com.carrental.model.Car;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CarDAO.getAllCars straight from H2, against the cached catalog that GET
+ * /api/cars serves, and the filtered keyset listing at its first page and
+ * halfway through the fleet.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { BenchDatabase.JVM_ARGS_DB, BenchDatabase.JVM_ARGS_HEAP })
+public class CarDaoBenchmark {
+
+    @Param({ "10000", "100000", "1000000" })
+    public int cars;
+
+    private final CarDAO carDAO = new CarDAO();
+    private String middleCursor;
+
+    @Setup
+    public void setUp() throws SQLException {
+        BenchDatabase.ensureCars(cars);
+        // Page through to about half of the cars
+        CarQuery query = listingQuery();
+        query.setLimit(CarQuery.MAX_LIMIT);
+        int seen = 0;
+        CarPage page;
+        do {
+            page = carDAO.findCars(query);
+            seen += page.getItems().size();
+            middleCursor = page.getNextCursor();
+            query.setCursor(middleCursor);
+        } while (seen < cars / 2 && middleCursor != null);
+    }
+
+    @Benchmark
+    public List<Car> getAllCars() {
+        return carDAO.getAllCars();
+    }
+
+    @Benchmark
+    public byte[] cachedCatalog() throws SQLException {
+        return CarCatalogCache.get().getJson();
+    }
+
+    @Benchmark
+    public CarPage listingFirstPage() throws SQLException {
+        return carDAO.findCars(listingQuery());
+    }
+
+    @Benchmark
+    public CarPage listingMiddlePage() throws SQLException {
+        CarQuery query = listingQuery();
+        query.setCursor(middleCursor);
+        return carDAO.findCars(query);
+    }
+
+    // Cars by price, the shape of the cars page with a type filter
+    private static CarQuery listingQuery() {
+        CarQuery query = new CarQuery();
+        query.setType("CAR");
+        query.setSort(CarQuery.Sort.PRICE_ASC);
+        return query;
+    }
+}
@@ -0,0 +1,98 @@
+package com.carrental.bench;
+
+import com.carrental.model.Car;
+import com.carrental.search.CarSearchIndex;
+import com.carrental.search.CarSearchQuery;
+import com.carrental.search.CarSearchResult;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CarSearchIndex queries over a synthetic fleet: a rare word, a common word,
+ * a two-word query ending in a prefix, and facet filters with no text.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = BenchDatabase.JVM_ARGS_HEAP)
+public class CarSearchBenchmark {
+
+    private static final String[] MAKES = { "Toyota", "Honda", "Ford", "Tesla", "BMW", "Audi", "Kia", "Hyundai",
+            "Mahindra", "Tata", "Suzuki", "Volvo", "Jaguar", "Nissan", "Royal Enfield", "Bajaj" };
+    private static final String[] MODELS = { "Sedan", "Hatchback", "SUV", "Coupe", "Estate", "Classic", "Sport",
+            "Cruiser", "Pulsar", "Nexon", "Creta", "Swift" };
+    private static final String[] FEATURES = { "GPS Navigation", "Bluetooth", "Heated Seats", "Sunroof",
+            "Backup Camera", "Apple CarPlay", "Android Auto", "Leather Interior", "Cruise Control",
+            "Keyless Entry", "Wireless Charging", "Premium Sound", "All-Wheel Drive", "Sport Mode",
+            "LED Headlights", "Remote Start", "Lane Assist", "Ventilated Seats", "Panoramic Roof", "Disc Brakes" };
+
+    @Param({ "1000", "100000" })
+    public int cars;
+
+    private CarSearchIndex index;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        List<Car> fleet = new ArrayList<>(cars);
+        for (int i = 1; i <= cars; i++) {
+            StringBuilder features = new StringBuilder();
+            for (int f = 0; f < 5; f++) {
+                features.append(f > 0 ? ", " : "").append(FEATURES[random.nextInt(FEATURES.length)]);
+            }
+            String name = MAKES[random.nextInt(MAKES.length)] + " " + MODELS[random.nextInt(MODELS.length)] + " " + i;
+            fleet.add(new Car(i, name, 20 + random.nextInt(600), "images/default.jpg", features.toString(),
+                    i % 5 == 0 ? "BIKE" : "CAR", "KA-" + i));
+        }
+        index = new CarSearchIndex();
+        index.rebuild(fleet);
+    }
+
+    @Benchmark
+    public CarSearchResult rareWord() throws SQLException {
+        return index.search(query("tesla coupe", CarSearchQuery.Sort.RELEVANCE));
+    }
+
+    @Benchmark
+    public CarSearchResult commonWord() throws SQLException {
+        return index.search(query("bluetooth", CarSearchQuery.Sort.PRICE_ASC));
+    }
+
+    @Benchmark
+    public CarSearchResult prefix() throws SQLException {
+        return index.search(query("heated s", CarSearchQuery.Sort.RELEVANCE));
+    }
+
+    @Benchmark
+    public CarSearchResult facetsOnly() throws SQLException {
+        CarSearchQuery query = query(null, CarSearchQuery.Sort.NAME);
+        query.addType("CAR");
+        query.addPriceBucket(1);
+        return index.search(query);
+    }
+
+    private static CarSearchQuery query(String text, CarSearchQuery.Sort sort) {
+        CarSearchQuery query = new CarSearchQuery();
+        query.setText(text);
+        query.setSort(sort);
+        return query;
+    }
+}
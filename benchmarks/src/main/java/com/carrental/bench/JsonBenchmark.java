@@ -0,0 +1,99 @@
+package com.carrental.bench;
+
+import com.carrental.dao.CarCatalogCache;
+import com.carrental.model.Booking;
+import com.carrental.model.Car;
+import com.carrental.servlet.BookingServlet;
+import com.carrental.util.json.JsonBody;
+import com.carrental.util.json.JsonWriter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.Writer;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** Request body parsing and response serialization as done by the servlets. No database involved. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonBenchmark {
+
+    private static final String BOOKING_BODY = "{\"carId\":\"3\", \"pickupDateTime\":\"2025-06-14T10:00\", "
+            + "\"dropoffDateTime\":\"2025-06-18T18:00\", \"driverDob\":\"1990-04-02\", "
+            + "\"licensePath\":\"C:\\\\uploads\\\\dl \\\"front\\\".jpg\", \"totalPrice\":\"231.25\"}";
+    private static final String CAR_BODY = "{\"name\":\"Toyota Camry\", \"price\":45.0, \"image\":\"images/camry.jpg\", "
+            + "\"features\":\"GPS Navigation, Bluetooth, Automatic Transmission\", \"type\":\"CAR\", "
+            + "\"registrationNumber\":\"KA-01-1234\"}";
+
+    @Param({ "100", "10000" })
+    public int rows;
+
+    private List<Car> cars;
+    private List<Booking> bookings;
+    private final Writer sink = Writer.nullWriter();
+
+    @Setup
+    public void setUp() {
+        cars = new ArrayList<>(rows);
+        bookings = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            cars.add(new Car(i, "Car \"" + i + "\"", 40.0 + i % 60, "images/car_" + i + ".jpg",
+                    "GPS Navigation, Bluetooth, Heated Seats", "CAR", "KA-" + i));
+            Booking b = new Booking(i, 1 + i % 2, 1 + i % 11, Date.valueOf("2025-06-14"), Date.valueOf("2025-06-18"),
+                    Timestamp.valueOf("2025-06-14 10:00:00"), Timestamp.valueOf("2025-06-18 18:00:00"),
+                    231.25 + i, "PENDING", "C:\\uploads\\dl_" + i + ".jpg", Timestamp.valueOf("2025-06-01 09:00:00"));
+            b.setCarName("Toyota Camry");
+            b.setCustomerName("User " + i);
+            bookings.add(b);
+        }
+    }
+
+    @Benchmark
+    public JsonBody parseBookingRequest() throws IOException {
+        return JsonBody.parse(new StringReader(BOOKING_BODY), JsonBody.DEFAULT_MAX_CHARS);
+    }
+
+    @Benchmark
+    public JsonBody parseCarRequest() throws IOException {
+        return JsonBody.parse(new StringReader(CAR_BODY), JsonBody.DEFAULT_MAX_CHARS);
+    }
+
+    @Benchmark
+    public void writeCars() throws IOException {
+        JsonWriter json = new JsonWriter(sink);
+        json.beginArray();
+        for (Car c : cars) {
+            CarCatalogCache.writeCar(json, c);
+        }
+        json.endArray();
+    }
+
+    @Benchmark
+    public void writeBookings() throws IOException {
+        JsonWriter json = new JsonWriter(sink);
+        json.beginArray();
+        for (Booking b : bookings) {
+            BookingServlet.writeBooking(json, b, true);
+        }
+        json.endArray();
+    }
+}
@@ -0,0 +1,68 @@
+package com.carrental.bench;
+
+import com.carrental.model.Car;
+import com.carrental.pricing.PricingEngine;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rental price computation by rental length: the closed-form PricingEngine
+ * against the day-by-day loop it replaced in BookingServlet.doPost.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PricingBenchmark {
+
+    @Param({ "1", "7", "30", "365" })
+    public int days;
+
+    private LocalDateTime pickup;
+    private LocalDateTime dropoff;
+    private Car car;
+    private PricingEngine engine;
+
+    @Setup
+    public void setUp() {
+        pickup = LocalDateTime.of(2025, 6, 13, 10, 0);
+        dropoff = pickup.plusDays(days);
+        car = new Car(1, "Bench Car", 45.0, "", "");
+        engine = PricingEngine.getDefault();
+    }
+
+    @Benchmark
+    public double engineQuote() {
+        return engine.quote(car, pickup, dropoff).getTotal();
+    }
+
+    @Benchmark
+    public double weekendLoop() {
+        long total = PricingEngine.billedDays(pickup, dropoff);
+        double sum = 0.0;
+        LocalDate cursor = pickup.toLocalDate();
+        for (int i = 0; i < total; i++) {
+            DayOfWeek dow = cursor.getDayOfWeek();
+            sum += dow == DayOfWeek.SATURDAY || dow == DayOfWeek.SUNDAY ? 45.0 * 1.25 : 45.0;
+            cursor = cursor.plusDays(1);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,68 @@
+package com.carrental.bench;
+
+import com.carrental.util.RateLimiter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one RateLimiter check: a single busy key, a working set of
+ * 10000 keys, and a flood of distinct keys ten times larger than the map.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = BenchDatabase.JVM_ARGS_HEAP)
+public class RateLimiterBenchmark {
+
+    private static final int MAX_KEYS = 100_000;
+
+    private RateLimiter limiter;
+    private String[] workingSet;
+    private String[] flood;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        limiter = new RateLimiter(20, 30, MAX_KEYS);
+        workingSet = keys(10_000);
+        flood = keys(MAX_KEYS * 10);
+    }
+
+    @Benchmark
+    public long hotKey() {
+        return limiter.tryAcquire("ip:10.0.0.1");
+    }
+
+    @Benchmark
+    public long workingSet() {
+        next = next + 1 < workingSet.length ? next + 1 : 0;
+        return limiter.tryAcquire(workingSet[next]);
+    }
+
+    @Benchmark
+    public long distinctKeyFlood() {
+        next = next + 1 < flood.length ? next + 1 : 0;
+        return limiter.tryAcquire(flood[next]);
+    }
+
+    private static String[] keys(int count) {
+        String[] keys = new String[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = "ip:10." + (i >>> 16) + "." + ((i >>> 8) & 0xff) + "." + (i & 0xff);
+        }
+        return keys;
+    }
+}
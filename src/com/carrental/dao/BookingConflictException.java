@@ -0,0 +1,17 @@
+package com.carrental.dao;
+
+import java.sql.SQLException;
+
+/** Thrown by {@link BookingDAO#createBooking} when the car is already booked for an overlapping period. */
+public class BookingConflictException extends SQLException {
+    private final int conflictingBookingId;
+
+    public BookingConflictException(int carId, int conflictingBookingId) {
+        super("Car " + carId + " is already booked for an overlapping period (booking " + conflictingBookingId + ")");
+        this.conflictingBookingId = conflictingBookingId;
+    }
+
+    public int getConflictingBookingId() {
+        return conflictingBookingId;
+    }
+}
@@ -2,17 +2,139 @@ package com.carrental.dao;
 
 import com.carrental.model.Booking;
 import com.carrental.util.DBConnection;
+import com.carrental.util.log.Log;
+import com.carrental.util.log.Logger;
 
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class BookingDAO {
+    private static final Logger log = Log.get(BookingDAO.class);
 
+    // Shared by all DAO instances: active booking periods per car
+    private static final BookingIntervalIndex intervalIndex = new BookingIntervalIndex();
+    private static volatile boolean intervalIndexLoaded;
+    // Status changes and deletes committed while a load runs, replayed when it
+    // finishes; null outside a load. Both fields are guarded by pendingLock.
+    private static final Object pendingLock = new Object();
+    private static List<IndexChange> pendingChanges;
+
+    /** A committed change the interval index has yet to apply. */
+    private static final class IndexChange {
+        final Booking booking;
+        final boolean deleted;
+
+        IndexChange(Booking booking, boolean deleted) {
+            this.booking = booking;
+            this.deleted = deleted;
+        }
+    }
+
+    /**
+     * Loads the booking interval index; called once at startup, and lazily by the
+     * first booking. Bookings changed while it runs are queued and applied once
+     * the load is done, since its SELECT may already have read their old rows.
+     */
+    public static void loadIntervalIndex() throws SQLException {
+        synchronized (intervalIndex) {
+            if (intervalIndexLoaded) {
+                return;
+            }
+            synchronized (pendingLock) {
+                pendingChanges = new ArrayList<>();
+            }
+            try {
+                loadIntervals();
+                synchronized (pendingLock) {
+                    for (IndexChange change : pendingChanges) {
+                        applyToIndex(change.booking, change.deleted);
+                    }
+                    if (!pendingChanges.isEmpty()) {
+                        log.info("Applied booking changes made during the index load", "count", pendingChanges.size());
+                    }
+                    intervalIndexLoaded = true;
+                }
+            } finally {
+                synchronized (pendingLock) {
+                    pendingChanges = null;
+                }
+            }
+            log.info("Indexed active bookings", "count", intervalIndex.size());
+        }
+    }
+
+    private static void loadIntervals() throws SQLException {
+        String sql = "SELECT id, car_id, start_date, end_date, pickup_datetime, dropoff_datetime, status FROM bookings";
+        try (Connection conn = DBConnection.getConnection();
+                Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery(sql)) {
+            intervalIndex.clear();
+            while (rs.next()) {
+                if (!BookingIntervalIndex.occupiesCar(rs.getString("status"))) {
+                    continue;
+                }
+                Booking booking = new Booking();
+                booking.setStartDate(rs.getDate("start_date"));
+                booking.setEndDate(rs.getDate("end_date"));
+                booking.setPickupDatetime(rs.getTimestamp("pickup_datetime"));
+                booking.setDropoffDatetime(rs.getTimestamp("dropoff_datetime"));
+                long[] period = BookingIntervalIndex.periodOf(booking);
+                int carId = rs.getInt("car_id");
+                int id = rs.getInt("id");
+                int overlaps;
+                intervalIndex.lockFor(carId).lock();
+                try {
+                    overlaps = intervalIndex.add(id, carId, period[0], period[1]);
+                } finally {
+                    intervalIndex.lockFor(carId).unlock();
+                }
+                if (overlaps >= 0) {
+                    log.warn("Active bookings overlap", "id", id, "overlaps", overlaps, "carId", carId);
+                }
+            }
+        }
+    }
+
+    /**
+     * Inserts the booking unless the car already has an active booking overlapping
+     * its period, in which case a {@link BookingConflictException} is thrown. The
+     * check and insert run under the car's lock, so concurrent requests for the
+     * same car are serialized while other cars proceed in parallel. The row and
+     * its {@link BookingStats} update commit together. Sets the generated id on
+     * the booking.
+     */
     public void createBooking(Booking booking) throws SQLException {
+        if (!intervalIndexLoaded) {
+            loadIntervalIndex();
+        }
+        int carId = booking.getCarId();
+        long[] period = BookingIntervalIndex.periodOf(booking);
+        boolean occupies = BookingIntervalIndex.occupiesCar(booking.getStatus());
+
+        ReentrantLock lock = intervalIndex.lockFor(carId);
+        lock.lock();
+        try {
+            if (occupies) {
+                int conflict = intervalIndex.findConflict(carId, period[0], period[1]);
+                if (conflict != -1) {
+                    throw new BookingConflictException(carId, conflict);
+                }
+            }
+            insertBooking(booking);
+            if (occupies) {
+                intervalIndex.add(booking.getId(), carId, period[0], period[1]);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void insertBooking(Booking booking) throws SQLException {
         String sql = "INSERT INTO bookings (user_id, car_id, start_date, end_date, pickup_datetime, dropoff_datetime, driving_license_path, total_price, status, payment_status) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
         try (Connection conn = DBConnection.getConnection();
-                PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
 
             pstmt.setInt(1, booking.getUserId());
             pstmt.setInt(2, booking.getCarId());
@@ -25,115 +147,292 @@ public class BookingDAO {
             pstmt.setString(9, booking.getStatus());
             pstmt.setString(10, booking.getPaymentStatus() != null ? booking.getPaymentStatus() : "UNPAID");
 
+            conn.setAutoCommit(false);
             pstmt.executeUpdate();
+            try (ResultSet keys = pstmt.getGeneratedKeys()) {
+                if (keys.next()) {
+                    booking.setId(keys.getInt(1));
+                }
+            }
+            BookingStats.commit(conn, new BookingStats.Delta().add(booking));
         }
     }
 
-    public List<Booking> getBookingsByUserId(int userId) {
-        List<Booking> bookings = new ArrayList<>();
-        String sql = "SELECT * FROM bookings WHERE user_id = ? ORDER BY created_at DESC";
+    public Booking getBookingById(int bookingId) {
+        String sql = "SELECT * FROM bookings WHERE id = ?";
         try (Connection conn = DBConnection.getConnection();
                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
-            pstmt.setInt(1, userId);
-            ResultSet rs = pstmt.executeQuery();
-
-            while (rs.next()) {
-                Booking booking = new Booking(
-                        rs.getInt("id"),
-                        rs.getInt("user_id"),
-                        rs.getInt("car_id"),
-                        rs.getDate("start_date"),
-                        rs.getDate("end_date"),
-                        rs.getTimestamp("pickup_datetime"),
-                        rs.getTimestamp("dropoff_datetime"),
-                        rs.getDouble("total_price"),
-                        rs.getString("status"),
-                        rs.getString("driving_license_path"),
-                        rs.getTimestamp("created_at"));
-                booking.setPaymentStatus(
-                        rs.getString("payment_status") != null ? rs.getString("payment_status") : "UNPAID");
-                bookings.add(booking);
+            pstmt.setInt(1, bookingId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    return mapRow(rs);
+                }
             }
         } catch (SQLException e) {
-            e.printStackTrace();
+            log.error("Failed to load booking", e, "bookingId", bookingId);
+        }
+        return null;
+    }
+
+    // Listing projection: bookings joined with the car name (and customer name)
+    // so callers don't need a follow-up lookup per row
+    private static final String LISTING_SELECT = "SELECT b.*, c.name AS car_name, u.name AS customer_name "
+            + "FROM bookings b LEFT JOIN cars c ON c.id = b.car_id LEFT JOIN users u ON u.id = b.user_id ";
+
+    public List<Booking> getBookingsByUserId(int userId) {
+        BookingQuery query = new BookingQuery();
+        query.setUserId(userId);
+        try {
+            return findBookings(query).getItems();
+        } catch (SQLException e) {
+            log.error("Failed to list bookings", e, "userId", userId);
+            return new ArrayList<>();
         }
-        return bookings;
     }
 
     public List<Booking> getAllBookings() {
+        try {
+            return findBookings(new BookingQuery()).getItems();
+        } catch (SQLException e) {
+            log.error("Failed to list bookings", e);
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Filtered listing, newest first by (created_at, id). When the query has a
+     * limit, one extra row is fetched to decide whether a next cursor exists;
+     * the cursor predicate and ordering match the (…, created_at, id) indexes so
+     * each page is a bounded range scan.
+     */
+    public BookingPage findBookings(BookingQuery query) throws SQLException {
+        StringBuilder sql = new StringBuilder(LISTING_SELECT).append("WHERE 1 = 1");
+        List<Object> params = new ArrayList<>();
+        if (query.getUserId() != null) {
+            sql.append(" AND b.user_id = ?");
+            params.add(query.getUserId());
+        }
+        if (!query.getStatuses().isEmpty()) {
+            sql.append(" AND b.status IN (");
+            for (int i = 0; i < query.getStatuses().size(); i++) {
+                sql.append(i == 0 ? "?" : ", ?");
+                params.add(query.getStatuses().get(i));
+            }
+            sql.append(")");
+        }
+        if (query.getPaymentStatus() != null) {
+            sql.append(" AND b.payment_status = ?");
+            params.add(query.getPaymentStatus());
+        }
+        if (query.getCarId() != null) {
+            sql.append(" AND b.car_id = ?");
+            params.add(query.getCarId());
+        }
+        if (query.getFrom() != null) {
+            sql.append(" AND b.end_date >= ?");
+            params.add(query.getFrom());
+        }
+        if (query.getTo() != null) {
+            sql.append(" AND b.start_date <= ?");
+            params.add(query.getTo());
+        }
+        if (query.getAfterCreatedAt() != null) {
+            sql.append(" AND (b.created_at < ? OR (b.created_at = ? AND b.id < ?))");
+            params.add(query.getAfterCreatedAt());
+            params.add(query.getAfterCreatedAt());
+            params.add(query.getAfterId());
+        }
+        sql.append(" ORDER BY b.created_at DESC, b.id DESC");
+        if (query.isPaged()) {
+            sql.append(" LIMIT ?");
+            params.add(query.getLimit() + 1);
+        }
+
         List<Booking> bookings = new ArrayList<>();
-        String sql = "SELECT * FROM bookings ORDER BY created_at DESC";
         try (Connection conn = DBConnection.getConnection();
-                Statement stmt = conn.createStatement();
-                ResultSet rs = stmt.executeQuery(sql)) {
-
-            while (rs.next()) {
-                Booking booking = new Booking(
-                        rs.getInt("id"),
-                        rs.getInt("user_id"),
-                        rs.getInt("car_id"),
-                        rs.getDate("start_date"),
-                        rs.getDate("end_date"),
-                        rs.getTimestamp("pickup_datetime"),
-                        rs.getTimestamp("dropoff_datetime"),
-                        rs.getDouble("total_price"),
-                        rs.getString("status"),
-                        rs.getString("driving_license_path"),
-                        rs.getTimestamp("created_at"));
-                booking.setPaymentStatus(
-                        rs.getString("payment_status") != null ? rs.getString("payment_status") : "UNPAID");
-                bookings.add(booking);
+                PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+            for (int i = 0; i < params.size(); i++) {
+                pstmt.setObject(i + 1, params.get(i));
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    bookings.add(mapListingRow(rs));
+                }
+            }
+        }
+
+        String nextCursor = null;
+        if (query.isPaged() && bookings.size() > query.getLimit()) {
+            bookings.remove(bookings.size() - 1);
+            Booking last = bookings.get(bookings.size() - 1);
+            nextCursor = BookingQuery.encodeCursor(last.getCreatedAt(), last.getId());
         }
-        return bookings;
+        return new BookingPage(bookings, nextCursor);
     }
 
-    public boolean updatePaymentStatus(int bookingId, String paymentStatus) {
-        String sql = "UPDATE bookings SET payment_status = ? WHERE id = ?";
-        try (Connection conn = DBConnection.getConnection();
-                PreparedStatement pstmt = conn.prepareStatement(sql)) {
+    private Booking mapRow(ResultSet rs) throws SQLException {
+        Booking booking = new Booking(
+                rs.getInt("id"),
+                rs.getInt("user_id"),
+                rs.getInt("car_id"),
+                rs.getDate("start_date"),
+                rs.getDate("end_date"),
+                rs.getTimestamp("pickup_datetime"),
+                rs.getTimestamp("dropoff_datetime"),
+                rs.getDouble("total_price"),
+                rs.getString("status"),
+                rs.getString("driving_license_path"),
+                rs.getTimestamp("created_at"));
+        String paymentStatus = rs.getString("payment_status");
+        booking.setPaymentStatus(paymentStatus != null ? paymentStatus : "UNPAID");
+        booking.setVersion(rs.getInt("version"));
+        return booking;
+    }
 
-            pstmt.setString(1, paymentStatus);
-            pstmt.setInt(2, bookingId);
+    private Booking mapListingRow(ResultSet rs) throws SQLException {
+        Booking booking = mapRow(rs);
+        booking.setCarName(rs.getString("car_name"));
+        booking.setCustomerName(rs.getString("customer_name"));
+        return booking;
+    }
 
-            int rowsAffected = pstmt.executeUpdate();
-            return rowsAffected > 0;
-        } catch (SQLException e) {
-            e.printStackTrace();
-            return false;
+    // A conditional write that lost to a concurrent change which still allows
+    // the transition (e.g. the other field) is retried from a fresh read
+    private static final int MAX_TRANSITION_ATTEMPTS = 5;
+
+    /**
+     * Applies a status or payment transition without locking the row: reads
+     * the booking, checks the transition, then updates it only while its
+     * status, payment status and version are still the ones read. The stats
+     * delta commits in the same transaction, so it stays exact. Of two
+     * concurrent transitions from the same state one applies and the other
+     * gets a conflict carrying the booking's new state.
+     */
+    public TransitionResult transition(int bookingId, BookingTransition transition) throws SQLException {
+        String sql = "UPDATE bookings SET " + (transition.isPayment() ? "payment_status" : "status")
+                + " = ?, version = version + 1 WHERE id = ? AND status = ? AND payment_status = ? AND version = ?";
+        try (Connection conn = DBConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            Booking booking = null;
+            for (int attempt = 0; attempt < MAX_TRANSITION_ATTEMPTS; attempt++) {
+                booking = readBooking(conn, bookingId);
+                if (booking == null) {
+                    return new TransitionResult(TransitionResult.Outcome.NOT_FOUND, null);
+                }
+                if (!transition.allows(booking)) {
+                    return new TransitionResult(TransitionResult.Outcome.CONFLICT, booking);
+                }
+                BookingStats.Delta delta = new BookingStats.Delta().remove(booking);
+                int updated;
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    pstmt.setString(1, transition.getTarget());
+                    pstmt.setInt(2, bookingId);
+                    pstmt.setString(3, booking.getStatus());
+                    pstmt.setString(4, booking.getPaymentStatus());
+                    pstmt.setInt(5, booking.getVersion());
+                    updated = pstmt.executeUpdate();
+                }
+                if (updated == 1) {
+                    transition.apply(booking);
+                    booking.setVersion(booking.getVersion() + 1);
+                    BookingStats.commit(conn, delta.add(booking));
+                    if (!transition.isPayment()) {
+                        syncIntervalIndex(booking, false);
+                    }
+                    return new TransitionResult(TransitionResult.Outcome.APPLIED, booking);
+                }
+                conn.rollback();
+            }
+            return new TransitionResult(TransitionResult.Outcome.CONFLICT, booking);
         }
     }
 
-    public boolean updateStatus(int bookingId, String status) {
-        String sql = "UPDATE bookings SET status = ? WHERE id = ?";
-        try (Connection conn = DBConnection.getConnection();
-                PreparedStatement pstmt = conn.prepareStatement(sql)) {
+    // Plain read: concurrent writers are caught by the version check instead of a row lock
+    private Booking readBooking(Connection conn, int bookingId) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT * FROM bookings WHERE id = ?")) {
+            pstmt.setInt(1, bookingId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? mapRow(rs) : null;
+            }
+        }
+    }
+    // Keeps the interval index in line with a committed status change or delete.
+    // During a load the change is queued for it; before one starts, the load's
+    // SELECT will read the change itself.
+    private static void syncIntervalIndex(Booking booking, boolean deleted) {
+        synchronized (pendingLock) {
+            if (!intervalIndexLoaded) {
+                if (pendingChanges != null) {
+                    pendingChanges.add(new IndexChange(booking, deleted));
+                }
+                return;
+            }
+        }
+        applyToIndex(booking, deleted);
+    }
 
-            pstmt.setString(1, status);
-            pstmt.setInt(2, bookingId);
+    private static void applyToIndex(Booking booking, boolean deleted) {
+        int bookingId = booking.getId();
+        if (deleted || !BookingIntervalIndex.occupiesCar(booking.getStatus())) {
+            removeFromIntervalIndex(bookingId);
+            return;
+        }
+        if (intervalIndex.carOf(bookingId) != -1) {
+            return;
+        }
+        // Re-activated booking: it takes its period back
+        long[] period = BookingIntervalIndex.periodOf(booking);
+        ReentrantLock lock = intervalIndex.lockFor(booking.getCarId());
+        lock.lock();
+        try {
+            intervalIndex.add(bookingId, booking.getCarId(), period[0], period[1]);
+        } finally {
+            lock.unlock();
+        }
+    }
 
-            int rowsAffected = pstmt.executeUpdate();
-            return rowsAffected > 0;
-        } catch (SQLException e) {
-            e.printStackTrace();
-            return false;
+    private static void removeFromIntervalIndex(int bookingId) {
+        int carId = intervalIndex.carOf(bookingId);
+        if (carId == -1) {
+            return;
+        }
+        ReentrantLock lock = intervalIndex.lockFor(carId);
+        lock.lock();
+        try {
+            intervalIndex.remove(bookingId);
+        } finally {
+            lock.unlock();
         }
     }
 
     public boolean deleteBooking(int bookingId) {
-        String sql = "DELETE FROM bookings WHERE id = ?";
-        try (Connection conn = DBConnection.getConnection();
-                PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            pstmt.setInt(1, bookingId);
-
-            int rowsAffected = pstmt.executeUpdate();
-            return rowsAffected > 0;
+        String sql = "DELETE FROM bookings WHERE id = ? AND version = ?";
+        try (Connection conn = DBConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            for (int attempt = 0; attempt < MAX_TRANSITION_ATTEMPTS; attempt++) {
+                Booking booking = readBooking(conn, bookingId);
+                if (booking == null) {
+                    return false;
+                }
+                int deleted;
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    pstmt.setInt(1, bookingId);
+                    pstmt.setInt(2, booking.getVersion());
+                    deleted = pstmt.executeUpdate();
+                }
+                if (deleted == 1) {
+                    BookingStats.commit(conn, new BookingStats.Delta().remove(booking));
+                    syncIntervalIndex(booking, true);
+                    return true;
+                }
+                // Changed since it was read: take the stats delta from the new row
+                conn.rollback();
+            }
+            log.warn("Booking kept changing during delete", "bookingId", bookingId);
+            return false;
         } catch (SQLException e) {
-            e.printStackTrace();
+            log.error("Failed to delete booking", e, "bookingId", bookingId);
             return false;
         }
     }
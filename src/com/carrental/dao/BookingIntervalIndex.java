@@ -0,0 +1,160 @@
+package com.carrental.dao;
+
+import com.carrental.model.Booking;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-memory per-car index of the periods held by active (not cancelled or
+ * rejected) bookings, used by {@link BookingDAO} to reject overlapping
+ * bookings without scanning the bookings table.
+ *
+ * Each car's periods are kept in a set ordered by start time that only ever
+ * holds disjoint periods, so the only candidate in it for a clash with
+ * [start, end) is the period with the greatest start before end: one
+ * O(log n) lookup per check. New bookings are checked before they are
+ * added, but rows loaded from an older database may already overlap; a
+ * period that overlaps one in the set goes to a per-car overflow list
+ * instead, which every check scans in full. That list is empty unless the
+ * bookings table already held a double booking.
+ *
+ * Callers serialize work on a car through {@link #lockFor(int)}; the stripes
+ * are shared by hash so different cars rarely contend.
+ */
+class BookingIntervalIndex {
+
+    private static final int STRIPES = 64;
+    private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+
+    private static final Comparator<Interval> BY_START = Comparator
+            .comparingLong((Interval i) -> i.start)
+            .thenComparingInt(i -> i.bookingId);
+
+    private final ReentrantLock[] locks = new ReentrantLock[STRIPES];
+    // Only mutated or read while holding the car's stripe lock
+    private final Map<Integer, CarIntervals> byCar = new ConcurrentHashMap<>();
+    private final Map<Integer, Interval> byBooking = new ConcurrentHashMap<>();
+
+    BookingIntervalIndex() {
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    ReentrantLock lockFor(int carId) {
+        return locks[(carId * 0x9E3779B9 >>> 16) & (STRIPES - 1)];
+    }
+
+    /** Returns the id of a booking overlapping [start, end) on the car, or -1. Caller holds the car's lock. */
+    int findConflict(int carId, long start, long end) {
+        CarIntervals intervals = byCar.get(carId);
+        return intervals != null ? intervals.findConflict(start, end) : -1;
+    }
+
+    /**
+     * Indexes the period, replacing any the booking had. Returns the id of a
+     * booking it overlaps, or -1; the period is indexed either way. Caller
+     * holds the car's lock.
+     */
+    int add(int bookingId, int carId, long start, long end) {
+        Interval interval = new Interval(bookingId, carId, start, end);
+        Interval previous = byBooking.put(bookingId, interval);
+        if (previous != null) {
+            removeFromCar(previous);
+        }
+        CarIntervals intervals = byCar.computeIfAbsent(carId, k -> new CarIntervals());
+        int conflict = intervals.findConflict(start, end);
+        if (conflict < 0) {
+            intervals.disjoint.add(interval);
+        } else {
+            intervals.overlapping.add(interval);
+        }
+        return conflict;
+    }
+
+    /** Caller holds the lock of the booking's car (see {@link #carOf(int)}). */
+    void remove(int bookingId) {
+        Interval interval = byBooking.remove(bookingId);
+        if (interval != null) {
+            removeFromCar(interval);
+        }
+    }
+
+    /** Car of an indexed booking, or -1 when the booking is not active. */
+    int carOf(int bookingId) {
+        Interval interval = byBooking.get(bookingId);
+        return interval != null ? interval.carId : -1;
+    }
+
+    int size() {
+        return byBooking.size();
+    }
+
+    void clear() {
+        byCar.clear();
+        byBooking.clear();
+    }
+
+    /** Whether a booking in this status holds its car. */
+    static boolean occupiesCar(String status) {
+        return !"CANCELLED".equals(status) && !"REJECTED".equals(status);
+    }
+
+    /** Booked period in epoch millis, half-open; falls back to whole days when times are missing. */
+    static long[] periodOf(Booking booking) {
+        Timestamp pickup = booking.getPickupDatetime();
+        Timestamp dropoff = booking.getDropoffDatetime();
+        long start = pickup != null ? pickup.getTime()
+                : booking.getStartDate() != null ? booking.getStartDate().getTime() : Long.MIN_VALUE;
+        long end = dropoff != null ? dropoff.getTime()
+                : booking.getEndDate() != null ? booking.getEndDate().getTime() + DAY_MILLIS : Long.MAX_VALUE;
+        return new long[] { start, end };
+    }
+
+    private void removeFromCar(Interval interval) {
+        CarIntervals intervals = byCar.get(interval.carId);
+        if (intervals != null && !intervals.disjoint.remove(interval)) {
+            intervals.overlapping.remove(interval);
+        }
+    }
+
+    private static final class CarIntervals {
+        final NavigableSet<Interval> disjoint = new TreeSet<>(BY_START);
+        final List<Interval> overlapping = new ArrayList<>(0);
+
+        int findConflict(long start, long end) {
+            Interval before = disjoint.lower(new Interval(Integer.MIN_VALUE, 0, end, end));
+            if (before != null && before.end > start) {
+                return before.bookingId;
+            }
+            for (Interval interval : overlapping) {
+                if (interval.start < end && interval.end > start) {
+                    return interval.bookingId;
+                }
+            }
+            return -1;
+        }
+    }
+
+    private static final class Interval {
+        final int bookingId;
+        final int carId;
+        final long start;
+        final long end;
+
+        Interval(int bookingId, int carId, long start, long end) {
+            this.bookingId = bookingId;
+            this.carId = carId;
+            this.start = start;
+            this.end = end;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.carrental.dao;
+
+import com.carrental.model.Booking;
+
+import java.util.List;
+
+/** One page of a booking listing; nextCursor is null on the last page. */
+public class BookingPage {
+    private final List<Booking> items;
+    private final String nextCursor;
+
+    public BookingPage(List<Booking> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<Booking> getItems() {
+        return items;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+}
@@ -0,0 +1,122 @@
+package com.carrental.dao;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Filters and keyset position for {@link BookingDAO#findBookings(BookingQuery)}.
+ *
+ * Listings are ordered newest first by (created_at, id). The cursor is an
+ * opaque token naming the last row of the previous page, so each page is an
+ * index range scan that costs the same however deep the caller has paged.
+ */
+public class BookingQuery {
+    public static final int DEFAULT_LIMIT = 50;
+    public static final int MAX_LIMIT = 200;
+
+    private Integer userId;
+    private final List<String> statuses = new ArrayList<>();
+    private String paymentStatus;
+    private Integer carId;
+    private Date from;
+    private Date to;
+    private Timestamp afterCreatedAt;
+    private int afterId;
+    // 0 means unpaged
+    private int limit;
+
+    public Integer getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Integer userId) {
+        this.userId = userId;
+    }
+
+    public List<String> getStatuses() {
+        return statuses;
+    }
+
+    public void addStatus(String status) {
+        statuses.add(status);
+    }
+
+    public String getPaymentStatus() {
+        return paymentStatus;
+    }
+
+    public void setPaymentStatus(String paymentStatus) {
+        this.paymentStatus = paymentStatus;
+    }
+
+    public Integer getCarId() {
+        return carId;
+    }
+
+    public void setCarId(Integer carId) {
+        this.carId = carId;
+    }
+
+    public Date getFrom() {
+        return from;
+    }
+
+    /** Only bookings whose period ends on or after this date. */
+    public void setFrom(Date from) {
+        this.from = from;
+    }
+
+    public Date getTo() {
+        return to;
+    }
+
+    /** Only bookings whose period starts on or before this date. */
+    public void setTo(Date to) {
+        this.to = to;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public void setLimit(int limit) {
+        this.limit = Math.max(1, Math.min(limit, MAX_LIMIT));
+    }
+
+    public boolean isPaged() {
+        return limit > 0;
+    }
+
+    Timestamp getAfterCreatedAt() {
+        return afterCreatedAt;
+    }
+
+    int getAfterId() {
+        return afterId;
+    }
+
+    /** Continues after the row named by a cursor from a previous {@link BookingPage}. */
+    public void setCursor(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            afterCreatedAt = null;
+            return;
+        }
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int sep = decoded.lastIndexOf('|');
+            afterCreatedAt = Timestamp.valueOf(decoded.substring(0, sep));
+            afterId = Integer.parseInt(decoded.substring(sep + 1));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+
+    static String encodeCursor(Timestamp createdAt, int id) {
+        String raw = createdAt + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,553 @@
+package com.carrental.dao;
+
+import com.carrental.model.Booking;
+import com.carrental.util.DBConnection;
+import com.carrental.util.log.Log;
+import com.carrental.util.log.Logger;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Booking counts, revenue and car utilization per day, week and month (plus
+ * all-time totals), kept in the booking_stats and car_utilization tables.
+ *
+ * A booking counts towards the periods containing its pickup date: one
+ * booking, one for its status and one for its payment status, and unless it
+ * is cancelled or rejected its price as revenue (and as paid revenue once
+ * paid). An active booking also gives its car one utilization day for every
+ * calendar day from pickup up to drop-off, at least one.
+ *
+ * {@link BookingDAO} writes the difference between a booking's old and new
+ * contribution in the same transaction as the booking change, so reading the
+ * stats of a range of periods is a primary key range scan, however many
+ * bookings there are.
+ *
+ * Each delta row is an atomic upsert (val = val + delta), so commits for
+ * different periods and cars run side by side, and ones touching the same row
+ * wait only on that row's lock until the other commits. Rows are written in
+ * one fixed order, all-time totals last, so two transactions never wait on
+ * each other in a cycle and the busiest rows are held the shortest. Two
+ * transactions inserting the same new row collide on its primary key; the
+ * loser retries its upsert, which then adds to the winner's row.
+ *
+ * Commits share a read lock that {@link #rebuild} takes exclusively, so it
+ * can recompute everything from the bookings table in parallel: no booking
+ * change commits during the scan, and the waiting ones then apply their
+ * deltas on top of the rebuilt totals.
+ */
+public final class BookingStats {
+    private static final Logger log = Log.get(BookingStats.class);
+
+    private static final int BACKFILL_THREADS = Integer.getInteger("carrental.stats.backfillThreads",
+            Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors())));
+    private static final int BATCH_SIZE = 1000;
+    // Guards against a bogus drop-off date turning into millions of utilization rows
+    private static final int MAX_BOOKING_DAYS = 3660;
+    private static final int MAX_UPSERT_ATTEMPTS = 5;
+    private static final String DUPLICATE_KEY = "23505";
+
+    static final LocalDate ALL_TIME = LocalDate.of(1970, 1, 1);
+
+    static final String BOOKINGS = "bookings";
+    static final String REVENUE = "revenue";
+    static final String PAID_REVENUE = "revenue:paid";
+    static final String STATUS_PREFIX = "status:";
+    static final String PAYMENT_PREFIX = "payment:";
+
+    private static final String MERGE_STAT = "MERGE INTO booking_stats t USING (VALUES (CAST(? AS CHAR(1)), "
+            + "CAST(? AS DATE), CAST(? AS VARCHAR(80)), CAST(? AS DECIMAL(19, 2)))) s(grain, bucket, metric, delta) "
+            + "ON t.grain = s.grain AND t.bucket = s.bucket AND t.metric = s.metric "
+            + "WHEN MATCHED THEN UPDATE SET val = t.val + s.delta "
+            + "WHEN NOT MATCHED THEN INSERT (grain, bucket, metric, val) VALUES (s.grain, s.bucket, s.metric, s.delta)";
+    private static final String MERGE_DAYS = "MERGE INTO car_utilization t USING (VALUES (CAST(? AS CHAR(1)), "
+            + "CAST(? AS DATE), CAST(? AS INT), CAST(? AS INT))) s(grain, bucket, car_id, delta) "
+            + "ON t.grain = s.grain AND t.bucket = s.bucket AND t.car_id = s.car_id "
+            + "WHEN MATCHED THEN UPDATE SET days = t.days + s.delta "
+            + "WHEN NOT MATCHED THEN INSERT (grain, bucket, car_id, days) VALUES (s.grain, s.bucket, s.car_id, s.delta)";
+
+    private static final ReentrantReadWriteLock rebuildLock = new ReentrantReadWriteLock();
+
+    // Grain order puts the all-time rows last
+    private static final Comparator<Key> WRITE_ORDER = Comparator.<Key, Grain>comparing(k -> k.grain)
+            .thenComparing(k -> k.bucket)
+            .thenComparing(k -> k.metric, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparingInt(k -> k.carId);
+
+    /** Period length; each period is identified by its first day. */
+    public enum Grain {
+        DAY('D'), WEEK('W'), MONTH('M'), ALL('A');
+
+        final String code;
+
+        Grain(char code) {
+            this.code = String.valueOf(code);
+        }
+
+        /** First day of the period containing date; weeks start on Monday. */
+        public LocalDate start(LocalDate date) {
+            switch (this) {
+            case DAY:
+                return date;
+            case WEEK:
+                return date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            case MONTH:
+                return date.withDayOfMonth(1);
+            default:
+                return ALL_TIME;
+            }
+        }
+
+        /** Shifts a period start by the given number of periods. */
+        public LocalDate plus(LocalDate start, long periods) {
+            switch (this) {
+            case DAY:
+                return start.plusDays(periods);
+            case WEEK:
+                return start.plusWeeks(periods);
+            case MONTH:
+                return start.plusMonths(periods);
+            default:
+                return ALL_TIME;
+            }
+        }
+
+        /** "day", "week" or "month"; null for anything else. */
+        public static Grain parse(String name) {
+            if ("day".equals(name)) {
+                return DAY;
+            }
+            if ("week".equals(name)) {
+                return WEEK;
+            }
+            if ("month".equals(name)) {
+                return MONTH;
+            }
+            return null;
+        }
+    }
+
+    private BookingStats() {
+    }
+
+    /**
+     * Writes the delta and commits the caller's transaction. A change that
+     * does not move any figure just commits.
+     */
+    static void commit(Connection conn, Delta delta) throws SQLException {
+        if (delta.isEmpty()) {
+            conn.commit();
+            return;
+        }
+        rebuildLock.readLock().lock();
+        try {
+            merge(conn, delta);
+            conn.commit();
+        } finally {
+            rebuildLock.readLock().unlock();
+        }
+    }
+
+    /** Rebuilds the stats when bookings exist but none were recorded, e.g. right after the tables were added. */
+    public static void rebuildIfEmpty() throws SQLException {
+        boolean needed;
+        try (Connection conn = DBConnection.getConnection();
+                Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT EXISTS (SELECT 1 FROM bookings), "
+                        + "EXISTS (SELECT 1 FROM booking_stats)")) {
+            needed = rs.next() && rs.getBoolean(1) && !rs.getBoolean(2);
+        }
+        if (needed) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Recomputes both tables from the bookings table. The id range is split
+     * across carrental.stats.backfillThreads threads (default: up to 4), each
+     * scanning its part on its own connection; the merged result replaces the
+     * tables in one transaction. Booking changes wait until it is done.
+     * Returns the number of bookings scanned.
+     */
+    public static int rebuild() throws SQLException {
+        long started = System.nanoTime();
+        List<Connection> conns = new ArrayList<>();
+        ExecutorService pool = Executors.newFixedThreadPool(BACKFILL_THREADS, r -> {
+            Thread t = new Thread(r, "carrental-stats-backfill");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            // Connections are taken before the lock: requests blocked on it hold pool connections
+            for (int i = 0; i < BACKFILL_THREADS; i++) {
+                conns.add(DBConnection.getConnection());
+            }
+            Connection writer = conns.get(0);
+            rebuildLock.writeLock().lock();
+            try {
+                Delta total = new Delta();
+                long[] range = idRange(writer);
+                if (range != null) {
+                    long span = (range[1] - range[0]) / BACKFILL_THREADS + 1;
+                    List<Future<Delta>> parts = new ArrayList<>();
+                    for (int i = 0; i < BACKFILL_THREADS; i++) {
+                        Connection conn = conns.get(i);
+                        long from = range[0] + i * span;
+                        long to = Math.min(range[1], from + span - 1);
+                        parts.add(pool.submit(() -> scan(conn, from, to)));
+                    }
+                    for (Future<Delta> part : parts) {
+                        total.addAll(await(part));
+                    }
+                }
+
+                writer.setAutoCommit(false);
+                try (Statement stmt = writer.createStatement()) {
+                    stmt.execute("DELETE FROM booking_stats");
+                    stmt.execute("DELETE FROM car_utilization");
+                }
+                write(writer, total,
+                        "INSERT INTO booking_stats (grain, bucket, metric, val) VALUES (?, ?, ?, ?)",
+                        "INSERT INTO car_utilization (grain, bucket, car_id, days) VALUES (?, ?, ?, ?)");
+                writer.commit();
+                log.info("Rebuilt booking stats", "bookings", total.bookings,
+                        "rows", total.stats.size() + total.days.size(),
+                        "threads", BACKFILL_THREADS, "ms", (System.nanoTime() - started) / 1_000_000);
+                return total.bookings;
+            } finally {
+                rebuildLock.writeLock().unlock();
+            }
+        } finally {
+            pool.shutdownNow();
+            for (Connection conn : conns) {
+                try {
+                    conn.close();
+                } catch (SQLException e) {
+                    log.warn("Failed to release backfill connection", "error", e.toString());
+                }
+            }
+        }
+    }
+
+    /** Figures for every period from one period start to another (both inclusive), plus all-time totals. */
+    public static BookingStatsReport query(Grain grain, LocalDate from, LocalDate to) throws SQLException {
+        BookingStatsReport report = new BookingStatsReport(grain, from, to);
+        try (Connection conn = DBConnection.getConnection()) {
+            try (PreparedStatement pstmt = conn.prepareStatement(
+                    "SELECT grain, bucket, metric, val FROM booking_stats "
+                            + "WHERE (grain = ? AND bucket BETWEEN ? AND ?) OR grain = ?")) {
+                pstmt.setString(1, grain.code);
+                pstmt.setDate(2, Date.valueOf(from));
+                pstmt.setDate(3, Date.valueOf(to));
+                pstmt.setString(4, Grain.ALL.code);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        BookingStatsReport.Period period = Grain.ALL.code.equals(rs.getString(1))
+                                ? report.getTotals()
+                                : report.getPeriod(rs.getDate(2).toLocalDate());
+                        if (period != null) {
+                            period.add(rs.getString(3), rs.getBigDecimal(4));
+                        }
+                    }
+                }
+            }
+            try (PreparedStatement pstmt = conn.prepareStatement(
+                    "SELECT bucket, car_id, days FROM car_utilization WHERE grain = ? AND bucket BETWEEN ? AND ?")) {
+                pstmt.setString(1, grain.code);
+                pstmt.setDate(2, Date.valueOf(from));
+                pstmt.setDate(3, Date.valueOf(to));
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        report.addUtilization(rs.getDate(1).toLocalDate(), rs.getInt(2), rs.getInt(3));
+                    }
+                }
+            }
+        }
+        return report;
+    }
+
+    private static long[] idRange(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT MIN(id), MAX(id) FROM bookings")) {
+            if (!rs.next() || rs.getObject(1) == null) {
+                return null;
+            }
+            return new long[] { rs.getLong(1), rs.getLong(2) };
+        }
+    }
+
+    private static Delta scan(Connection conn, long fromId, long toId) throws SQLException {
+        Delta delta = new Delta();
+        String sql = "SELECT car_id, start_date, end_date, pickup_datetime, total_price, status, payment_status "
+                + "FROM bookings WHERE id BETWEEN ? AND ?";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setLong(1, fromId);
+            pstmt.setLong(2, toId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    Booking booking = new Booking();
+                    booking.setCarId(rs.getInt("car_id"));
+                    booking.setStartDate(rs.getDate("start_date"));
+                    booking.setEndDate(rs.getDate("end_date"));
+                    booking.setPickupDatetime(rs.getTimestamp("pickup_datetime"));
+                    booking.setTotalPrice(rs.getDouble("total_price"));
+                    booking.setStatus(rs.getString("status"));
+                    booking.setPaymentStatus(rs.getString("payment_status"));
+                    delta.add(booking);
+                }
+            }
+        }
+        return delta;
+    }
+
+    private static Delta await(Future<Delta> part) throws SQLException {
+        try {
+            return part.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while rebuilding booking stats", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            throw new SQLException("Booking stats scan failed", cause);
+        }
+    }
+
+    private static void merge(Connection conn, Delta delta) throws SQLException {
+        if (!delta.stats.isEmpty()) {
+            List<Map.Entry<Key, BigDecimal>> rows = new ArrayList<>(delta.stats.entrySet());
+            rows.sort(Map.Entry.comparingByKey(WRITE_ORDER));
+            try (PreparedStatement pstmt = conn.prepareStatement(MERGE_STAT)) {
+                for (Map.Entry<Key, BigDecimal> e : rows) {
+                    Key key = e.getKey();
+                    pstmt.setString(1, key.grain.code);
+                    pstmt.setDate(2, Date.valueOf(key.bucket));
+                    pstmt.setString(3, key.metric);
+                    pstmt.setBigDecimal(4, e.getValue());
+                    upsert(pstmt);
+                }
+            }
+        }
+        if (!delta.days.isEmpty()) {
+            List<Map.Entry<Key, Integer>> rows = new ArrayList<>(delta.days.entrySet());
+            rows.sort(Map.Entry.comparingByKey(WRITE_ORDER));
+            try (PreparedStatement pstmt = conn.prepareStatement(MERGE_DAYS)) {
+                for (Map.Entry<Key, Integer> e : rows) {
+                    Key key = e.getKey();
+                    pstmt.setString(1, key.grain.code);
+                    pstmt.setDate(2, Date.valueOf(key.bucket));
+                    pstmt.setInt(3, key.carId);
+                    pstmt.setInt(4, e.getValue());
+                    upsert(pstmt);
+                }
+            }
+        }
+    }
+
+    // A failed statement leaves the rest of the transaction intact, so a lost insert race just runs again
+    private static void upsert(PreparedStatement pstmt) throws SQLException {
+        for (int attempt = 1;; attempt++) {
+            try {
+                pstmt.executeUpdate();
+                return;
+            } catch (SQLException e) {
+                if (!DUPLICATE_KEY.equals(e.getSQLState()) || attempt == MAX_UPSERT_ATTEMPTS) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    // Both statements take (grain, bucket, key, value)
+    private static void write(Connection conn, Delta delta, String statsSql, String daysSql) throws SQLException {
+        if (!delta.stats.isEmpty()) {
+            try (PreparedStatement pstmt = conn.prepareStatement(statsSql)) {
+                int pending = 0;
+                for (Map.Entry<Key, BigDecimal> e : delta.stats.entrySet()) {
+                    Key key = e.getKey();
+                    pstmt.setString(1, key.grain.code);
+                    pstmt.setDate(2, Date.valueOf(key.bucket));
+                    pstmt.setString(3, key.metric);
+                    pstmt.setBigDecimal(4, e.getValue());
+                    pstmt.addBatch();
+                    if (++pending == BATCH_SIZE) {
+                        pstmt.executeBatch();
+                        pending = 0;
+                    }
+                }
+                if (pending > 0) {
+                    pstmt.executeBatch();
+                }
+            }
+        }
+        if (!delta.days.isEmpty()) {
+            try (PreparedStatement pstmt = conn.prepareStatement(daysSql)) {
+                int pending = 0;
+                for (Map.Entry<Key, Integer> e : delta.days.entrySet()) {
+                    Key key = e.getKey();
+                    pstmt.setString(1, key.grain.code);
+                    pstmt.setDate(2, Date.valueOf(key.bucket));
+                    pstmt.setInt(3, key.carId);
+                    pstmt.setInt(4, e.getValue());
+                    pstmt.addBatch();
+                    if (++pending == BATCH_SIZE) {
+                        pstmt.executeBatch();
+                        pending = 0;
+                    }
+                }
+                if (pending > 0) {
+                    pstmt.executeBatch();
+                }
+            }
+        }
+    }
+
+    /** Changes to the stats: what bookings contribute, minus what they used to. Figures that net to zero are dropped. */
+    static final class Delta {
+        final Map<Key, BigDecimal> stats = new HashMap<>();
+        final Map<Key, Integer> days = new HashMap<>();
+        int bookings;
+
+        Delta add(Booking booking) {
+            apply(booking, 1);
+            return this;
+        }
+
+        Delta remove(Booking booking) {
+            apply(booking, -1);
+            return this;
+        }
+
+        boolean isEmpty() {
+            return stats.isEmpty() && days.isEmpty();
+        }
+
+        void addAll(Delta other) {
+            other.stats.forEach(this::addStat);
+            other.days.forEach(this::addDays);
+            bookings += other.bookings;
+        }
+
+        private void apply(Booking booking, int sign) {
+            bookings += sign;
+            LocalDate pickup = pickupDate(booking);
+            String status = booking.getStatus() != null ? booking.getStatus() : "PENDING";
+            String payment = booking.getPaymentStatus() != null ? booking.getPaymentStatus() : "UNPAID";
+            boolean active = BookingIntervalIndex.occupiesCar(status);
+            BigDecimal one = BigDecimal.valueOf(sign);
+            BigDecimal price = BigDecimal.valueOf(booking.getTotalPrice()).setScale(2, RoundingMode.HALF_UP)
+                    .multiply(one);
+
+            for (Grain grain : Grain.values()) {
+                if (pickup == null && grain != Grain.ALL) {
+                    continue;
+                }
+                LocalDate bucket = grain.start(pickup != null ? pickup : ALL_TIME);
+                addStat(new Key(grain, bucket, BOOKINGS), one);
+                addStat(new Key(grain, bucket, STATUS_PREFIX + status), one);
+                addStat(new Key(grain, bucket, PAYMENT_PREFIX + payment), one);
+                if (active) {
+                    addStat(new Key(grain, bucket, REVENUE), price);
+                    if ("PAID".equals(payment)) {
+                        addStat(new Key(grain, bucket, PAID_REVENUE), price);
+                    }
+                }
+            }
+
+            if (active && pickup != null) {
+                LocalDate dropoff = booking.getEndDate() != null ? booking.getEndDate().toLocalDate() : pickup;
+                LocalDate day = pickup;
+                int count = 0;
+                do {
+                    for (Grain grain : Grain.values()) {
+                        addDays(new Key(grain, grain.start(day), booking.getCarId()), sign);
+                    }
+                    day = day.plusDays(1);
+                } while (day.isBefore(dropoff) && ++count < MAX_BOOKING_DAYS);
+            }
+        }
+
+        private void addStat(Key key, BigDecimal value) {
+            if (value.signum() == 0) {
+                return;
+            }
+            stats.merge(key, value, (a, b) -> {
+                BigDecimal sum = a.add(b);
+                return sum.signum() == 0 ? null : sum;
+            });
+        }
+
+        private void addDays(Key key, int value) {
+            days.merge(key, value, (a, b) -> a + b == 0 ? null : a + b);
+        }
+
+        private static LocalDate pickupDate(Booking booking) {
+            if (booking.getStartDate() != null) {
+                return booking.getStartDate().toLocalDate();
+            }
+            if (booking.getPickupDatetime() != null) {
+                return booking.getPickupDatetime().toLocalDateTime().toLocalDate();
+            }
+            return null;
+        }
+    }
+
+    /** A row of either table: a metric, or a car's utilization when metric is null. */
+    private static final class Key {
+        final Grain grain;
+        final LocalDate bucket;
+        final String metric;
+        final int carId;
+
+        Key(Grain grain, LocalDate bucket, String metric) {
+            this.grain = grain;
+            this.bucket = bucket;
+            this.metric = metric;
+            this.carId = 0;
+        }
+
+        Key(Grain grain, LocalDate bucket, int carId) {
+            this.grain = grain;
+            this.bucket = bucket;
+            this.metric = null;
+            this.carId = carId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return grain == other.grain && carId == other.carId && bucket.equals(other.bucket)
+                    && Objects.equals(metric, other.metric);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(grain, bucket, metric, carId);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.carrental.dao;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/** Booking stats for a run of periods, as read by {@link BookingStats#query}. */
+public class BookingStatsReport {
+    private final BookingStats.Grain grain;
+    private final LocalDate from;
+    private final LocalDate to;
+    private final Period totals = new Period(null);
+    // Every period in the range, including ones without bookings
+    private final Map<LocalDate, Period> periods = new LinkedHashMap<>();
+    private final SortedMap<Integer, Integer> carDays = new TreeMap<>();
+
+    BookingStatsReport(BookingStats.Grain grain, LocalDate from, LocalDate to) {
+        this.grain = grain;
+        this.from = from;
+        this.to = to;
+        for (LocalDate start = from; !start.isAfter(to); start = grain.plus(start, 1)) {
+            periods.put(start, new Period(start));
+        }
+    }
+
+    public BookingStats.Grain getGrain() {
+        return grain;
+    }
+
+    public LocalDate getFrom() {
+        return from;
+    }
+
+    public LocalDate getTo() {
+        return to;
+    }
+
+    /** Calendar days covered, from the first day of the first period to the last day of the last. */
+    public long getDays() {
+        return ChronoUnit.DAYS.between(from, grain.plus(to, 1));
+    }
+
+    /** All-time figures. Their utilization days are not filled in. */
+    public Period getTotals() {
+        return totals;
+    }
+
+    public Collection<Period> getPeriods() {
+        return new ArrayList<>(periods.values());
+    }
+
+    /** Utilization days in the range per car id, for cars that had any. */
+    public SortedMap<Integer, Integer> getCarDays() {
+        return carDays;
+    }
+
+    Period getPeriod(LocalDate start) {
+        return periods.get(start);
+    }
+
+    void addUtilization(LocalDate start, int carId, int days) {
+        Period period = periods.get(start);
+        // Rows that went back to zero are kept in the table but not reported
+        if (period != null && days != 0) {
+            period.utilizationDays += days;
+            carDays.merge(carId, days, Integer::sum);
+        }
+    }
+
+    /** Figures of one period. */
+    public static class Period {
+        private final LocalDate start;
+        private long bookings;
+        private BigDecimal revenue = BigDecimal.ZERO;
+        private BigDecimal paidRevenue = BigDecimal.ZERO;
+        private final SortedMap<String, Long> statuses = new TreeMap<>();
+        private final SortedMap<String, Long> paymentStatuses = new TreeMap<>();
+        private long utilizationDays;
+
+        Period(LocalDate start) {
+            this.start = start;
+        }
+
+        void add(String metric, BigDecimal value) {
+            if (BookingStats.BOOKINGS.equals(metric)) {
+                bookings = value.longValue();
+            } else if (BookingStats.REVENUE.equals(metric)) {
+                revenue = value;
+            } else if (BookingStats.PAID_REVENUE.equals(metric)) {
+                paidRevenue = value;
+            } else if (metric.startsWith(BookingStats.STATUS_PREFIX)) {
+                putCount(statuses, metric.substring(BookingStats.STATUS_PREFIX.length()), value);
+            } else if (metric.startsWith(BookingStats.PAYMENT_PREFIX)) {
+                putCount(paymentStatuses, metric.substring(BookingStats.PAYMENT_PREFIX.length()), value);
+            }
+        }
+
+        private static void putCount(Map<String, Long> counts, String key, BigDecimal value) {
+            if (value.signum() != 0) {
+                counts.put(key, value.longValue());
+            }
+        }
+
+        /** First day of the period; null for the all-time totals. */
+        public LocalDate getStart() {
+            return start;
+        }
+
+        public long getBookings() {
+            return bookings;
+        }
+
+        /** Price of the bookings that are not cancelled or rejected. */
+        public BigDecimal getRevenue() {
+            return revenue;
+        }
+
+        /** The part of the revenue already paid. */
+        public BigDecimal getPaidRevenue() {
+            return paidRevenue;
+        }
+
+        public SortedMap<String, Long> getStatuses() {
+            return statuses;
+        }
+
+        public SortedMap<String, Long> getPaymentStatuses() {
+            return paymentStatuses;
+        }
+
+        /** Car-days booked in the period, over all cars. */
+        public long getUtilizationDays() {
+            return utilizationDays;
+        }
+    }
+}
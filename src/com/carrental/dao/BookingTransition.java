@@ -0,0 +1,64 @@
+package com.carrental.dao;
+
+import com.carrental.model.Booking;
+
+/**
+ * The allowed changes to a booking's status and payment status.
+ *
+ * Status: PENDING to ACCEPTED, REJECTED or CANCELLED; an accepted booking can
+ * still be cancelled. Payment: UNPAID to PAYMENT_REQUESTED to PAID, and only
+ * while the booking is not cancelled or rejected. Applied by
+ * {@link BookingDAO#transition(int, BookingTransition)}.
+ */
+public enum BookingTransition {
+    ACCEPT(false, "ACCEPTED", "PENDING"),
+    REJECT(false, "REJECTED", "PENDING"),
+    CANCEL(false, "CANCELLED", "PENDING", "ACCEPTED"),
+    REQUEST_PAYMENT(true, "PAYMENT_REQUESTED", "UNPAID"),
+    MARK_PAID(true, "PAID", "PAYMENT_REQUESTED");
+
+    private final boolean payment;
+    private final String target;
+    private final String[] from;
+
+    BookingTransition(boolean payment, String target, String... from) {
+        this.payment = payment;
+        this.target = target;
+        this.from = from;
+    }
+
+    /** True for payment status transitions, false for booking status ones. */
+    public boolean isPayment() {
+        return payment;
+    }
+
+    public String getTarget() {
+        return target;
+    }
+
+    /** The state this transition changes: the payment status or the status. */
+    public String currentState(Booking booking) {
+        return payment ? booking.getPaymentStatus() : booking.getStatus();
+    }
+
+    public boolean allows(Booking booking) {
+        if (payment && !BookingIntervalIndex.occupiesCar(booking.getStatus())) {
+            return false;
+        }
+        String current = currentState(booking);
+        for (String state : from) {
+            if (state.equals(current)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    void apply(Booking booking) {
+        if (payment) {
+            booking.setPaymentStatus(target);
+        } else {
+            booking.setStatus(target);
+        }
+    }
+}
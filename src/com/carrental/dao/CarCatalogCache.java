@@ -0,0 +1,190 @@
+package com.carrental.dao;
+
+import com.carrental.image.ThumbnailService;
+import com.carrental.model.Car;
+import com.carrental.util.json.JsonWriter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Read-through cache of the whole car catalog, keyed by
+ * {@link CarDAO#getCatalogVersion()}.
+ *
+ * The fleet is loaded and serialized to JSON once per catalog version; until
+ * an admin adds or deletes a car every read is served from the cached
+ * snapshot without touching H2. Snapshots are immutable, so readers never
+ * lock; only a reload after a version bump is serialized. Each snapshot also
+ * keeps a gzipped copy of its JSON, so compressed responses cost no CPU.
+ */
+public final class CarCatalogCache {
+
+    private static final CarDAO carDAO = new CarDAO();
+    private static final Object reloadLock = new Object();
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong loads = new AtomicLong();
+    private static volatile Snapshot current;
+
+    private CarCatalogCache() {
+    }
+
+    public static Snapshot get() throws SQLException {
+        Snapshot snapshot = current;
+        if (snapshot != null && snapshot.version == CarDAO.getCatalogVersion()) {
+            hits.incrementAndGet();
+            return snapshot;
+        }
+        synchronized (reloadLock) {
+            snapshot = current;
+            // Read the version before the rows: a write racing with the load bumps
+            // it again and the next reader reloads
+            long version = CarDAO.getCatalogVersion();
+            if (snapshot != null && snapshot.version == version) {
+                hits.incrementAndGet();
+                return snapshot;
+            }
+            List<Car> cars = carDAO.loadAllCars();
+            snapshot = new Snapshot(version, cars);
+            loads.incrementAndGet();
+            current = snapshot;
+            // New images get thumbnails in the background; the version is bumped when they are ready
+            List<String> images = new ArrayList<>(cars.size());
+            for (Car c : cars) {
+                images.add(c.getImage());
+            }
+            ThumbnailService.submit(images);
+            return snapshot;
+        }
+    }
+
+    public static long getHits() {
+        return hits.get();
+    }
+
+    public static long getLoads() {
+        return loads.get();
+    }
+
+    /** Writes one car in the shape used by GET /api/cars. */
+    public static void writeCar(JsonWriter json, Car c) throws IOException {
+        json.beginObject()
+                .field("id", c.getId())
+                .field("name", c.getName() != null ? c.getName() : "")
+                .field("price", c.getPrice(), 2)
+                .field("image", c.getImage() != null ? c.getImage() : "")
+                .field("srcset", ThumbnailService.srcset(c.getImage()))
+                .field("features", c.getFeatures() != null ? c.getFeatures() : "")
+                .field("type", c.getType() != null ? c.getType() : "CAR")
+                .field("registrationNumber", c.getRegistrationNumber() != null ? c.getRegistrationNumber() : "")
+                .endObject();
+    }
+
+    /** One immutable version of the catalog together with its serialized form. */
+    public static final class Snapshot {
+        private final long version;
+        private final List<Car> cars;
+        private final Map<Integer, Car> byId;
+        private final byte[] json;
+        private final byte[] gzipJson;
+        private final String etag;
+        private final String gzipEtag;
+
+        Snapshot(long version, List<Car> cars) {
+            this.version = version;
+            this.cars = Collections.unmodifiableList(cars);
+            this.byId = new HashMap<>();
+            for (Car c : cars) {
+                byId.put(c.getId(), c);
+            }
+            this.json = serialize(cars);
+            // Content hash keeps the tag strong across restarts, when the version counter resets
+            this.etag = "\"" + version + "-" + sha256Prefix(json) + "\"";
+            this.gzipJson = gzip(json);
+            // A different encoding is a different representation and needs its own strong tag
+            this.gzipEtag = etag.substring(0, etag.length() - 1) + "-gzip\"";
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public List<Car> getCars() {
+            return cars;
+        }
+
+        /** The car with this id in this version of the catalog, or null. */
+        public Car getCar(int id) {
+            return byId.get(id);
+        }
+
+        /** UTF-8 JSON array of the catalog. Shared; callers must not modify it. */
+        public byte[] getJson() {
+            return json;
+        }
+
+        /** {@link #getJson()} gzipped. Shared; callers must not modify it. */
+        public byte[] getGzipJson() {
+            return gzipJson;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public String getGzipEtag() {
+            return gzipEtag;
+        }
+
+        private static byte[] serialize(List<Car> cars) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(256 + cars.size() * 256);
+            try (OutputStreamWriter out = new OutputStreamWriter(bytes, StandardCharsets.UTF_8)) {
+                JsonWriter json = new JsonWriter(out);
+                json.beginArray();
+                for (Car c : cars) {
+                    writeCar(json, c);
+                }
+                json.endArray();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return bytes.toByteArray();
+        }
+
+        private static byte[] gzip(byte[] data) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(data.length / 4 + 64);
+            try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+                out.write(data);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return bytes.toByteArray();
+        }
+
+        private static String sha256Prefix(byte[] data) {
+            try {
+                byte[] digest = MessageDigest.getInstance("SHA-256").digest(data);
+                StringBuilder hex = new StringBuilder(16);
+                for (int i = 0; i < 8; i++) {
+                    hex.append(Character.forDigit((digest[i] >> 4) & 0xF, 16))
+                            .append(Character.forDigit(digest[i] & 0xF, 16));
+                }
+                return hex.toString();
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
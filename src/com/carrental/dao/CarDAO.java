@@ -1,65 +1,318 @@
 package com.carrental.dao;
 
 import com.carrental.model.Car;
+import com.carrental.search.CarSearchIndex;
 import com.carrental.util.DBConnection;
+import com.carrental.util.DaoExecutor;
+import com.carrental.util.log.Log;
+import com.carrental.util.log.Logger;
 
+import java.io.IOException;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class CarDAO {
+    private static final Logger log = Log.get(CarDAO.class);
+
+    // Bumped on every successful catalog write so cached views of the fleet can
+    // tell they are stale without querying
+    private static final AtomicLong catalogVersion = new AtomicLong(1);
+
+    // Rows per executeBatch and per transaction during bulk imports
+    public static final int IMPORT_CHUNK_SIZE = 1000;
+
+    private static final String INSERT_SQL =
+            "INSERT INTO cars (name, price, image, features, type, registration_number) VALUES (?, ?, ?, ?, ?, ?)";
+
+    /** Validated rows for {@link #importCars}, pulled one at a time. */
+    public interface CarRowSource {
+        /** Next valid car, or null at the end. Invalid rows are added to the report and skipped. */
+        Car next(CarImportReport report) throws IOException;
+
+        /** Upload row of the car last returned by {@link #next}. */
+        int getRow();
+    }
+
+    public static long getCatalogVersion() {
+        return catalogVersion.get();
+    }
+
+    /** Marks cached views of the fleet stale when something they are built from changes outside the table. */
+    public static void touchCatalog() {
+        catalogVersion.incrementAndGet();
+    }
 
     public List<Car> getAllCars() {
+        try {
+            return loadAllCars();
+        } catch (SQLException e) {
+            log.error("Failed to load cars", e);
+            return new ArrayList<>();
+        }
+    }
+
+    // Like getAllCars but lets the failure through, so caches don't mistake an
+    // error for an empty fleet
+    List<Car> loadAllCars() throws SQLException {
         List<Car> cars = new ArrayList<>();
         String sql = "SELECT * FROM cars";
         try (Connection conn = DBConnection.getConnection();
                 Statement stmt = conn.createStatement();
                 ResultSet rs = stmt.executeQuery(sql)) {
             while (rs.next()) {
-                cars.add(new Car(
-                        rs.getInt("id"),
-                        rs.getString("name"),
-                        rs.getDouble("price"),
-                        rs.getString("image"),
-                        rs.getString("features"),
-                        rs.getString("type") != null ? rs.getString("type") : "CAR",
-                        rs.getString("registration_number") != null ? rs.getString("registration_number") : ""));
+                cars.add(mapRow(rs));
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
         }
         return cars;
     }
 
+    /** Inserts the car, sets its generated id and adds it to the search index. */
     public boolean addCar(Car car) {
-        String sql = "INSERT INTO cars (name, price, image, features, type, registration_number) VALUES (?, ?, ?, ?, ?, ?)";
         try (Connection conn = DBConnection.getConnection();
-                PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, car.getName());
-            pstmt.setDouble(2, car.getPrice());
-            pstmt.setString(3, car.getImage());
-            pstmt.setString(4, car.getFeatures());
-            pstmt.setString(5, car.getType());
-            pstmt.setString(6, car.getRegistrationNumber());
-            return pstmt.executeUpdate() > 0;
+                PreparedStatement pstmt = conn.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+            bindInsert(pstmt, car);
+            if (pstmt.executeUpdate() > 0) {
+                try (ResultSet keys = pstmt.getGeneratedKeys()) {
+                    if (keys.next()) {
+                        car.setId(keys.getInt(1));
+                    }
+                }
+                catalogVersion.incrementAndGet();
+                CarSearchIndex.get().add(car);
+                return true;
+            }
+            return false;
         } catch (SQLException e) {
-            e.printStackTrace();
+            log.error("Failed to add car", e, "name", car.getName());
             return false;
         }
     }
 
+    /**
+     * Inserts every car the source yields, {@link #IMPORT_CHUNK_SIZE} rows per
+     * executeBatch and transaction. Each chunk is read and validated before a
+     * connection is taken, so a slow upload holds neither a connection nor a
+     * database slot (see {@link DaoExecutor#acquirePermit}); they are held
+     * only to insert and commit. A row the database rejects is reported and
+     * the rest of its chunk is kept. If no slot frees up, the import stops
+     * and the report says from which row. The catalog version is bumped once
+     * at the end, not per row, and the search index is rebuilt by the next
+     * search.
+     */
+    public CarImportReport importCars(CarRowSource source) throws IOException, SQLException {
+        CarImportReport report = new CarImportReport();
+        List<Car> chunk = new ArrayList<>(IMPORT_CHUNK_SIZE);
+        int[] rows = new int[IMPORT_CHUNK_SIZE];
+        try {
+            boolean more = true;
+            while (more) {
+                chunk.clear();
+                Car car;
+                while (chunk.size() < IMPORT_CHUNK_SIZE && (car = source.next(report)) != null) {
+                    rows[chunk.size()] = source.getRow();
+                    chunk.add(car);
+                }
+                more = chunk.size() == IMPORT_CHUNK_SIZE;
+                if (chunk.isEmpty()) {
+                    break;
+                }
+                DaoExecutor.Permit permit;
+                try {
+                    permit = DaoExecutor.acquirePermit();
+                } catch (RejectedExecutionException e) {
+                    report.addError(rows[0], "Server busy; import stopped, this and later rows were not imported");
+                    break;
+                }
+                try (Connection conn = DBConnection.getConnection();
+                        PreparedStatement pstmt = conn.prepareStatement(INSERT_SQL)) {
+                    conn.setAutoCommit(false);
+                    for (Car c : chunk) {
+                        bindInsert(pstmt, c);
+                        pstmt.addBatch();
+                    }
+                    executeImportChunk(conn, pstmt, rows, chunk.size(), report);
+                } finally {
+                    permit.close();
+                }
+            }
+        } finally {
+            // Earlier chunks are committed even if the upload broke off
+            if (report.getImported() > 0) {
+                catalogVersion.incrementAndGet();
+                CarSearchIndex.get().invalidate();
+            }
+        }
+        return report;
+    }
+
+    private void executeImportChunk(Connection conn, PreparedStatement pstmt, int[] rows, int count,
+            CarImportReport report) throws SQLException {
+        try {
+            pstmt.executeBatch();
+            report.addImported(count);
+        } catch (BatchUpdateException e) {
+            // H2 still runs the rest of the batch; failed statements are marked
+            // in the update counts and their exceptions chained in order
+            int[] counts = e.getUpdateCounts();
+            SQLException cause = e.getNextException();
+            int imported = 0;
+            for (int i = 0; i < count; i++) {
+                if (counts != null && i < counts.length && counts[i] != Statement.EXECUTE_FAILED) {
+                    imported++;
+                } else {
+                    report.addError(rows[i], "Rejected by database: "
+                            + (cause != null ? cause.getMessage() : e.getMessage()));
+                    if (cause != null) {
+                        cause = cause.getNextException();
+                    }
+                }
+            }
+            report.addImported(imported);
+        } finally {
+            pstmt.clearBatch();
+        }
+        conn.commit();
+    }
+
     public boolean deleteCar(int id) {
         String sql = "DELETE FROM cars WHERE id = ?";
         try (Connection conn = DBConnection.getConnection();
                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setInt(1, id);
-            return pstmt.executeUpdate() > 0;
+            if (pstmt.executeUpdate() > 0) {
+                catalogVersion.incrementAndGet();
+                CarSearchIndex.get().remove(id);
+                return true;
+            }
+            return false;
         } catch (SQLException e) {
-            e.printStackTrace();
+            log.error("Failed to delete car", e, "carId", id);
             return false;
         }
     }
 
+    /**
+     * Filtered listing in the query's order, one page at a time. Each order
+     * has a matching (type, key, id) and (key, id) index, the cursor predicate
+     * is a range on the key, and one extra row is fetched to decide whether a
+     * next cursor exists, so every page is a short index range scan. The SQL
+     * depends only on which filters are set, so the pool's statement cache
+     * serves repeat shapes.
+     */
+    public CarPage findCars(CarQuery query) throws SQLException {
+        boolean byRegistration = query.getRegistrationPrefix() != null;
+        // The prefix is selective; without the hint H2 prefers walking the sort index
+        StringBuilder sql = new StringBuilder("SELECT * FROM cars")
+                .append(byRegistration ? " USE INDEX (idx_cars_registration)" : "")
+                .append(" WHERE 1 = 1");
+        List<Object> params = new ArrayList<>();
+        if (query.getType() != null) {
+            sql.append(" AND type = ?");
+            params.add(query.getType());
+        }
+        if (query.getMinPrice() != null) {
+            sql.append(" AND price >= ?");
+            params.add(query.getMinPrice());
+        }
+        if (query.getMaxPrice() != null) {
+            sql.append(" AND price <= ?");
+            params.add(query.getMaxPrice());
+        }
+        if (byRegistration) {
+            sql.append(" AND registration_number LIKE ? ESCAPE '\\'");
+            params.add(query.getRegistrationPrefix().replaceAll("([\\\\%_])", "\\\\$1") + "%");
+        }
+
+        CarQuery.Sort sort = query.getSort();
+        if (query.getAfterValue() != null) {
+            Object after;
+            switch (sort) {
+            case NAME:
+                after = query.getAfterValue();
+                break;
+            case PRICE_ASC:
+            case PRICE_DESC:
+                after = Double.valueOf(query.getAfterValue());
+                break;
+            default:
+                after = null;
+                break;
+            }
+            if (after == null) {
+                sql.append(" AND id > ?");
+            } else {
+                // key >= v bounds the index range; the OR only breaks ties on id
+                String column = sort == CarQuery.Sort.NAME ? "name" : "price";
+                boolean desc = sort == CarQuery.Sort.PRICE_DESC;
+                sql.append(" AND ").append(column).append(desc ? " <= ?" : " >= ?")
+                        .append(" AND (").append(column).append(desc ? " < ?" : " > ?")
+                        .append(desc ? " OR id < ?)" : " OR id > ?)");
+                params.add(after);
+                params.add(after);
+            }
+            params.add(query.getAfterId());
+        }
+
+        // Leading with the equality column lets H2 see the (type, ...) index is already in order
+        sql.append(" ORDER BY ").append(query.getType() != null ? "type, " : "");
+        switch (sort) {
+        case NAME:
+            sql.append("name, id");
+            break;
+        case PRICE_ASC:
+            sql.append("price, id");
+            break;
+        case PRICE_DESC:
+            sql.append("price DESC, id DESC");
+            break;
+        default:
+            sql.append("id");
+            break;
+        }
+        sql.append(" LIMIT ?");
+        params.add(query.getLimit() + 1);
+
+        List<Car> cars = new ArrayList<>();
+        try (Connection conn = DBConnection.getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+            for (int i = 0; i < params.size(); i++) {
+                pstmt.setObject(i + 1, params.get(i));
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    cars.add(mapRow(rs));
+                }
+            }
+        }
+
+        String nextCursor = null;
+        if (cars.size() > query.getLimit()) {
+            cars.remove(cars.size() - 1);
+            Car last = cars.get(cars.size() - 1);
+            String value;
+            switch (sort) {
+            case NAME:
+                value = last.getName();
+                break;
+            case PRICE_ASC:
+            case PRICE_DESC:
+                value = Double.toString(last.getPrice());
+                break;
+            default:
+                value = Integer.toString(last.getId());
+                break;
+            }
+            nextCursor = CarQuery.encodeCursor(sort, value, last.getId());
+        }
+        return new CarPage(cars, nextCursor);
+    }
+
     public Car getCarById(int id) {
         String sql = "SELECT * FROM cars WHERE id = ?";
         try (Connection conn = DBConnection.getConnection();
@@ -67,20 +320,54 @@ public class CarDAO {
             pstmt.setInt(1, id);
             try (ResultSet rs = pstmt.executeQuery()) {
                 if (rs.next()) {
-                    return new Car(
-                            rs.getInt("id"),
-                            rs.getString("name"),
-                            rs.getDouble("price"),
-                            rs.getString("image"),
-                            rs.getString("features"),
-                            rs.getString("type") != null ? rs.getString("type") : "CAR",
-                            rs.getString("registration_number") != null ? rs.getString("registration_number") : ""
-                    );
+                    return mapRow(rs);
                 }
             }
         } catch (SQLException e) {
-            e.printStackTrace();
+            log.error("Failed to load car", e, "carId", id);
         }
         return null;
     }
+
+    // Batch lookup keyed by id; ids with no matching row are simply absent
+    public Map<Integer, Car> getCarsByIds(Collection<Integer> ids) {
+        Map<Integer, Car> cars = new HashMap<>();
+        if (ids == null || ids.isEmpty()) {
+            return cars;
+        }
+        String sql = "SELECT * FROM cars WHERE id = ANY(?)";
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setArray(1, conn.createArrayOf("INTEGER", ids.toArray(new Integer[0])));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    Car car = mapRow(rs);
+                    cars.put(car.getId(), car);
+                }
+            }
+        } catch (SQLException e) {
+            log.error("Failed to load cars by id", e, "count", ids.size());
+        }
+        return cars;
+    }
+
+    private void bindInsert(PreparedStatement pstmt, Car car) throws SQLException {
+        pstmt.setString(1, car.getName());
+        pstmt.setDouble(2, car.getPrice());
+        pstmt.setString(3, car.getImage());
+        pstmt.setString(4, car.getFeatures());
+        pstmt.setString(5, car.getType());
+        pstmt.setString(6, car.getRegistrationNumber());
+    }
+
+    private Car mapRow(ResultSet rs) throws SQLException {
+        return new Car(
+                rs.getInt("id"),
+                rs.getString("name"),
+                rs.getDouble("price"),
+                rs.getString("image"),
+                rs.getString("features"),
+                rs.getString("type") != null ? rs.getString("type") : "CAR",
+                rs.getString("registration_number") != null ? rs.getString("registration_number") : "");
+    }
 }
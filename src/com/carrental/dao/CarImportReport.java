@@ -0,0 +1,65 @@
+package com.carrental.dao;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of {@link CarDAO#importCars}: how many rows were inserted and which
+ * rows were rejected and why. Only the first {@link #MAX_REPORTED_ERRORS}
+ * errors are kept so a bad upload cannot grow the report without bound.
+ */
+public class CarImportReport {
+    public static final int MAX_REPORTED_ERRORS = 100;
+
+    private int imported;
+    private int failed;
+    private final List<RowError> errors = new ArrayList<>();
+
+    public int getImported() {
+        return imported;
+    }
+
+    void addImported(int count) {
+        imported += count;
+    }
+
+    public int getFailed() {
+        return failed;
+    }
+
+    public List<RowError> getErrors() {
+        return Collections.unmodifiableList(errors);
+    }
+
+    /** Whether some failed rows were counted but not listed. */
+    public boolean isTruncated() {
+        return failed > errors.size();
+    }
+
+    public void addError(int row, String message) {
+        failed++;
+        if (errors.size() < MAX_REPORTED_ERRORS) {
+            errors.add(new RowError(row, message));
+        }
+    }
+
+    public static class RowError {
+        private final int row;
+        private final String message;
+
+        RowError(int row, String message) {
+            this.row = row;
+            this.message = message;
+        }
+
+        /** Line of the upload the row starts on. */
+        public int getRow() {
+            return row;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.carrental.dao;
+
+import com.carrental.model.Car;
+
+import java.util.List;
+
+/** One page of a car listing; nextCursor is null on the last page. */
+public class CarPage {
+    private final List<Car> items;
+    private final String nextCursor;
+
+    public CarPage(List<Car> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<Car> getItems() {
+        return items;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+}
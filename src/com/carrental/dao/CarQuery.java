@@ -0,0 +1,138 @@
+package com.carrental.dao;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Locale;
+
+/**
+ * Filters, order and keyset position for {@link CarDAO#findCars(CarQuery)}.
+ *
+ * Every order ends in id, so rows are totally ordered. The cursor is an
+ * opaque token naming the sort value and id of the last row of the previous
+ * page; it is tied to the sort it was issued for.
+ */
+public class CarQuery {
+    public static final int DEFAULT_LIMIT = 24;
+    public static final int MAX_LIMIT = 100;
+
+    public enum Sort {
+        ID("id"),
+        NAME("name"),
+        PRICE_ASC("price"),
+        PRICE_DESC("-price");
+
+        private final String param;
+
+        Sort(String param) {
+            this.param = param;
+        }
+
+        /** The value of the sort request parameter. */
+        public String getParam() {
+            return param;
+        }
+
+        public static Sort fromParam(String param) {
+            for (Sort sort : values()) {
+                if (sort.param.equals(param)) {
+                    return sort;
+                }
+            }
+            throw new IllegalArgumentException("Unknown sort: " + param);
+        }
+    }
+
+    private String type;
+    private Double minPrice;
+    private Double maxPrice;
+    private String registrationPrefix;
+    private Sort sort = Sort.ID;
+    private String afterValue;
+    private int afterId;
+    private int limit = DEFAULT_LIMIT;
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type != null ? type.toUpperCase(Locale.ROOT) : null;
+    }
+
+    public Double getMinPrice() {
+        return minPrice;
+    }
+
+    public void setMinPrice(Double minPrice) {
+        this.minPrice = minPrice;
+    }
+
+    public Double getMaxPrice() {
+        return maxPrice;
+    }
+
+    public void setMaxPrice(Double maxPrice) {
+        this.maxPrice = maxPrice;
+    }
+
+    public String getRegistrationPrefix() {
+        return registrationPrefix;
+    }
+
+    /** Only cars whose registration number starts with this. */
+    public void setRegistrationPrefix(String registrationPrefix) {
+        this.registrationPrefix = registrationPrefix;
+    }
+
+    public Sort getSort() {
+        return sort;
+    }
+
+    public void setSort(Sort sort) {
+        this.sort = sort;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public void setLimit(int limit) {
+        this.limit = Math.max(1, Math.min(limit, MAX_LIMIT));
+    }
+
+    String getAfterValue() {
+        return afterValue;
+    }
+
+    int getAfterId() {
+        return afterId;
+    }
+
+    /** Continues after the row named by a cursor from a previous {@link CarPage}. Set the sort first. */
+    public void setCursor(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            afterValue = null;
+            return;
+        }
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int first = decoded.indexOf('|');
+            int last = decoded.lastIndexOf('|');
+            if (!decoded.substring(0, first).equals(sort.param)) {
+                throw new IllegalArgumentException("Cursor is for another sort");
+            }
+            afterValue = decoded.substring(first + 1, last);
+            afterId = Integer.parseInt(decoded.substring(last + 1));
+            if (sort == Sort.PRICE_ASC || sort == Sort.PRICE_DESC) {
+                Double.parseDouble(afterValue);
+            }
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+
+    static String encodeCursor(Sort sort, String value, int id) {
+        String raw = sort.param + "|" + value + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,32 @@
+package com.carrental.dao;
+
+import com.carrental.model.Booking;
+
+/**
+ * What {@link BookingDAO#transition(int, BookingTransition)} did. The booking
+ * is the updated row when applied and the current row on a conflict.
+ */
+public class TransitionResult {
+    public enum Outcome {
+        APPLIED,
+        NOT_FOUND,
+        // The booking is not (or no longer) in a state the transition starts from
+        CONFLICT
+    }
+
+    private final Outcome outcome;
+    private final Booking booking;
+
+    TransitionResult(Outcome outcome, Booking booking) {
+        this.outcome = outcome;
+        this.booking = booking;
+    }
+
+    public Outcome getOutcome() {
+        return outcome;
+    }
+
+    public Booking getBooking() {
+        return booking;
+    }
+}
@@ -2,48 +2,100 @@ package com.carrental.dao;
 
 import com.carrental.model.User;
 import com.carrental.util.DBConnection;
+import com.carrental.util.DaoExecutor;
+import com.carrental.util.PasswordHasher;
+import com.carrental.util.log.Log;
+import com.carrental.util.log.Logger;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Locale;
 
 public class UserDAO {
+    private static final Logger log = Log.get(UserDAO.class);
 
+    // Hashes the password (see PasswordHasher) before storing it. The unique
+    // normalized-email index rejects addresses differing only in case.
+    // Login and registration run ungated (see DaoExecutor.dispatchUngated), so
+    // each query takes its own database slot and hashing holds none.
     public boolean registerUser(User user) {
         String sql = "INSERT INTO users (name, email, password, role) VALUES (?, ?, ?, ?)";
+        String hash = PasswordHasher.hash(user.getPassword());
+        DaoExecutor.Permit permit = DaoExecutor.acquirePermit();
         try (Connection conn = DBConnection.getConnection();
                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, user.getName());
             pstmt.setString(2, user.getEmail());
-            pstmt.setString(3, user.getPassword());
+            pstmt.setString(3, hash);
             pstmt.setString(4, user.getRole());
             return pstmt.executeUpdate() > 0;
         } catch (SQLException e) {
-            e.printStackTrace();
+            log.error("Failed to register user", e);
             return false;
+        } finally {
+            permit.close();
         }
     }
 
+    // Returns the user when the password matches, else null. Rows still holding a
+    // plain-text or weaker hash are upgraded on the spot. The returned user carries
+    // no password.
     public User loginUser(String email, String password) {
-        String sql = "SELECT * FROM users WHERE LOWER(email) = LOWER(?) AND password = ?";
+        // email_normalized is a unique LOWER(TRIM(email)) column, so this is a point lookup
+        String sql = "SELECT id, name, email, password, role FROM users WHERE email_normalized = ?";
+        User user = null;
+        String stored = null;
+        DaoExecutor.Permit permit = DaoExecutor.acquirePermit();
         try (Connection conn = DBConnection.getConnection();
                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, email);
-            pstmt.setString(2, password);
+            pstmt.setString(1, email.trim().toLowerCase(Locale.ROOT));
             try (ResultSet rs = pstmt.executeQuery()) {
                 if (rs.next()) {
-                    return new User(
+                    stored = rs.getString("password");
+                    user = new User(
                             rs.getInt("id"),
                             rs.getString("name"),
                             rs.getString("email"),
-                            rs.getString("password"),
+                            null,
                             rs.getString("role"));
                 }
             }
         } catch (SQLException e) {
-            e.printStackTrace();
+            log.error("Failed to look up user for login", e);
+            return null;
+        } finally {
+            permit.close();
+        }
+
+        // Verified after the connection and slot are released, so slow PBKDF2 holds neither
+        if (!PasswordHasher.verify(password, stored)) {
+            return null;
+        }
+        if (PasswordHasher.needsRehash(stored)) {
+            rehash(user.getId(), stored, PasswordHasher.hash(password));
+        }
+        return user;
+    }
+
+    private void rehash(int userId, String oldValue, String newHash) {
+        // Conditional on the old value so a concurrent password change wins
+        String sql = "UPDATE users SET password = ? WHERE id = ? AND password = ?";
+        DaoExecutor.Permit permit = DaoExecutor.acquirePermit();
+        try (Connection conn = DBConnection.getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, newHash);
+            pstmt.setInt(2, userId);
+            pstmt.setString(3, oldValue);
+            if (pstmt.executeUpdate() > 0) {
+                log.info("Upgraded stored password hash", "userId", userId);
+            }
+        } catch (SQLException e) {
+            // Login still succeeds; the upgrade is retried next time
+            log.warn("Failed to upgrade stored password hash", e, "userId", userId);
+        } finally {
+            permit.close();
         }
-        return null;
     }
 }
@@ -0,0 +1,31 @@
+package com.carrental.events;
+
+/**
+ * The booking lifecycle event stream behind GET /api/bookings/events.
+ *
+ * Events: created (the booking in the admin listing shape), status and
+ * payment (id and new value) and deleted (id). Settings:
+ * carrental.events.replaySize (default 1024), carrental.events.queueSize
+ * (per connection, default 1024), carrental.events.maxSubscribers (default
+ * 1000) and carrental.events.heartbeatMs (default 15000).
+ */
+public final class BookingEvents {
+
+    public static final String CREATED = "created";
+    public static final String STATUS = "status";
+    public static final String PAYMENT = "payment";
+    public static final String DELETED = "deleted";
+
+    private static final EventBroadcaster broadcaster = new EventBroadcaster("bookings",
+            Integer.getInteger("carrental.events.replaySize", 1024),
+            Integer.getInteger("carrental.events.queueSize", 1024),
+            Integer.getInteger("carrental.events.maxSubscribers", 1000),
+            Long.getLong("carrental.events.heartbeatMs", 15_000L));
+
+    private BookingEvents() {
+    }
+
+    public static EventBroadcaster get() {
+        return broadcaster;
+    }
+}
@@ -0,0 +1,303 @@
+package com.carrental.events;
+
+import com.carrental.util.log.Log;
+import com.carrental.util.log.Logger;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fans events out to Server-Sent Events connections.
+ *
+ * Each event is formatted once into an SSE frame and offered to every
+ * subscriber's bounded queue. Subscribers write from their queue with
+ * non-blocking servlet I/O, so a slow client never holds up a publisher or
+ * the other clients; one whose queue overflows, or that has not caught up
+ * for two heartbeat intervals, is disconnected and can resume with
+ * Last-Event-ID. The stall check is also what finds clients that vanished:
+ * writes to a dead socket just stop making progress. The last replaySize
+ * frames are kept for such resumes; a client that has fallen further behind,
+ * or that comes back after a restart, is sent a "reset" event and should
+ * reload its view. Streams are only ever completed outside the broadcaster's
+ * lock, since completing one calls into the container.
+ *
+ * Event ids are "&lt;boot&gt;-&lt;sequence&gt;", where boot identifies this
+ * process, so ids from before a restart are never mistaken for current ones.
+ */
+public final class EventBroadcaster {
+    private static final Logger log = Log.get(EventBroadcaster.class);
+
+    private static final byte[] HEARTBEAT = ": ping\n\n".getBytes(StandardCharsets.UTF_8);
+
+    private final String name;
+    private final int queueSize;
+    private final int maxSubscribers;
+    private final long stallMs;
+    private final String bootId = Long.toString(System.currentTimeMillis(), 36);
+
+    // Guarded by this: sequence numbers and the replay ring, so a new subscriber's
+    // replay and the live events after it neither overlap nor leave a gap
+    private final byte[][] replay;
+    private long lastSequence;
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final AtomicLong evicted = new AtomicLong();
+    private final ScheduledExecutorService heartbeat;
+
+    public EventBroadcaster(String name, int replaySize, int queueSize, int maxSubscribers, long heartbeatMs) {
+        this.name = name;
+        this.replay = new byte[replaySize][];
+        this.queueSize = queueSize;
+        this.maxSubscribers = maxSubscribers;
+        this.stallMs = 2 * heartbeatMs;
+        this.heartbeat = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "carrental-sse-" + name);
+            t.setDaemon(true);
+            return t;
+        });
+        // Keeps idle connections open through proxies and finds clients that went away
+        heartbeat.scheduleWithFixedDelay(this::sendHeartbeat, heartbeatMs, heartbeatMs, TimeUnit.MILLISECONDS);
+    }
+
+    /** Sends an event to every subscriber; data must be a single line (e.g. JSON). */
+    public void publish(String event, String data) {
+        List<Subscriber> targets;
+        List<Subscriber> overflowed = null;
+        synchronized (this) {
+            long sequence = ++lastSequence;
+            byte[] frame = frame(sequence, event, data);
+            replay[(int) (sequence % replay.length)] = frame;
+            targets = new ArrayList<>(subscribers);
+            for (Subscriber s : targets) {
+                if (!s.offer(frame)) {
+                    if (overflowed == null) {
+                        overflowed = new ArrayList<>();
+                    }
+                    overflowed.add(s);
+                }
+            }
+        }
+        // Evictions and writes happen outside the lock; completing a stream calls into the container
+        if (overflowed != null) {
+            for (Subscriber s : overflowed) {
+                evict(s, "queue full");
+            }
+        }
+        for (Subscriber s : targets) {
+            s.drain();
+        }
+    }
+
+    /**
+     * Turns an async request into a subscription. Events after lastEventId are
+     * replayed first; returns false, without starting the stream, when the
+     * subscriber limit is reached.
+     */
+    public boolean subscribe(AsyncContext async, String lastEventId) throws IOException {
+        Subscriber subscriber;
+        boolean overflowed = false;
+        // The limit check and the insert share the lock, so concurrent subscribes cannot overshoot it
+        synchronized (this) {
+            if (subscribers.size() >= maxSubscribers) {
+                return false;
+            }
+            subscriber = new Subscriber(async, queueSize);
+            async.setTimeout(0);
+            async.addListener(subscriber);
+            // Non-blocking mode first: publishers may write as soon as the subscriber is listed
+            subscriber.out.setWriteListener(subscriber);
+            overflowed |= !subscriber.offer("retry: 3000\n\n".getBytes(StandardCharsets.UTF_8));
+            long from = resumeFrom(lastEventId);
+            if (from < 0 || lastSequence - from > queueSize - 1) {
+                overflowed |= !subscriber.offer(frame(lastSequence, "reset", "{}"));
+            } else {
+                for (long seq = from + 1; seq <= lastSequence; seq++) {
+                    overflowed |= !subscriber.offer(replay[(int) (seq % replay.length)]);
+                }
+            }
+            subscribers.add(subscriber);
+        }
+        if (overflowed) {
+            evict(subscriber, "queue full");
+        } else {
+            subscriber.drain();
+        }
+        return true;
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    public long getEvictedCount() {
+        return evicted.get();
+    }
+
+    public synchronized long getLastSequence() {
+        return lastSequence;
+    }
+
+    /** Closes every stream; clients reconnect to the next instance and resume from there. */
+    public void shutdown() {
+        heartbeat.shutdownNow();
+        for (Subscriber s : subscribers) {
+            s.close();
+        }
+    }
+
+    /**
+     * Sequence to replay after, or -1 when the id cannot be served from the
+     * replay ring. No id means a fresh start: nothing to replay.
+     */
+    private long resumeFrom(String lastEventId) {
+        if (lastEventId == null || lastEventId.isEmpty()) {
+            return lastSequence;
+        }
+        int sep = lastEventId.lastIndexOf('-');
+        if (sep < 0 || !lastEventId.substring(0, sep).equals(bootId)) {
+            return -1;
+        }
+        long seq;
+        try {
+            seq = Long.parseLong(lastEventId.substring(sep + 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+        if (seq > lastSequence || lastSequence - seq > replay.length) {
+            return -1;
+        }
+        return seq;
+    }
+
+    private byte[] frame(long sequence, String event, String data) {
+        String frame = "id: " + bootId + "-" + sequence + "\nevent: " + event + "\ndata: " + data + "\n\n";
+        return frame.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void sendHeartbeat() {
+        long now = System.currentTimeMillis();
+        // A task that throws is never run again, so nothing may escape
+        try {
+            for (Subscriber s : subscribers) {
+                if (now - s.caughtUpAt > stallMs) {
+                    evict(s, "stalled");
+                    continue;
+                }
+                if (!s.offer(HEARTBEAT)) {
+                    evict(s, "queue full");
+                    continue;
+                }
+                s.drain();
+            }
+        } catch (RuntimeException e) {
+            log.error("Event stream heartbeat failed", e, "stream", name);
+        }
+    }
+
+    private void evict(Subscriber subscriber, String reason) {
+        evicted.incrementAndGet();
+        log.warn("Disconnecting slow event stream client", "stream", name, "reason", reason);
+        subscriber.close();
+    }
+
+    /** One connection. Its queue is filled by publishers and emptied by {@link #drain}. */
+    private final class Subscriber implements WriteListener, AsyncListener {
+        final AsyncContext async;
+        final ServletOutputStream out;
+        final BlockingQueue<byte[]> queue;
+        volatile boolean closed;
+        // Last time the queue was written out completely
+        volatile long caughtUpAt = System.currentTimeMillis();
+
+        Subscriber(AsyncContext async, int queueSize) throws IOException {
+            this.async = async;
+            this.out = async.getResponse().getOutputStream();
+            this.queue = new ArrayBlockingQueue<>(queueSize);
+        }
+
+        /** Queues the frame; false when the queue is full and the caller should evict. */
+        boolean offer(byte[] frame) {
+            return closed || queue.offer(frame);
+        }
+
+        /** Writes queued frames while the socket takes them; the container calls back when it can take more. */
+        synchronized void drain() {
+            if (closed) {
+                return;
+            }
+            try {
+                while (out.isReady()) {
+                    byte[] frame = queue.poll();
+                    if (frame == null) {
+                        out.flush();
+                        caughtUpAt = System.currentTimeMillis();
+                        return;
+                    }
+                    out.write(frame);
+                }
+            } catch (IOException | RuntimeException e) {
+                // Includes writes racing with the container recycling a dead connection
+                close();
+            }
+        }
+
+        void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            subscribers.remove(this);
+            queue.clear();
+            try {
+                async.complete();
+            } catch (RuntimeException e) {
+                // The container already finished (and possibly recycled) the request
+            }
+        }
+
+        @Override
+        public void onWritePossible() {
+            drain();
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            close();
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            closed = true;
+            subscribers.remove(this);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            close();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            close();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+}
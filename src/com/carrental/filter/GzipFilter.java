@@ -0,0 +1,38 @@
+package com.carrental.filter;
+
+import com.carrental.util.GzipResponseWrapper;
+
+import jakarta.servlet.*;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+// Gzips API responses larger than carrental.gzip.minBytes for clients that accept it.
+// Async handlers have the wrapper finished by GuardedResponse.complete() before the AsyncContext completes
+public class GzipFilter implements Filter {
+    @Override
+    public void init(FilterConfig filterConfig) throws ServletException {
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        HttpServletRequest httpRequest = (HttpServletRequest) request;
+        // Event streams are left alone: holding back the first bytes would delay events
+        String accept = httpRequest.getHeader("Accept");
+        if (!GzipResponseWrapper.acceptsGzip(httpRequest.getHeader("Accept-Encoding"))
+                || (accept != null && accept.contains("text/event-stream"))) {
+            chain.doFilter(request, response);
+            return;
+        }
+        GzipResponseWrapper wrapper = new GzipResponseWrapper((HttpServletResponse) response);
+        chain.doFilter(request, wrapper);
+        if (!request.isAsyncStarted()) {
+            wrapper.finishResponse();
+        }
+    }
+
+    @Override
+    public void destroy() {
+    }
+}
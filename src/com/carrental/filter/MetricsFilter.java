@@ -0,0 +1,72 @@
+package com.carrental.filter;
+
+import com.carrental.metrics.Metrics;
+import com.carrental.metrics.RouteMetrics;
+
+import jakarta.servlet.*;
+import jakarta.servlet.http.HttpServletMapping;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+// Records count, status and latency of every API request against its servlet route
+public class MetricsFilter implements Filter {
+    @Override
+    public void init(FilterConfig filterConfig) throws ServletException {
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        HttpServletRequest httpRequest = (HttpServletRequest) request;
+        HttpServletResponse httpResponse = (HttpServletResponse) response;
+        RouteMetrics metrics = Metrics.route(routeOf(httpRequest));
+        long start = System.nanoTime();
+        metrics.requestStarted();
+        boolean async = false;
+        boolean failed = false;
+        try {
+            chain.doFilter(request, response);
+            if (request.isAsyncStarted()) {
+                // Finish when the async work completes, not when this thread returns
+                async = true;
+                request.getAsyncContext().addListener(new AsyncListener() {
+                    @Override
+                    public void onComplete(AsyncEvent event) {
+                        metrics.requestFinished(httpResponse.getStatus(), System.nanoTime() - start);
+                    }
+
+                    @Override
+                    public void onTimeout(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onError(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onStartAsync(AsyncEvent event) {
+                    }
+                });
+            }
+        } catch (IOException | ServletException | RuntimeException e) {
+            failed = true;
+            throw e;
+        } finally {
+            if (!async) {
+                // An exception escaping the chain becomes a 500 from the container
+                metrics.requestFinished(failed ? 500 : httpResponse.getStatus(), System.nanoTime() - start);
+            }
+        }
+    }
+
+    private static String routeOf(HttpServletRequest request) {
+        HttpServletMapping mapping = request.getHttpServletMapping();
+        String pattern = mapping != null ? mapping.getPattern() : null;
+        return pattern != null && pattern.startsWith("/api/") ? pattern : Metrics.UNMAPPED_ROUTE;
+    }
+
+    @Override
+    public void destroy() {
+    }
+}
@@ -0,0 +1,151 @@
+package com.carrental.filter;
+
+import com.carrental.model.User;
+import com.carrental.util.RateLimiter;
+import com.carrental.util.json.JsonWriter;
+
+import jakarta.servlet.*;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Token-bucket limits on the POSTs that cost the most when hammered: login,
+ * register and everything under /api/bookings. Over the limit a request gets
+ * a 429 with Retry-After before it reaches the servlet or the database.
+ *
+ * Each route has carrental.ratelimit.ROUTE.capacity (the burst),
+ * carrental.ratelimit.ROUTE.perMinute (the sustained rate) and
+ * carrental.ratelimit.ROUTE.key (ip, session or user). Session and user keys
+ * fall back to the IP for requests without one. Each route tracks at most
+ * carrental.ratelimit.maxKeys keys (default 100000). Set
+ * carrental.ratelimit.trustForwardedFor=true behind a proxy that sets
+ * X-Forwarded-For, or carrental.ratelimit.enabled=false to turn all of it
+ * off.
+ *
+ * Mapped in web.xml after CorsFilter and MetricsFilter, so a 429 still carries
+ * the CORS headers and shows up in the route metrics.
+ */
+public class RateLimitFilter implements Filter {
+
+    private static final boolean ENABLED = Boolean.parseBoolean(
+            System.getProperty("carrental.ratelimit.enabled", "true"));
+    private static final boolean TRUST_FORWARDED_FOR = Boolean.getBoolean("carrental.ratelimit.trustForwardedFor");
+    private static final int MAX_KEYS = Integer.getInteger("carrental.ratelimit.maxKeys", 100_000);
+
+    private static final Limit LOGIN = limit("login", 10, 10, "ip");
+    private static final Limit REGISTER = limit("register", 5, 5, "ip");
+    private static final Limit BOOKING = limit("booking", 20, 30, "user");
+
+    private static final Map<String, RateLimiter> LIMITERS;
+
+    static {
+        Map<String, RateLimiter> limiters = new LinkedHashMap<>();
+        limiters.put(LOGIN.name, LOGIN.limiter);
+        limiters.put(REGISTER.name, REGISTER.limiter);
+        limiters.put(BOOKING.name, BOOKING.limiter);
+        LIMITERS = Collections.unmodifiableMap(limiters);
+    }
+
+    private static final class Limit {
+        final String name;
+        final RateLimiter limiter;
+        final String key;
+
+        Limit(String name, RateLimiter limiter, String key) {
+            this.name = name;
+            this.limiter = limiter;
+            this.key = key;
+        }
+    }
+
+    private static Limit limit(String name, int capacity, int perMinute, String key) {
+        String prefix = "carrental.ratelimit." + name + ".";
+        return new Limit(name, new RateLimiter(Integer.getInteger(prefix + "capacity", capacity),
+                Double.parseDouble(System.getProperty(prefix + "perMinute", Integer.toString(perMinute))), MAX_KEYS),
+                System.getProperty(prefix + "key", key));
+    }
+
+    /** The limiter of each route, by route name. */
+    public static Map<String, RateLimiter> getLimiters() {
+        return LIMITERS;
+    }
+
+    @Override
+    public void init(FilterConfig filterConfig) throws ServletException {
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        HttpServletRequest httpRequest = (HttpServletRequest) request;
+        Limit limit = ENABLED ? limitFor(httpRequest) : null;
+        if (limit == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        long waitNanos = limit.limiter.tryAcquire(keyFor(httpRequest, limit));
+        if (waitNanos == 0) {
+            chain.doFilter(request, response);
+            return;
+        }
+        HttpServletResponse httpResponse = (HttpServletResponse) response;
+        httpResponse.setStatus(429);
+        httpResponse.setHeader("Retry-After", Long.toString(Math.max(1, (waitNanos + 999_999_999L) / 1_000_000_000L)));
+        httpResponse.setContentType("application/json");
+        httpResponse.setCharacterEncoding("UTF-8");
+        JsonWriter.writeResult(httpResponse.getWriter(), false, "Too many requests, please retry later");
+    }
+
+    private static Limit limitFor(HttpServletRequest request) {
+        if (!"POST".equals(request.getMethod())) {
+            return null;
+        }
+        if ("/api/bookings".equals(request.getServletPath())) {
+            return BOOKING;
+        }
+        String path = request.getPathInfo();
+        if ("/login".equals(path)) {
+            return LOGIN;
+        }
+        return "/register".equals(path) ? REGISTER : null;
+    }
+
+    private static String keyFor(HttpServletRequest request, Limit limit) {
+        HttpSession session = request.getSession(false);
+        if (session != null) {
+            switch (limit.key) {
+            case "user":
+                Object user = session.getAttribute("user");
+                if (user instanceof User) {
+                    return "u:" + ((User) user).getId();
+                }
+                break;
+            case "session":
+                return "s:" + session.getId();
+            default:
+                break;
+            }
+        }
+        return "ip:" + clientIp(request);
+    }
+
+    private static String clientIp(HttpServletRequest request) {
+        if (TRUST_FORWARDED_FOR) {
+            String forwarded = request.getHeader("X-Forwarded-For");
+            if (forwarded != null && !forwarded.isEmpty()) {
+                int comma = forwarded.indexOf(',');
+                return (comma >= 0 ? forwarded.substring(0, comma) : forwarded).trim();
+            }
+        }
+        return request.getRemoteAddr();
+    }
+
+    @Override
+    public void destroy() {
+    }
+}
@@ -0,0 +1,365 @@
+package com.carrental.idempotency;
+
+import com.carrental.util.DBConnection;
+import com.carrental.util.DaoExecutor;
+import com.carrental.util.json.JsonWriter;
+import com.carrental.util.log.Log;
+import com.carrental.util.log.Logger;
+
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers responses by Idempotency-Key, so a retried request gets the
+ * original response instead of running a second time.
+ *
+ * The caller scopes each key, e.g. to a user and an action. The first request
+ * with a key reserves it. A duplicate that arrives while that request runs
+ * gets a 409 with Retry-After. A later duplicate gets the recorded status and
+ * body back, with an Idempotent-Replayed header. Server errors are not kept,
+ * so those requests can be retried.
+ *
+ * Keys are spread over carrental.idempotency.stripes (default 16) maps with
+ * a lock each. Together they hold at most carrental.idempotency.maxEntries
+ * (default 10000) keys, for carrental.idempotency.ttlSeconds (default 86400).
+ * When a map is full its oldest finished key goes; running keys are never
+ * evicted, since their retries would run again, so a map holding nothing but
+ * running keys turns new keys away with a 503 and Retry-After. With
+ * -Dcarrental.idempotency.persist=true finished responses are also written to
+ * the idempotency_keys table and looked up there after a memory miss, so keys
+ * survive a restart.
+ */
+public final class IdempotencyStore {
+    private static final Logger log = Log.get(IdempotencyStore.class);
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final int MAX_KEY_LENGTH = 255;
+
+    // Expired rows are deleted after every this many writes to the table
+    private static final int PURGE_EVERY = 1024;
+
+    private static final IdempotencyStore INSTANCE = new IdempotencyStore(
+            Long.getLong("carrental.idempotency.ttlSeconds", 86_400L) * 1000,
+            Integer.getInteger("carrental.idempotency.maxEntries", 10_000),
+            Integer.getInteger("carrental.idempotency.stripes", 16),
+            Boolean.getBoolean("carrental.idempotency.persist"));
+
+    // Returned by reserve() when the key's stripe holds only running requests
+    private static final Recorded FULL = new Recorded(0, 0, null, null);
+
+    private final long ttlMillis;
+    private final Stripe[] stripes;
+    private final boolean persist;
+    private final AtomicInteger writes = new AtomicInteger();
+    private final AtomicLong replays = new AtomicLong();
+
+    public IdempotencyStore(long ttlMillis, int maxEntries, int stripeCount, boolean persist) {
+        int count = Integer.highestOneBit(Math.max(1, stripeCount));
+        this.ttlMillis = ttlMillis;
+        this.stripes = new Stripe[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new Stripe(Math.max(1, maxEntries / count));
+        }
+        this.persist = persist;
+    }
+
+    public static IdempotencyStore get() {
+        return INSTANCE;
+    }
+
+    /** Whether a client-sent key is usable: 1 to 255 printable ASCII characters. */
+    public static boolean isValidKey(String key) {
+        if (key == null || key.isEmpty() || key.length() > MAX_KEY_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if (c < 0x21 || c > 0x7e) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes the recorded response if the request for this key has finished.
+     * Only looks in memory, so it is cheap enough for the request thread.
+     */
+    public boolean replay(String key, HttpServletResponse resp) throws IOException {
+        Recorded entry = lookup(key);
+        if (entry == null || entry.isRunning()) {
+            return false;
+        }
+        write(entry, resp);
+        return true;
+    }
+
+    /**
+     * Runs the handler for the first request with this key and records its
+     * response. Duplicates get the recorded response, or a 409 while the first
+     * one is still running.
+     */
+    public void run(String key, HttpServletRequest req, HttpServletResponse resp, DaoExecutor.Handler handler)
+            throws ServletException, IOException {
+        Recorded existing = reserve(key);
+        if (existing == FULL) {
+            log.warn("Idempotency keys all in use, rejecting request", "uri", req.getRequestURI());
+            resp.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            resp.setHeader("Retry-After", "1");
+            JsonWriter.writeResult(resp.getWriter(), false, "Server busy, please retry later");
+            return;
+        }
+        if (existing == null && persist) {
+            existing = load(key);
+            if (existing != null) {
+                put(key, existing);
+            }
+        }
+        if (existing != null) {
+            if (existing.isRunning()) {
+                resp.setStatus(HttpServletResponse.SC_CONFLICT);
+                resp.setHeader("Retry-After", "1");
+                JsonWriter.writeResult(resp.getWriter(), false,
+                        "A request with this " + HEADER + " is still in progress");
+            } else {
+                write(existing, resp);
+            }
+            return;
+        }
+
+        ResponseRecorder recorder = new ResponseRecorder(resp);
+        boolean kept = false;
+        try {
+            handler.handle(req, recorder);
+            kept = complete(key, recorder);
+        } finally {
+            if (!kept) {
+                release(key);
+            }
+        }
+    }
+
+    /** Deletes expired rows from the idempotency_keys table. */
+    public void purgeExpired() {
+        if (!persist) {
+            return;
+        }
+        try (Connection conn = DBConnection.getConnection();
+                PreparedStatement pstmt = conn.prepareStatement(
+                        "DELETE FROM idempotency_keys WHERE expires_at <= ?")) {
+            pstmt.setTimestamp(1, new Timestamp(System.currentTimeMillis()));
+            int deleted = pstmt.executeUpdate();
+            if (deleted > 0) {
+                log.debug("Purged expired idempotency keys", "deleted", deleted);
+            }
+        } catch (SQLException e) {
+            log.warn("Failed to purge idempotency keys", e);
+        }
+    }
+
+    /** Keys held in memory, running or finished. */
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    /** Duplicate requests answered with a recorded response. */
+    public long getReplays() {
+        return replays.get();
+    }
+
+    private Stripe stripeFor(String key) {
+        int h = key.hashCode();
+        return stripes[(h ^ (h >>> 16)) & (stripes.length - 1)];
+    }
+
+    private Recorded lookup(String key) {
+        long now = System.currentTimeMillis();
+        Stripe stripe = stripeFor(key);
+        synchronized (stripe) {
+            Recorded entry = stripe.get(key);
+            if (entry != null && entry.expiresAt <= now) {
+                stripe.remove(key);
+                return null;
+            }
+            return entry;
+        }
+    }
+
+    // Returns the live entry for the key, FULL if there is no room for it, or null
+    // after reserving it for this request
+    private Recorded reserve(String key) {
+        long now = System.currentTimeMillis();
+        Stripe stripe = stripeFor(key);
+        synchronized (stripe) {
+            stripe.purge(now);
+            Recorded entry = stripe.get(key);
+            if (entry != null && entry.expiresAt > now) {
+                return entry;
+            }
+            if (entry == null && !stripe.makeRoom()) {
+                return FULL;
+            }
+            stripe.put(key, new Recorded(now + ttlMillis, 0, null, null));
+            return null;
+        }
+    }
+
+    private void put(String key, Recorded entry) {
+        Stripe stripe = stripeFor(key);
+        synchronized (stripe) {
+            // Without room the key is still answered from the table next time
+            if (stripe.containsKey(key) || stripe.makeRoom()) {
+                stripe.put(key, entry);
+            }
+        }
+    }
+
+    private void release(String key) {
+        Stripe stripe = stripeFor(key);
+        synchronized (stripe) {
+            Recorded entry = stripe.get(key);
+            if (entry != null && entry.isRunning()) {
+                stripe.remove(key);
+            }
+        }
+    }
+
+    // Keeps the recorded response unless it is a server error; true if kept
+    private boolean complete(String key, ResponseRecorder recorder) {
+        String body = recorder.getBody();
+        int status = recorder.getStatus();
+        if (body == null || status >= 500) {
+            return false;
+        }
+        Recorded done;
+        Stripe stripe = stripeFor(key);
+        synchronized (stripe) {
+            Recorded running = stripe.get(key);
+            long expiresAt = running != null ? running.expiresAt : System.currentTimeMillis() + ttlMillis;
+            done = new Recorded(expiresAt, status, recorder.getContentType(), body);
+            if (running != null || stripe.makeRoom()) {
+                stripe.put(key, done);
+            }
+        }
+        if (persist) {
+            store(key, done);
+        }
+        return true;
+    }
+
+    private Recorded load(String key) {
+        try (Connection conn = DBConnection.getConnection();
+                PreparedStatement pstmt = conn.prepareStatement("SELECT status, content_type, body, expires_at "
+                        + "FROM idempotency_keys WHERE idem_key = ? AND expires_at > ?")) {
+            pstmt.setString(1, key);
+            pstmt.setTimestamp(2, new Timestamp(System.currentTimeMillis()));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    return new Recorded(rs.getTimestamp("expires_at").getTime(), rs.getInt("status"),
+                            rs.getString("content_type"), rs.getString("body"));
+                }
+            }
+        } catch (SQLException e) {
+            log.warn("Failed to load idempotency key", e);
+        }
+        return null;
+    }
+
+    private void store(String key, Recorded entry) {
+        try (Connection conn = DBConnection.getConnection();
+                PreparedStatement pstmt = conn.prepareStatement("MERGE INTO idempotency_keys "
+                        + "(idem_key, status, content_type, body, expires_at) KEY (idem_key) VALUES (?, ?, ?, ?, ?)")) {
+            pstmt.setString(1, key);
+            pstmt.setInt(2, entry.status);
+            pstmt.setString(3, entry.contentType);
+            pstmt.setString(4, entry.body);
+            pstmt.setTimestamp(5, new Timestamp(entry.expiresAt));
+            pstmt.executeUpdate();
+        } catch (SQLException e) {
+            // The key still works from memory until a restart
+            log.warn("Failed to store idempotency key", e);
+            return;
+        }
+        if (writes.incrementAndGet() % PURGE_EVERY == 0) {
+            purgeExpired();
+        }
+    }
+
+    private void write(Recorded entry, HttpServletResponse resp) throws IOException {
+        replays.incrementAndGet();
+        resp.setStatus(entry.status);
+        if (entry.contentType != null) {
+            resp.setContentType(entry.contentType);
+        }
+        resp.setHeader("Idempotent-Replayed", "true");
+        resp.getWriter().write(entry.body);
+    }
+
+    // Immutable; a running entry is replaced by a finished one
+    private static final class Recorded {
+        final long expiresAt;
+        final int status; // 0 while the first request runs
+        final String contentType;
+        final String body;
+
+        Recorded(long expiresAt, int status, String contentType, String body) {
+            this.expiresAt = expiresAt;
+            this.status = status;
+            this.contentType = contentType;
+            this.body = body;
+        }
+
+        boolean isRunning() {
+            return status == 0;
+        }
+    }
+
+    // Insertion ordered, so the eldest entry expires first; guarded by its own monitor
+    private static final class Stripe extends LinkedHashMap<String, Recorded> {
+        private final int capacity;
+
+        Stripe(int capacity) {
+            this.capacity = capacity;
+        }
+
+        void purge(long now) {
+            Iterator<Recorded> it = values().iterator();
+            while (it.hasNext() && it.next().expiresAt <= now) {
+                it.remove();
+            }
+        }
+
+        // Makes room for one more key by dropping the oldest finished one; false if
+        // the map is full of running requests
+        boolean makeRoom() {
+            if (size() < capacity) {
+                return true;
+            }
+            Iterator<Recorded> it = values().iterator();
+            while (it.hasNext()) {
+                if (!it.next().isRunning()) {
+                    it.remove();
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
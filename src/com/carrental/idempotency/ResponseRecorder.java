@@ -0,0 +1,83 @@
+package com.carrental.idempotency;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+
+/**
+ * Response that keeps a copy of what the handler writes through getWriter(),
+ * so {@link IdempotencyStore} can replay it. The body still goes out as it is
+ * written. A body written through getOutputStream() is not recorded.
+ */
+class ResponseRecorder extends HttpServletResponseWrapper {
+    private final StringBuilder body = new StringBuilder();
+    private PrintWriter writer;
+    private boolean streamed;
+
+    ResponseRecorder(HttpServletResponse response) {
+        super(response);
+    }
+
+    /** The body written so far, or null if it could not be recorded. */
+    String getBody() {
+        if (streamed) {
+            return null;
+        }
+        if (writer != null) {
+            writer.flush();
+        }
+        return body.toString();
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+        if (writer == null) {
+            Writer target = super.getWriter();
+            writer = new PrintWriter(new Writer() {
+                @Override
+                public void write(char[] cbuf, int off, int len) throws IOException {
+                    target.write(cbuf, off, len);
+                    body.append(cbuf, off, len);
+                }
+
+                @Override
+                public void write(String str, int off, int len) throws IOException {
+                    target.write(str, off, len);
+                    body.append(str, off, off + len);
+                }
+
+                @Override
+                public void flush() throws IOException {
+                    target.flush();
+                }
+
+                @Override
+                public void close() throws IOException {
+                    target.close();
+                }
+            });
+        }
+        return writer;
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+        streamed = true;
+        return super.getOutputStream();
+    }
+
+    @Override
+    public void resetBuffer() {
+        super.resetBuffer();
+        body.setLength(0);
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        body.setLength(0);
+    }
+}
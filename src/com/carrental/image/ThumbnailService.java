@@ -0,0 +1,299 @@
+package com.carrental.image;
+
+import com.carrental.dao.CarDAO;
+import com.carrental.util.log.Log;
+import com.carrental.util.log.Logger;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Width-bucketed JPEG thumbnails of the car images in WebContent/images.
+ *
+ * For every local car image narrower variants (320, 640 and 1280 pixels wide,
+ * smaller than the original only) are written next to it as
+ * name-&lt;width&gt;w-&lt;hash&gt;.jpg, where hash is taken from the original's
+ * bytes. A replaced original therefore gets new names, so the files can be
+ * cached forever; see {@link com.carrental.servlet.ImageServlet}.
+ *
+ * Work runs on one background thread, which also bounds the memory spent on
+ * decoded images. When new variants become known the car catalog version is
+ * bumped so the next GET /api/cars carries their srcset.
+ */
+public final class ThumbnailService {
+    private static final Logger log = Log.get(ThumbnailService.class);
+
+    public static final int[] WIDTHS = { 320, 640, 1280 };
+    /** Path thumbnails are served under, relative to the web root. */
+    public static final String URL_PREFIX = "img/";
+
+    private static final long MAX_SOURCE_BYTES = Long.getLong("carrental.images.maxSourceBytes", 20L * 1024 * 1024);
+    private static final long MAX_SOURCE_PIXELS = 50_000_000L;
+    private static final float JPEG_QUALITY = 0.82f;
+    private static final Pattern ORIGINAL_NAME = Pattern.compile("[A-Za-z0-9_.-]+\\.(?i:jpe?g|png|gif|bmp)");
+    private static final Pattern THUMBNAIL_NAME = Pattern.compile("[A-Za-z0-9_.-]+-\\d+w-[0-9a-f]{12}\\.jpg");
+
+    private static final Map<String, String> srcsets = new ConcurrentHashMap<>();
+    private static volatile File imagesDir;
+    private static volatile ThreadPoolExecutor worker;
+
+    private ThumbnailService() {
+    }
+
+    /** Starts the service for the given images directory. */
+    public static void init(File dir) {
+        if (dir == null || !dir.isDirectory()) {
+            log.warn("Images directory not found, thumbnails disabled", "dir", dir);
+            return;
+        }
+        imagesDir = dir;
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(1000), r -> {
+                    Thread t = new Thread(r, "carrental-thumbnails");
+                    t.setDaemon(true);
+                    return t;
+                });
+        worker = pool;
+    }
+
+    /** Queues thumbnail generation for car images; ones seen before are skipped cheaply. */
+    public static void submit(Collection<String> images) {
+        ThreadPoolExecutor pool = worker;
+        if (pool == null || images.isEmpty()) {
+            return;
+        }
+        Set<String> batch = new LinkedHashSet<>(images);
+        try {
+            pool.execute(() -> process(batch));
+        } catch (RejectedExecutionException e) {
+            log.warn("Thumbnail queue full, skipping images", "count", batch.size());
+        }
+    }
+
+    /** srcset attribute value for a car image, or "" when it has no thumbnails (yet). */
+    public static String srcset(String image) {
+        String name = originalName(image);
+        if (name == null) {
+            return "";
+        }
+        String srcset = srcsets.get(name);
+        return srcset != null ? srcset : "";
+    }
+
+    /** The thumbnail file with this name, or null when the name is not a thumbnail or it does not exist. */
+    public static File resolve(String name) {
+        File dir = imagesDir;
+        if (dir == null || name == null || !THUMBNAIL_NAME.matcher(name).matches()) {
+            return null;
+        }
+        File file = new File(dir, name);
+        return file.isFile() ? file : null;
+    }
+
+    public static int getIndexed() {
+        return srcsets.size();
+    }
+
+    public static void shutdown() {
+        ThreadPoolExecutor pool = worker;
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+
+    private static void process(Collection<String> images) {
+        boolean changed = false;
+        for (String image : images) {
+            String name = originalName(image);
+            if (name == null || srcsets.containsKey(name)) {
+                continue;
+            }
+            String srcset = null;
+            try {
+                srcset = generate(name);
+            } catch (IOException | RuntimeException e) {
+                log.warn("Could not create thumbnails", "image", name, "error", e.toString());
+            }
+            // Unusable originals are remembered too, so they are not read again on every catalog reload
+            srcsets.put(name, srcset != null ? srcset : "");
+            changed |= srcset != null && !srcset.isEmpty();
+        }
+        if (changed) {
+            CarDAO.touchCatalog();
+        }
+    }
+
+    /**
+     * Writes the missing variants of an original; returns its srcset, "" when
+     * it is too small to need any, or null if it cannot be read.
+     */
+    private static String generate(String name) throws IOException {
+        File original = new File(imagesDir, name);
+        if (!original.isFile() || original.length() > MAX_SOURCE_BYTES) {
+            return null;
+        }
+        byte[] data = Files.readAllBytes(original.toPath());
+        String hash = sha256Prefix(data);
+        String base = name.substring(0, name.lastIndexOf('.'));
+
+        ImageReader reader = null;
+        try (ImageInputStream in = ImageIO.createImageInputStream(new ByteArrayInputStream(data))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            reader = readers.next();
+            reader.setInput(in, true, true);
+            // Dimensions come from the header; pixels are only decoded if a variant is missing
+            int width = reader.getWidth(0);
+            int height = reader.getHeight(0);
+            if ((long) width * height > MAX_SOURCE_PIXELS) {
+                log.warn("Image too large for thumbnails", "image", name, "width", width, "height", height);
+                return null;
+            }
+
+            List<int[]> variants = new ArrayList<>();
+            for (int w : WIDTHS) {
+                if (w < width) {
+                    variants.add(new int[] { w, Math.max(1, (int) Math.round((double) height * w / width)) });
+                }
+            }
+            BufferedImage source = null;
+            // Largest first, each one scaled from the previous: cheaper and smoother than from the original
+            for (int i = variants.size() - 1; i >= 0; i--) {
+                int[] size = variants.get(i);
+                File target = new File(imagesDir, thumbnailName(base, size[0], hash));
+                if (target.isFile()) {
+                    source = null;
+                    continue;
+                }
+                if (source == null) {
+                    source = i + 1 < variants.size()
+                            ? ImageIO.read(new File(imagesDir, thumbnailName(base, variants.get(i + 1)[0], hash)))
+                            : reader.read(0);
+                }
+                source = scale(source, size[0], size[1]);
+                writeJpeg(source, target.toPath());
+            }
+
+            if (variants.isEmpty()) {
+                return "";
+            }
+            StringBuilder srcset = new StringBuilder();
+            for (int[] size : variants) {
+                srcset.append(URL_PREFIX).append(thumbnailName(base, size[0], hash)).append(' ').append(size[0]).append("w, ");
+            }
+            srcset.append("images/").append(name).append(' ').append(width).append('w');
+            return srcset.toString();
+        } finally {
+            if (reader != null) {
+                reader.dispose();
+            }
+        }
+    }
+
+    /** Bilinear steps of at most half the size each, so downscaling by 4x or more does not alias. */
+    static BufferedImage scale(BufferedImage src, int width, int height) {
+        BufferedImage current = src;
+        int w = src.getWidth();
+        int h = src.getHeight();
+        do {
+            w = w / 2 >= width ? w / 2 : width;
+            h = h / 2 >= height ? h / 2 : height;
+            BufferedImage next = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = next.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                // Transparent originals (PNG, GIF) get a white background
+                g.drawImage(current, 0, 0, w, h, Color.WHITE, null);
+            } finally {
+                g.dispose();
+            }
+            current = next;
+        } while (w != width || h != height);
+        return current;
+    }
+
+    /** Writes to a temporary file first so the servlet never sees a partial thumbnail. */
+    private static void writeJpeg(BufferedImage image, Path target) throws IOException {
+        Path tmp = target.resolveSibling("." + target.getFileName() + "." + System.nanoTime() + ".tmp");
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try {
+            try (ImageOutputStream out = ImageIO.createImageOutputStream(tmp.toFile())) {
+                writer.setOutput(out);
+                ImageWriteParam param = writer.getDefaultWriteParam();
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(JPEG_QUALITY);
+                writer.write(null, new IIOImage(image, null, null), param);
+            }
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            writer.dispose();
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /** File name inside the images directory for a car image value, or null for remote or odd paths. */
+    private static String originalName(String image) {
+        if (image == null) {
+            return null;
+        }
+        String name = image.trim();
+        if (name.startsWith("/")) {
+            name = name.substring(1);
+        }
+        if (name.startsWith("images/")) {
+            name = name.substring("images/".length());
+        }
+        return ORIGINAL_NAME.matcher(name).matches() && !name.contains("..") ? name : null;
+    }
+
+    static String thumbnailName(String base, int width, String hash) {
+        return base + "-" + width + "w-" + hash + ".jpg";
+    }
+
+    private static String sha256Prefix(byte[] data) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(data);
+            StringBuilder hex = new StringBuilder(12);
+            for (int i = 0; i < 6; i++) {
+                hex.append(Character.forDigit((digest[i] >> 4) & 0xF, 16))
+                        .append(Character.forDigit(digest[i] & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
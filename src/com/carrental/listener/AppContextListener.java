@@ -1,31 +1,61 @@
 package com.carrental.listener;
 
+import com.carrental.dao.BookingDAO;
+import com.carrental.dao.BookingStats;
+import com.carrental.dao.CarCatalogCache;
+import com.carrental.events.BookingEvents;
+import com.carrental.idempotency.IdempotencyStore;
+import com.carrental.image.ThumbnailService;
 import com.carrental.util.DBConnection;
+import com.carrental.util.DaoExecutor;
+import com.carrental.util.PasswordHasher;
+import com.carrental.util.log.Log;
+import com.carrental.util.log.Logger;
+
 import jakarta.servlet.ServletContextEvent;
 import jakarta.servlet.ServletContextListener;
 import jakarta.servlet.annotation.WebListener;
+import java.io.File;
 import java.sql.Connection;
+import java.sql.SQLException;
 
 @WebListener
 public class AppContextListener implements ServletContextListener {
+    private static final Logger log = Log.get(AppContextListener.class);
+
     @Override
     public void contextInitialized(ServletContextEvent sce) {
-        System.out.println("Application starting... Initializing Database.");
+        log.info("Application starting, initializing database");
+        // Trigger static block of DBConnection. Without a current schema every booking
+        // call would fail at runtime, so the application refuses to start instead.
         try {
-            // Trigger static block of DBConnection
             Connection conn = DBConnection.getConnection();
-            if (conn != null) {
-                System.out.println("Database connection established successfully.");
-                conn.close();
-            }
+            log.info("Database connection established");
+            conn.close();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Database initialization failed, not starting", e);
+        }
+        try {
+            BookingDAO.loadIntervalIndex();
+            BookingStats.rebuildIfEmpty();
+            IdempotencyStore.get().purgeExpired();
+            String images = sce.getServletContext().getRealPath("/images");
+            ThumbnailService.init(images != null ? new File(images) : null);
+            // Loading the catalog also queues thumbnails for images that have none yet
+            CarCatalogCache.get();
         } catch (Exception e) {
-            System.err.println("Failed to initialize database on startup:");
-            e.printStackTrace();
+            log.error("Failed to initialize database on startup", e);
         }
     }
 
     @Override
     public void contextDestroyed(ServletContextEvent sce) {
-        // Cleanup if needed
+        BookingEvents.get().shutdown();
+        DaoExecutor.shutdown();
+        PasswordHasher.shutdown();
+        ThumbnailService.shutdown();
+        DBConnection.shutdown();
+        // Last, so everything logged while stopping is written out
+        Log.shutdown();
     }
 }
@@ -0,0 +1,40 @@
+package com.carrental.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Process-wide registry of per-route request metrics, fed by MetricsFilter.
+ *
+ * Routes are keyed by servlet mapping pattern (e.g. "/api/bookings/*"), so the
+ * set is small and fixed once each endpoint has been hit; after that a lookup
+ * is a lock-free map read.
+ */
+public final class Metrics {
+
+    /** Route used for requests no API servlet mapped. */
+    public static final String UNMAPPED_ROUTE = "other";
+
+    private static final ConcurrentMap<String, RouteMetrics> routes = new ConcurrentHashMap<>();
+    private static final long startedAt = System.currentTimeMillis();
+
+    private Metrics() {
+    }
+
+    public static RouteMetrics route(String route) {
+        RouteMetrics metrics = routes.get(route);
+        return metrics != null ? metrics : routes.computeIfAbsent(route, RouteMetrics::new);
+    }
+
+    public static List<RouteMetrics> getRoutes() {
+        List<RouteMetrics> list = new ArrayList<>(routes.values());
+        list.sort((a, b) -> a.getRoute().compareTo(b.getRoute()));
+        return list;
+    }
+
+    public static long getStartedAt() {
+        return startedAt;
+    }
+}
@@ -0,0 +1,65 @@
+package com.carrental.metrics;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/** Counters for one servlet route: status codes, requests in flight and latency. */
+public class RouteMetrics {
+
+    private final String route;
+    // Indexed by status code; anything outside 100..599 is counted as 0
+    private final AtomicLongArray statuses = new AtomicLongArray(600);
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    RouteMetrics(String route) {
+        this.route = route;
+    }
+
+    public String getRoute() {
+        return route;
+    }
+
+    public void requestStarted() {
+        inFlight.incrementAndGet();
+    }
+
+    public void requestFinished(int status, long elapsedNanos) {
+        inFlight.decrementAndGet();
+        statuses.incrementAndGet(status >= 100 && status < 600 ? status : 0);
+        latency.recordNanos(elapsedNanos);
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getRequests() {
+        return latency.getCount();
+    }
+
+    /** Count of finished requests with this status code. */
+    public long getStatusCount(int status) {
+        return status >= 0 && status < 600 ? statuses.get(status) : 0;
+    }
+
+    /** Status codes seen so far, ascending. */
+    public int[] getStatusCodes() {
+        int n = 0;
+        int[] codes = new int[16];
+        for (int i = 0; i < 600; i++) {
+            if (statuses.get(i) > 0) {
+                if (n == codes.length) {
+                    codes = Arrays.copyOf(codes, n * 2);
+                }
+                codes[n++] = i;
+            }
+        }
+        return Arrays.copyOf(codes, n);
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+}
@@ -16,6 +16,10 @@ public class Booking {
     private String drivingLicensePath;
     private Timestamp createdAt;
     private String paymentStatus; // UNPAID, PAYMENT_REQUESTED, PAID
+    private int version; // bumped by every status or payment change
+    // Denormalized from the joined listing queries; not persisted
+    private String carName;
+    private String customerName;
 
     public Booking() {
     }
@@ -140,4 +144,28 @@ public class Booking {
     public void setPaymentStatus(String paymentStatus) {
         this.paymentStatus = paymentStatus;
     }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
+    public String getCarName() {
+        return carName;
+    }
+
+    public void setCarName(String carName) {
+        this.carName = carName;
+    }
+
+    public String getCustomerName() {
+        return customerName;
+    }
+
+    public void setCustomerName(String customerName) {
+        this.customerName = customerName;
+    }
 }
@@ -0,0 +1,24 @@
+package com.carrental.pricing;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Discounts long rentals. Tiers map a minimum number of billed days to a
+ * fraction off the running total; the largest tier reached applies.
+ */
+public class LengthDiscountRule implements PricingRule {
+    private final TreeMap<Long, Double> tiers;
+
+    public LengthDiscountRule(Map<Long, Double> tiers) {
+        this.tiers = new TreeMap<>(tiers);
+    }
+
+    @Override
+    public void apply(Quote quote) {
+        Map.Entry<Long, Double> tier = tiers.floorEntry(quote.getDays());
+        if (tier != null) {
+            quote.addAdjustment(tier.getKey() + "+ day discount", -quote.getRunningTotal() * tier.getValue());
+        }
+    }
+}
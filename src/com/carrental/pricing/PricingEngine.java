@@ -0,0 +1,136 @@
+package com.carrental.pricing;
+
+import com.carrental.model.Car;
+import com.carrental.util.log.Log;
+import com.carrental.util.log.Logger;
+
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Prices a rental from the car's daily base price and a chain of
+ * {@link PricingRule}s.
+ *
+ * Billed days are the started 24-hour periods from pickup, each attributed to
+ * the calendar day it starts on. Weekend days among them are counted in closed
+ * form from the pickup weekday, so a quote costs the same for a one-day and a
+ * one-year rental. Quotes have no side effects and depend only on their
+ * inputs.
+ */
+public class PricingEngine {
+    private static final Logger log = Log.get(PricingEngine.class);
+
+    private static final PricingEngine DEFAULT = fromSystemProperties();
+
+    private final List<PricingRule> rules;
+
+    public PricingEngine(List<PricingRule> rules) {
+        this.rules = Collections.unmodifiableList(new ArrayList<>(rules));
+    }
+
+    /**
+     * The engine used by the booking and quote endpoints, configured from
+     * system properties:
+     * carrental.pricing.weekendMultiplier (default 1.25),
+     * carrental.pricing.lengthDiscounts as minDays:fraction pairs, e.g. "7:0.05,30:0.15",
+     * carrental.pricing.typeSurcharges as TYPE:fraction pairs, e.g. "SUV:0.10,BIKE:-0.20".
+     * Discounts and surcharges are off unless configured.
+     */
+    public static PricingEngine getDefault() {
+        return DEFAULT;
+    }
+
+    public List<PricingRule> getRules() {
+        return rules;
+    }
+
+    public Quote quote(Car car, LocalDateTime pickup, LocalDateTime dropoff) {
+        long days = billedDays(pickup, dropoff);
+        Quote quote = new Quote(car.getId(), car.getType(), car.getPrice(), days,
+                countWeekendDays(pickup.toLocalDate(), days));
+        for (PricingRule rule : rules) {
+            rule.apply(quote);
+        }
+        return quote;
+    }
+
+    /** Started 24-hour periods between pickup and dropoff, at least one. */
+    public static long billedDays(LocalDateTime pickup, LocalDateTime dropoff) {
+        long hours = Duration.between(pickup, dropoff).toHours();
+        return Math.max(1, (hours + 23) / 24);
+    }
+
+    /** Saturdays and Sundays among the {@code days} consecutive dates starting at {@code start}. */
+    public static long countWeekendDays(LocalDate start, long days) {
+        if (days <= 0) {
+            return 0;
+        }
+        long weekends = (days / 7) * 2;
+        long remainder = days % 7;
+        int dow = start.getDayOfWeek().getValue(); // 1 = Monday .. 7 = Sunday
+        // Offsets from start of the next Saturday and Sunday within the partial week
+        int toSaturday = (DayOfWeek.SATURDAY.getValue() - dow + 7) % 7;
+        int toSunday = (DayOfWeek.SUNDAY.getValue() - dow + 7) % 7;
+        if (toSaturday < remainder) {
+            weekends++;
+        }
+        if (toSunday < remainder) {
+            weekends++;
+        }
+        return weekends;
+    }
+
+    private static PricingEngine fromSystemProperties() {
+        List<PricingRule> rules = new ArrayList<>();
+        double weekendMultiplier = 1.25;
+        try {
+            weekendMultiplier = Double.parseDouble(System.getProperty("carrental.pricing.weekendMultiplier", "1.25"));
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring invalid carrental.pricing.weekendMultiplier");
+        }
+        rules.add(new WeekendMultiplierRule(weekendMultiplier));
+
+        Map<Long, Double> tiers = new HashMap<>();
+        for (Map.Entry<String, Double> e : parsePairs("carrental.pricing.lengthDiscounts").entrySet()) {
+            try {
+                tiers.put(Long.parseLong(e.getKey()), e.getValue());
+            } catch (NumberFormatException ex) {
+                log.warn("Ignoring invalid length discount tier", "tier", e.getKey());
+            }
+        }
+        if (!tiers.isEmpty()) {
+            rules.add(new LengthDiscountRule(tiers));
+        }
+
+        Map<String, Double> surcharges = parsePairs("carrental.pricing.typeSurcharges");
+        if (!surcharges.isEmpty()) {
+            rules.add(new VehicleTypeSurchargeRule(surcharges));
+        }
+        return new PricingEngine(rules);
+    }
+
+    // "key:value,key:value" from a system property; malformed entries are skipped
+    private static Map<String, Double> parsePairs(String property) {
+        Map<String, Double> pairs = new HashMap<>();
+        String value = System.getProperty(property, "");
+        for (String entry : value.split(",")) {
+            int sep = entry.indexOf(':');
+            if (entry.trim().isEmpty()) {
+                continue;
+            }
+            try {
+                pairs.put(entry.substring(0, sep).trim(), Double.parseDouble(entry.substring(sep + 1).trim()));
+            } catch (RuntimeException e) {
+                log.warn("Ignoring invalid pricing entry", "property", property, "entry", entry);
+            }
+        }
+        return pairs;
+    }
+}
@@ -0,0 +1,10 @@
+package com.carrental.pricing;
+
+/**
+ * One step of a price calculation. Rules run in the order they were given to
+ * the {@link PricingEngine} and record their effect as adjustments on the
+ * quote, so later rules see the running total of earlier ones.
+ */
+public interface PricingRule {
+    void apply(Quote quote);
+}
@@ -0,0 +1,95 @@
+package com.carrental.pricing;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/** Price breakdown for renting one vehicle over one period. */
+public class Quote {
+    private final int carId;
+    private final String vehicleType;
+    private final double basePrice;
+    private final long days;
+    private final long weekendDays;
+    private final List<Adjustment> adjustments = new ArrayList<>();
+    private double runningTotal;
+
+    Quote(int carId, String vehicleType, double basePrice, long days, long weekendDays) {
+        this.carId = carId;
+        this.vehicleType = vehicleType;
+        this.basePrice = basePrice;
+        this.days = days;
+        this.weekendDays = weekendDays;
+        this.runningTotal = basePrice * days;
+    }
+
+    public int getCarId() {
+        return carId;
+    }
+
+    public String getVehicleType() {
+        return vehicleType;
+    }
+
+    public double getBasePrice() {
+        return basePrice;
+    }
+
+    /** Billed days: started 24-hour periods, at least one. */
+    public long getDays() {
+        return days;
+    }
+
+    public long getWeekendDays() {
+        return weekendDays;
+    }
+
+    public long getWeekdayDays() {
+        return days - weekendDays;
+    }
+
+    /** Base price times billed days, before any rule. */
+    public double getSubtotal() {
+        return basePrice * days;
+    }
+
+    /** Subtotal plus the adjustments recorded so far; rules price off this. */
+    public double getRunningTotal() {
+        return runningTotal;
+    }
+
+    public List<Adjustment> getAdjustments() {
+        return Collections.unmodifiableList(adjustments);
+    }
+
+    /** Final price, rounded to cents. */
+    public double getTotal() {
+        return Math.round(runningTotal * 100.0) / 100.0;
+    }
+
+    public void addAdjustment(String label, double amount) {
+        if (amount != 0.0) {
+            adjustments.add(new Adjustment(label, amount));
+            runningTotal += amount;
+        }
+    }
+
+    /** A named surcharge (positive) or discount (negative). */
+    public static class Adjustment {
+        private final String label;
+        private final double amount;
+
+        Adjustment(String label, double amount) {
+            this.label = label;
+            this.amount = amount;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public double getAmount() {
+            return amount;
+        }
+    }
+}
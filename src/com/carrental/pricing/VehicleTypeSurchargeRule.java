@@ -0,0 +1,25 @@
+package com.carrental.pricing;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/** Adds a fraction of the running total by vehicle type (negative for a discount). */
+public class VehicleTypeSurchargeRule implements PricingRule {
+    private final Map<String, Double> surcharges = new HashMap<>();
+
+    public VehicleTypeSurchargeRule(Map<String, Double> surcharges) {
+        for (Map.Entry<String, Double> e : surcharges.entrySet()) {
+            this.surcharges.put(e.getKey().toUpperCase(Locale.ROOT), e.getValue());
+        }
+    }
+
+    @Override
+    public void apply(Quote quote) {
+        String type = quote.getVehicleType() != null ? quote.getVehicleType().toUpperCase(Locale.ROOT) : "CAR";
+        Double fraction = surcharges.get(type);
+        if (fraction != null) {
+            quote.addAdjustment(type + " surcharge", quote.getRunningTotal() * fraction);
+        }
+    }
+}
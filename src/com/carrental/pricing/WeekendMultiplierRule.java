@@ -0,0 +1,15 @@
+package com.carrental.pricing;
+
+/** Charges weekend days (Saturday, Sunday) at a multiple of the base price. */
+public class WeekendMultiplierRule implements PricingRule {
+    private final double multiplier;
+
+    public WeekendMultiplierRule(double multiplier) {
+        this.multiplier = multiplier;
+    }
+
+    @Override
+    public void apply(Quote quote) {
+        quote.addAdjustment("Weekend surcharge", quote.getWeekendDays() * quote.getBasePrice() * (multiplier - 1.0));
+    }
+}
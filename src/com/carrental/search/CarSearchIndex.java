@@ -0,0 +1,654 @@
+package com.carrental.search;
+
+import com.carrental.dao.CarCatalogCache;
+import com.carrental.model.Car;
+import com.carrental.util.log.Log;
+import com.carrental.util.log.Logger;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory inverted index over the car catalog for GET /api/cars/search.
+ *
+ * Each car gets an ordinal in insertion order. Name, features and type are
+ * split into lowercase words, and every word maps to the sorted int array of
+ * ordinals containing it. A query walks the shortest list of its words and
+ * checks the others with cursors that only move forward; its last word also
+ * matches as a prefix, through a range of the sorted dictionary. Type, price bucket, price and
+ * sort name sit in per-ordinal arrays, so facet counts and ordering cost one
+ * array read per hit. Only the requested page is kept while scanning, in a
+ * heap of offset + limit entries.
+ *
+ * The index follows the catalog incrementally: {@link com.carrental.dao.CarDAO}
+ * adds a car after inserting it and removes it after deleting it. Removed
+ * ordinals are only marked; once they make up a quarter of the index it is
+ * compacted. Bulk imports call {@link #invalidate()}, and the next search
+ * rebuilds from {@link CarCatalogCache}. Searches share a read lock; changes
+ * take the write lock.
+ *
+ * Price buckets for the facet are set by carrental.search.priceBuckets, the
+ * ascending bucket bounds in per-day price (default 50,100,200,500).
+ */
+public final class CarSearchIndex {
+    private static final Logger log = Log.get(CarSearchIndex.class);
+
+    private static final CarSearchIndex INSTANCE = new CarSearchIndex();
+
+    private static final double[] PRICE_EDGES = parseEdges(
+            System.getProperty("carrental.search.priceBuckets", "50,100,200,500"));
+    private static final int COMPACT_MIN_DELETED = 1024;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Everything below is guarded by lock
+    private final TreeMap<String, Postings> terms = new TreeMap<>();
+    private final Map<Integer, Integer> ordById = new HashMap<>();
+    private final List<String> typeNames = new ArrayList<>();
+    private final Map<String, Integer> typeOrds = new HashMap<>();
+    private final BitSet deleted = new BitSet();
+    private Car[] cars = new Car[256];
+    private String[] sortNames = new String[256];
+    private int[][] nameTerms = new int[256][];
+    private double[] prices = new double[256];
+    private byte[] typeOf = new byte[256];
+    private byte[] bucketOf = new byte[256];
+    private int size;
+    private int deletedCount;
+    private int termCount;
+    private boolean built;
+
+    /** Ordinals of the cars containing one word, ascending, under a dictionary id. */
+    private static final class Postings {
+        final int id;
+        int[] ords = new int[4];
+        int size;
+
+        Postings(int id) {
+            this.id = id;
+        }
+
+        void add(int ord) {
+            if (size > 0 && ords[size - 1] == ord) {
+                return;
+            }
+            if (size == ords.length) {
+                ords = Arrays.copyOf(ords, size * 2);
+            }
+            ords[size++] = ord;
+        }
+    }
+
+    /** Ranks hits by ordinal and relevance score: negative when a comes before b. */
+    private interface Order {
+        int compare(int a, int scoreA, int b, int scoreB);
+    }
+
+    public CarSearchIndex() {
+    }
+
+    /** The index of the live catalog. */
+    public static CarSearchIndex get() {
+        return INSTANCE;
+    }
+
+    public static int getPriceBucketCount() {
+        return PRICE_EDGES.length + 1;
+    }
+
+    /** "0-50", "50-100", ..., "500+". */
+    public static String getPriceBucketLabel(int bucket) {
+        String low = bucket == 0 ? "0" : format(PRICE_EDGES[bucket - 1]);
+        return bucket == PRICE_EDGES.length ? low + "+" : low + "-" + format(PRICE_EDGES[bucket]);
+    }
+
+    /** Bucket index for a label from {@link #getPriceBucketLabel}, or -1. */
+    public static int parsePriceBucket(String label) {
+        for (int i = 0; i <= PRICE_EDGES.length; i++) {
+            if (getPriceBucketLabel(i).equals(label)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /** Replaces the contents with these cars. */
+    public void rebuild(List<Car> catalog) {
+        lock.writeLock().lock();
+        try {
+            load(catalog);
+            built = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Indexes a car that was just added. Ignored until the index is first built, which will include it. */
+    public void add(Car car) {
+        lock.writeLock().lock();
+        try {
+            if (built && !ordById.containsKey(car.getId())) {
+                index(car);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Drops a deleted car. */
+    public void remove(int carId) {
+        lock.writeLock().lock();
+        try {
+            Integer ord = ordById.remove(carId);
+            if (ord == null) {
+                return;
+            }
+            deleted.set(ord);
+            cars[ord] = null;
+            deletedCount++;
+            if (deletedCount >= COMPACT_MIN_DELETED && deletedCount * 4 >= size) {
+                compact();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Makes the next search rebuild from the catalog, after changes too many to apply one by one. */
+    public void invalidate() {
+        lock.writeLock().lock();
+        try {
+            built = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size - deletedCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public CarSearchResult search(CarSearchQuery query) throws SQLException {
+        ensureBuilt();
+        lock.readLock().lock();
+        try {
+            return run(query);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Like {@link #search}, but returns null instead of rebuilding an invalidated index. */
+    public CarSearchResult searchIfBuilt(CarSearchQuery query) {
+        lock.readLock().lock();
+        try {
+            return built ? run(query) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Lowercase words of letters and digits. */
+    static List<String> tokenize(String text) {
+        List<String> words = new ArrayList<>();
+        if (text == null) {
+            return words;
+        }
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                words.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return words;
+    }
+
+    private void ensureBuilt() throws SQLException {
+        lock.readLock().lock();
+        try {
+            if (built) {
+                return;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        lock.writeLock().lock();
+        try {
+            if (!built) {
+                long started = System.nanoTime();
+                load(CarCatalogCache.get().getCars());
+                built = true;
+                log.info("Built car search index", "cars", size, "words", terms.size(),
+                        "ms", (System.nanoTime() - started) / 1_000_000);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void load(List<Car> catalog) {
+        terms.clear();
+        ordById.clear();
+        deleted.clear();
+        size = 0;
+        deletedCount = 0;
+        termCount = 0;
+        int capacity = Math.max(256, catalog.size() + catalog.size() / 4);
+        cars = new Car[capacity];
+        sortNames = new String[capacity];
+        nameTerms = new int[capacity][];
+        prices = new double[capacity];
+        typeOf = new byte[capacity];
+        bucketOf = new byte[capacity];
+        for (Car car : catalog) {
+            if (!ordById.containsKey(car.getId())) {
+                index(car);
+            }
+        }
+    }
+
+    private void compact() {
+        List<Car> live = new ArrayList<>(size - deletedCount);
+        for (int ord = 0; ord < size; ord++) {
+            if (!deleted.get(ord)) {
+                live.add(cars[ord]);
+            }
+        }
+        load(live);
+    }
+
+    private void index(Car car) {
+        if (size == cars.length) {
+            int capacity = size * 2;
+            cars = Arrays.copyOf(cars, capacity);
+            sortNames = Arrays.copyOf(sortNames, capacity);
+            nameTerms = Arrays.copyOf(nameTerms, capacity);
+            prices = Arrays.copyOf(prices, capacity);
+            typeOf = Arrays.copyOf(typeOf, capacity);
+            bucketOf = Arrays.copyOf(bucketOf, capacity);
+        }
+        int ord = size++;
+        String name = car.getName() != null ? car.getName() : "";
+        String type = car.getType() != null ? car.getType().toUpperCase(Locale.ROOT) : "CAR";
+        cars[ord] = car;
+        sortNames[ord] = name.toLowerCase(Locale.ROOT);
+        prices[ord] = car.getPrice();
+        typeOf[ord] = (byte) typeOrd(type);
+        bucketOf[ord] = (byte) priceBucket(car.getPrice());
+        ordById.put(car.getId(), ord);
+
+        List<String> words = tokenize(name);
+        int[] ids = new int[words.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = post(words.get(i), ord).id;
+        }
+        nameTerms[ord] = ids;
+        for (String word : tokenize(car.getFeatures())) {
+            post(word, ord);
+        }
+        post(type.toLowerCase(Locale.ROOT), ord);
+    }
+
+    private Postings post(String word, int ord) {
+        Postings postings = terms.get(word);
+        if (postings == null) {
+            postings = new Postings(termCount++);
+            terms.put(word, postings);
+        }
+        postings.add(ord);
+        return postings;
+    }
+
+    private int typeOrd(String type) {
+        Integer ord = typeOrds.get(type);
+        if (ord == null) {
+            if (typeNames.size() == Byte.MAX_VALUE) {
+                // Types are a short fixed list; lump anything past 127 together rather than overflow
+                return Byte.MAX_VALUE - 1;
+            }
+            ord = typeNames.size();
+            typeNames.add(type);
+            typeOrds.put(type, ord);
+        }
+        return ord;
+    }
+
+    private CarSearchResult run(CarSearchQuery query) {
+        List<String> words = tokenize(query.getText());
+
+        // Every word but the last must match exactly; the last is a prefix
+        List<Postings> exact = new ArrayList<>();
+        long[] prefixHits = null;
+        // Dictionary ids of the query words, which score when they appear in a name
+        long[] scoreTerms = new long[(termCount + 63) >>> 6];
+        for (int i = 0; i < words.size(); i++) {
+            String word = words.get(i);
+            if (i < words.size() - 1) {
+                Postings postings = terms.get(word);
+                if (postings == null) {
+                    return empty();
+                }
+                exact.add(postings);
+                scoreTerms[postings.id >>> 6] |= 1L << postings.id;
+                continue;
+            }
+            SortedMap<String, Postings> range = terms.subMap(word, word + Character.MAX_VALUE);
+            if (range.isEmpty()) {
+                return empty();
+            }
+            for (Postings postings : range.values()) {
+                scoreTerms[postings.id >>> 6] |= 1L << postings.id;
+            }
+            if (range.size() == 1) {
+                exact.add(range.values().iterator().next());
+            } else {
+                // A plain bitmap: this loop touches every posting of every word in the range
+                prefixHits = new long[(size + 63) >>> 6];
+                for (Postings postings : range.values()) {
+                    int[] ords = postings.ords;
+                    for (int j = 0; j < postings.size; j++) {
+                        prefixHits[ords[j] >>> 6] |= 1L << ords[j];
+                    }
+                }
+            }
+        }
+        exact.sort((a, b) -> Integer.compare(a.size, b.size));
+
+        boolean scored = query.getSort() == CarSearchQuery.Sort.RELEVANCE && !words.isEmpty();
+        Scan scan = new Scan(query, scored ? scoreTerms : null);
+        if (!exact.isEmpty()) {
+            // Walk the shortest list; the others are only asked about ascending ordinals
+            Postings driver = exact.get(0);
+            Cursor[] others = new Cursor[exact.size() - 1];
+            for (int i = 1; i < exact.size(); i++) {
+                others[i - 1] = new Cursor(exact.get(i));
+            }
+            int[] ords = driver.ords;
+            for (int i = 0; i < driver.size; i++) {
+                int ord = ords[i];
+                if (containsAll(others, ord) && (prefixHits == null || (prefixHits[ord >>> 6] & 1L << ord) != 0)) {
+                    scan.collect(ord);
+                }
+            }
+        } else if (prefixHits != null) {
+            for (int i = 0; i < prefixHits.length; i++) {
+                for (long bits = prefixHits[i]; bits != 0; bits &= bits - 1) {
+                    scan.collect(i << 6 | Long.numberOfTrailingZeros(bits));
+                }
+            }
+        } else {
+            for (int ord = 0; ord < size; ord++) {
+                scan.collect(ord);
+            }
+        }
+        return scan.result(query.getOffset());
+    }
+
+    private static boolean containsAll(Cursor[] cursors, int ord) {
+        for (Cursor cursor : cursors) {
+            if (!cursor.advanceTo(ord)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // How many words of the car's name are query words (the last query word as a prefix)
+    private int nameScore(int ord, long[] scoreTerms) {
+        int score = 0;
+        for (int term : nameTerms[ord]) {
+            score += (int) (scoreTerms[term >>> 6] >>> term) & 1;
+        }
+        return score;
+    }
+
+    /** Filters, facet counts and page heap of one search, fed the ordinals that match its words. */
+    private final class Scan {
+        // 1 where allowed, so the facet counts need no branches
+        final int[] typeAllowed = new int[Byte.MAX_VALUE];
+        final int[] bucketAllowed = new int[getPriceBucketCount()];
+        final boolean priceRange;
+        final double minPrice;
+        final double maxPrice;
+        final long[] scoreTerms;
+        final int[] typeCounts = new int[typeNames.size()];
+        final int[] priceCounts = new int[getPriceBucketCount()];
+        final TopK top;
+        int total;
+
+        Scan(CarSearchQuery query, long[] scoreTerms) {
+            Arrays.fill(typeAllowed, query.getTypes().isEmpty() ? 1 : 0);
+            for (String type : query.getTypes()) {
+                Integer ord = typeOrds.get(type);
+                if (ord != null) {
+                    typeAllowed[ord] = 1;
+                }
+            }
+            Arrays.fill(bucketAllowed, query.getPriceBuckets().isEmpty() ? 1 : 0);
+            for (int bucket : query.getPriceBuckets()) {
+                if (bucket >= 0 && bucket < bucketAllowed.length) {
+                    bucketAllowed[bucket] = 1;
+                }
+            }
+            priceRange = query.getMinPrice() != null || query.getMaxPrice() != null;
+            minPrice = query.getMinPrice() != null ? query.getMinPrice() : Double.NEGATIVE_INFINITY;
+            maxPrice = query.getMaxPrice() != null ? query.getMaxPrice() : Double.POSITIVE_INFINITY;
+            this.scoreTerms = scoreTerms;
+            top = new TopK(query.getOffset() + query.getLimit(), order(query.getSort()));
+        }
+
+        void collect(int ord) {
+            if (deleted.get(ord)) {
+                return;
+            }
+            int type = typeOf[ord];
+            int bucket = bucketOf[ord];
+            int typeOk = typeAllowed[type];
+            int priceOk = bucketAllowed[bucket];
+            if (priceRange && (prices[ord] < minPrice || prices[ord] > maxPrice)) {
+                priceOk = 0;
+            }
+            // Each facet counts the matches of every other filter
+            typeCounts[type] += priceOk;
+            priceCounts[bucket] += typeOk;
+            if ((typeOk & priceOk) != 0) {
+                total++;
+                top.offer(ord, scoreTerms != null ? nameScore(ord, scoreTerms) : 0);
+            }
+        }
+
+        CarSearchResult result(int offset) {
+            int[] ranked = top.drain();
+            List<Car> page = new ArrayList<>();
+            for (int i = offset; i < ranked.length; i++) {
+                page.add(cars[ranked[i]]);
+            }
+            SortedMap<String, Integer> types = new TreeMap<>();
+            for (int i = 0; i < typeCounts.length; i++) {
+                if (typeCounts[i] > 0) {
+                    types.put(typeNames.get(i), typeCounts[i]);
+                }
+            }
+            return new CarSearchResult(total, page, types, priceCounts);
+        }
+    }
+
+    /** Membership test on a postings list for ordinals asked in ascending order: it only moves forward. */
+    private static final class Cursor {
+        final int[] ords;
+        final int size;
+        int pos;
+
+        Cursor(Postings postings) {
+            this.ords = postings.ords;
+            this.size = postings.size;
+        }
+
+        boolean advanceTo(int ord) {
+            // Gallop to an entry at least ord, then binary search the last stride
+            int bound = 1;
+            while (pos + bound < size && ords[pos + bound] < ord) {
+                bound <<= 1;
+            }
+            int found = Arrays.binarySearch(ords, pos, Math.min(pos + bound + 1, size), ord);
+            pos = found >= 0 ? found : -found - 1;
+            return found >= 0;
+        }
+    }
+
+    private Order order(CarSearchQuery.Sort sort) {
+        Order byName = (a, scoreA, b, scoreB) -> {
+            int c = sortNames[a].compareTo(sortNames[b]);
+            return c != 0 ? c : Integer.compare(cars[a].getId(), cars[b].getId());
+        };
+        switch (sort) {
+        case PRICE_ASC:
+            return (a, scoreA, b, scoreB) -> {
+                int c = Double.compare(prices[a], prices[b]);
+                return c != 0 ? c : byName.compare(a, 0, b, 0);
+            };
+        case PRICE_DESC:
+            return (a, scoreA, b, scoreB) -> {
+                int c = Double.compare(prices[b], prices[a]);
+                return c != 0 ? c : byName.compare(a, 0, b, 0);
+            };
+        case RELEVANCE:
+            // Scores are 0 when there is no text, which leaves the name order
+            return (a, scoreA, b, scoreB) -> {
+                int c = Integer.compare(scoreB, scoreA);
+                return c != 0 ? c : byName.compare(a, 0, b, 0);
+            };
+        default:
+            return byName;
+        }
+    }
+
+    private CarSearchResult empty() {
+        return new CarSearchResult(0, new ArrayList<>(), new TreeMap<>(), new int[getPriceBucketCount()]);
+    }
+
+    private static int priceBucket(double price) {
+        int bucket = 0;
+        while (bucket < PRICE_EDGES.length && price >= PRICE_EDGES[bucket]) {
+            bucket++;
+        }
+        return bucket;
+    }
+
+    private static double[] parseEdges(String spec) {
+        String[] parts = spec.split(",");
+        double[] edges = new double[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            edges[i] = Double.parseDouble(parts[i].trim());
+            if (i > 0 && edges[i] <= edges[i - 1]) {
+                throw new IllegalArgumentException("carrental.search.priceBuckets must be ascending: " + spec);
+            }
+        }
+        return edges;
+    }
+
+    private static String format(double value) {
+        return BigDecimal.valueOf(value).stripTrailingZeros().toPlainString();
+    }
+
+    /** Keeps the k best-ranked ordinals seen, in a heap with the worst of them at the root. */
+    private static final class TopK {
+        final int[] heap;
+        final int[] scores;
+        final Order order;
+        int size;
+
+        TopK(int k, Order order) {
+            this.heap = new int[k];
+            this.scores = new int[k];
+            this.order = order;
+        }
+
+        void offer(int ord, int score) {
+            if (size < heap.length) {
+                heap[size] = ord;
+                scores[size] = score;
+                siftUp(size++);
+            } else if (order.compare(ord, score, heap[0], scores[0]) < 0) {
+                heap[0] = ord;
+                scores[0] = score;
+                siftDown(0);
+            }
+        }
+
+        /** The kept ordinals, best first. Empties the heap. */
+        int[] drain() {
+            int[] ranked = new int[size];
+            while (size > 0) {
+                ranked[size - 1] = heap[0];
+                size--;
+                heap[0] = heap[size];
+                scores[0] = scores[size];
+                siftDown(0);
+            }
+            return ranked;
+        }
+
+        private int compare(int i, int j) {
+            return order.compare(heap[i], scores[i], heap[j], scores[j]);
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (compare(i, parent) <= 0) {
+                    return;
+                }
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int worst = i;
+                int left = 2 * i + 1;
+                int right = left + 1;
+                if (left < size && compare(left, worst) > 0) {
+                    worst = left;
+                }
+                if (right < size && compare(right, worst) > 0) {
+                    worst = right;
+                }
+                if (worst == i) {
+                    return;
+                }
+                swap(i, worst);
+                i = worst;
+            }
+        }
+
+        private void swap(int i, int j) {
+            int t = heap[i];
+            heap[i] = heap[j];
+            heap[j] = t;
+            t = scores[i];
+            scores[i] = scores[j];
+            scores[j] = t;
+        }
+    }
+}
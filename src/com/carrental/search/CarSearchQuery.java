@@ -0,0 +1,96 @@
+package com.carrental.search;
+
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/** Text, facet filters, order and page for {@link CarSearchIndex#search(CarSearchQuery)}. */
+public class CarSearchQuery {
+    public static final int DEFAULT_LIMIT = 20;
+    public static final int MAX_LIMIT = 100;
+    public static final int MAX_OFFSET = 10_000;
+
+    public enum Sort {
+        /** Cars whose name contains more of the query terms first, then by name. */
+        RELEVANCE,
+        NAME,
+        PRICE_ASC,
+        PRICE_DESC
+    }
+
+    private String text;
+    private final Set<String> types = new HashSet<>();
+    private final Set<Integer> priceBuckets = new HashSet<>();
+    private Double minPrice;
+    private Double maxPrice;
+    private Sort sort = Sort.RELEVANCE;
+    private int limit = DEFAULT_LIMIT;
+    private int offset;
+
+    public String getText() {
+        return text;
+    }
+
+    /** Words to look for in name, features and type; the last one also matches as a prefix. */
+    public void setText(String text) {
+        this.text = text;
+    }
+
+    public Set<String> getTypes() {
+        return types;
+    }
+
+    /** Restricts to the given types (any of them); no types means all. */
+    public void addType(String type) {
+        types.add(type.toUpperCase(Locale.ROOT));
+    }
+
+    public Set<Integer> getPriceBuckets() {
+        return priceBuckets;
+    }
+
+    /** Restricts to the given price facet buckets (any of them), by index. */
+    public void addPriceBucket(int bucket) {
+        priceBuckets.add(bucket);
+    }
+
+    public Double getMinPrice() {
+        return minPrice;
+    }
+
+    public void setMinPrice(Double minPrice) {
+        this.minPrice = minPrice;
+    }
+
+    public Double getMaxPrice() {
+        return maxPrice;
+    }
+
+    public void setMaxPrice(Double maxPrice) {
+        this.maxPrice = maxPrice;
+    }
+
+    public Sort getSort() {
+        return sort;
+    }
+
+    public void setSort(Sort sort) {
+        this.sort = sort;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public void setLimit(int limit) {
+        this.limit = Math.max(1, Math.min(limit, MAX_LIMIT));
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public void setOffset(int offset) {
+        this.offset = Math.max(0, Math.min(offset, MAX_OFFSET));
+    }
+}
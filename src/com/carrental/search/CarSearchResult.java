@@ -0,0 +1,43 @@
+package com.carrental.search;
+
+import com.carrental.model.Car;
+
+import java.util.List;
+import java.util.SortedMap;
+
+/** One page of search hits with facet counts over all of them. */
+public class CarSearchResult {
+    private final int total;
+    private final List<Car> cars;
+    private final SortedMap<String, Integer> typeCounts;
+    private final int[] priceCounts;
+
+    CarSearchResult(int total, List<Car> cars, SortedMap<String, Integer> typeCounts, int[] priceCounts) {
+        this.total = total;
+        this.cars = cars;
+        this.typeCounts = typeCounts;
+        this.priceCounts = priceCounts;
+    }
+
+    /** Number of cars matching the text and all filters. */
+    public int getTotal() {
+        return total;
+    }
+
+    public List<Car> getCars() {
+        return cars;
+    }
+
+    /**
+     * Matches per type, ignoring the type filter (but not the others), so a
+     * client can offer the other types with their counts.
+     */
+    public SortedMap<String, Integer> getTypeCounts() {
+        return typeCounts;
+    }
+
+    /** Matches per price bucket (see {@link CarSearchIndex#getPriceBucketLabel}), ignoring the price filters. */
+    public int[] getPriceCounts() {
+        return priceCounts;
+    }
+}
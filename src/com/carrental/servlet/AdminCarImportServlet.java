@@ -0,0 +1,307 @@
+package com.carrental.servlet;
+
+import com.carrental.dao.CarDAO;
+import com.carrental.dao.CarImportReport;
+import com.carrental.model.Car;
+import com.carrental.model.User;
+import com.carrental.util.DaoExecutor;
+import com.carrental.util.csv.CsvFormatException;
+import com.carrental.util.csv.CsvReader;
+import com.carrental.util.json.JsonBody;
+import com.carrental.util.json.JsonParseException;
+import com.carrental.util.json.JsonWriter;
+import com.carrental.util.log.Log;
+import com.carrental.util.log.Logger;
+
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * POST /api/admin/cars/import: bulk-adds cars from a CSV (text/csv, header row
+ * required) or NDJSON (application/x-ndjson, one object per line) upload.
+ * Columns/fields are the ones AdminCarServlet accepts. The body is parsed and
+ * validated row by row as it streams in and inserted in batches; invalid rows
+ * are listed in the response without stopping the import. Runs ungated: only
+ * the batch inserts take a database slot, not reading the upload.
+ */
+@WebServlet(urlPatterns = "/api/admin/cars/import", asyncSupported = true)
+public class AdminCarImportServlet extends HttpServlet {
+    private static final Logger log = Log.get(AdminCarImportServlet.class);
+
+    private CarDAO carDAO = new CarDAO();
+
+    // Longest NDJSON line accepted, in characters
+    private static final int MAX_LINE_CHARS = JsonBody.DEFAULT_MAX_CHARS;
+
+    @Override
+    protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        DaoExecutor.dispatchUngated(req, resp, this::handlePost);
+    }
+
+    private void handlePost(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+
+        resp.setContentType("application/json");
+        resp.setCharacterEncoding("UTF-8");
+
+        // Check if user is authenticated and has admin role
+        HttpSession session = req.getSession(false);
+        User user = null;
+        if (session != null) {
+            user = (User) session.getAttribute("user");
+        }
+
+        if (user == null || !user.getRole().equals("ADMIN")) {
+            resp.setStatus(HttpServletResponse.SC_FORBIDDEN);
+            JsonWriter.writeResult(resp.getWriter(), false, "Admin access required");
+            return;
+        }
+
+        if (req.getCharacterEncoding() == null) {
+            req.setCharacterEncoding("UTF-8");
+        }
+        String format = req.getParameter("format");
+        if (format == null) {
+            String contentType = req.getContentType() != null ? req.getContentType().toLowerCase(Locale.ROOT) : "";
+            format = contentType.contains("csv") ? "csv"
+                    : contentType.contains("ndjson") || contentType.contains("jsonl") ? "ndjson" : "";
+        }
+
+        CarDAO.CarRowSource source;
+        try {
+            if ("csv".equals(format)) {
+                source = new CsvSource(new CsvReader(req.getReader()));
+            } else if ("ndjson".equals(format)) {
+                source = new NdjsonSource(new BufferedReader(req.getReader()));
+            } else {
+                resp.setStatus(HttpServletResponse.SC_UNSUPPORTED_MEDIA_TYPE);
+                JsonWriter.writeResult(resp.getWriter(), false, "Upload text/csv or application/x-ndjson");
+                return;
+            }
+        } catch (CsvFormatException | IllegalArgumentException e) {
+            resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            JsonWriter.writeResult(resp.getWriter(), false, "Invalid CSV header: " + e.getMessage());
+            return;
+        }
+
+        CarImportReport report;
+        try {
+            report = carDAO.importCars(source);
+        } catch (SQLException e) {
+            log.error("Car import failed", e);
+            resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            JsonWriter.writeResult(resp.getWriter(), false, "Import failed: " + e.getMessage());
+            return;
+        }
+
+        JsonWriter json = new JsonWriter(resp.getWriter());
+        json.beginObject()
+                .field("success", true)
+                .field("imported", report.getImported())
+                .field("failed", report.getFailed())
+                .field("errorsTruncated", report.isTruncated())
+                .name("errors").beginArray();
+        for (CarImportReport.RowError error : report.getErrors()) {
+            json.beginObject()
+                    .field("row", error.getRow())
+                    .field("message", error.getMessage())
+                    .endObject();
+        }
+        json.endArray().endObject();
+        json.flush();
+    }
+
+    /**
+     * Same rules and defaults as a single add through AdminCarServlet; returns
+     * null and reports the row when it is invalid.
+     */
+    static Car toCar(Map<String, String> fields, int row, CarImportReport report) {
+        String name = trimToNull(fields.get("name"));
+        String priceStr = trimToNull(fields.get("price"));
+        if (name == null || priceStr == null) {
+            report.addError(row, "Name and price are required");
+            return null;
+        }
+        double price;
+        try {
+            price = Double.parseDouble(priceStr);
+        } catch (NumberFormatException e) {
+            report.addError(row, "Invalid price format");
+            return null;
+        }
+        if (!(price >= 0) || Double.isInfinite(price)) {
+            report.addError(row, "Price must be a non-negative number");
+            return null;
+        }
+        String image = trimToNull(fields.get("image"));
+        String features = trimToNull(fields.get("features"));
+        String type = trimToNull(fields.get("type"));
+        String registrationNumber = trimToNull(fields.get("registrationNumber"));
+        if (name.length() > 255 || (type != null && type.length() > 50)
+                || (registrationNumber != null && registrationNumber.length() > 100)) {
+            report.addError(row, "Name, type or registration number is too long");
+            return null;
+        }
+        return new Car(0, name, price,
+                image != null ? image : "images/default.jpg",
+                features != null ? features : "Standard Features",
+                type != null ? type : "CAR",
+                registrationNumber != null ? registrationNumber : "");
+    }
+
+    private static String trimToNull(String value) {
+        if (value == null) {
+            return null;
+        }
+        value = value.trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    // CSV with a header row naming the columns; unknown columns are ignored
+    private static final class CsvSource implements CarDAO.CarRowSource {
+        private final CsvReader csv;
+        private final String[] columns;
+        private final Map<String, String> fields = new HashMap<>();
+        private int row;
+
+        CsvSource(CsvReader csv) throws IOException {
+            this.csv = csv;
+            List<String> header = csv.readRecord();
+            if (header == null) {
+                throw new IllegalArgumentException("empty upload");
+            }
+            columns = new String[header.size()];
+            boolean hasName = false;
+            boolean hasPrice = false;
+            for (int i = 0; i < columns.length; i++) {
+                String column = header.get(i).trim();
+                // Spreadsheet exports often start with a byte order mark
+                if (i == 0 && column.startsWith("\uFEFF")) {
+                    column = column.substring(1);
+                }
+                // Accept the database spelling of registration_number too
+                String key = column.toLowerCase(Locale.ROOT);
+                columns[i] = "registration_number".equals(key) || "registrationnumber".equals(key)
+                        ? "registrationNumber" : key;
+                hasName |= "name".equals(columns[i]);
+                hasPrice |= "price".equals(columns[i]);
+            }
+            if (!hasName || !hasPrice) {
+                throw new IllegalArgumentException("name and price columns are required");
+            }
+        }
+
+        @Override
+        public Car next(CarImportReport report) throws IOException {
+            while (true) {
+                List<String> record;
+                try {
+                    record = csv.readRecord();
+                } catch (CsvFormatException e) {
+                    // The reader cannot resynchronize; report it and stop
+                    report.addError(csv.getRecordLine(), e.getMessage());
+                    return null;
+                }
+                if (record == null) {
+                    return null;
+                }
+                row = csv.getRecordLine();
+                if (record.size() > columns.length) {
+                    report.addError(row, "Expected at most " + columns.length + " fields, found " + record.size());
+                    continue;
+                }
+                fields.clear();
+                for (int i = 0; i < record.size(); i++) {
+                    fields.put(columns[i], record.get(i));
+                }
+                Car car = toCar(fields, row, report);
+                if (car != null) {
+                    return car;
+                }
+            }
+        }
+
+        @Override
+        public int getRow() {
+            return row;
+        }
+    }
+
+    // One flat JSON object per line; blank lines are skipped
+    private static final class NdjsonSource implements CarDAO.CarRowSource {
+        private final BufferedReader reader;
+        private final StringBuilder line = new StringBuilder(256);
+        private int lineNumber;
+        private int row;
+
+        NdjsonSource(BufferedReader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public Car next(CarImportReport report) throws IOException {
+            while (true) {
+                int status = readLine();
+                if (status < 0) {
+                    return null;
+                }
+                if (status == 0) {
+                    report.addError(lineNumber, "Line exceeds " + MAX_LINE_CHARS + " characters");
+                    continue;
+                }
+                if (line.toString().trim().isEmpty()) {
+                    continue;
+                }
+                JsonBody body;
+                try {
+                    body = JsonBody.parse(new StringReader(line.toString()), MAX_LINE_CHARS);
+                } catch (JsonParseException e) {
+                    report.addError(lineNumber, "Invalid JSON: " + e.getMessage());
+                    continue;
+                }
+                row = lineNumber;
+                Car car = toCar(body.asMap(), row, report);
+                if (car != null) {
+                    return car;
+                }
+            }
+        }
+
+        @Override
+        public int getRow() {
+            return row;
+        }
+
+        // Reads the next line into the buffer: 1 when read, 0 when it was too long
+        // (the rest is skipped), -1 at end of input
+        private int readLine() throws IOException {
+            line.setLength(0);
+            boolean tooLong = false;
+            int c = reader.read();
+            if (c == -1) {
+                return -1;
+            }
+            lineNumber++;
+            while (c != -1 && c != '\n') {
+                if (line.length() < MAX_LINE_CHARS) {
+                    line.append((char) c);
+                } else {
+                    tooLong = true;
+                }
+                c = reader.read();
+            }
+            return tooLong ? 0 : 1;
+        }
+    }
+}
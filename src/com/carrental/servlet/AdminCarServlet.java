@@ -3,6 +3,10 @@ package com.carrental.servlet;
 import com.carrental.dao.CarDAO;
 import com.carrental.model.Car;
 import com.carrental.model.User;
+import com.carrental.util.DaoExecutor;
+import com.carrental.util.json.JsonBody;
+import com.carrental.util.json.JsonParseException;
+import com.carrental.util.json.JsonWriter;
 
 import jakarta.servlet.ServletException;
 import jakarta.servlet.annotation.WebServlet;
@@ -10,15 +14,18 @@ import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpSession;
-import java.io.BufferedReader;
 import java.io.IOException;
 
-@WebServlet("/api/admin/cars")
+@WebServlet(urlPatterns = "/api/admin/cars", asyncSupported = true)
 public class AdminCarServlet extends HttpServlet {
     private CarDAO carDAO = new CarDAO();
 
     @Override
     protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        DaoExecutor.dispatch(req, resp, this::handlePost);
+    }
+
+    private void handlePost(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
 
         resp.setContentType("application/json");
         resp.setCharacterEncoding("UTF-8");
@@ -32,30 +39,29 @@ public class AdminCarServlet extends HttpServlet {
 
         if (user == null || !user.getRole().equals("ADMIN")) {
             resp.setStatus(HttpServletResponse.SC_FORBIDDEN);
-            resp.getWriter().write("{\"success\":false, \"message\":\"Admin access required\"}");
+            JsonWriter.writeResult(resp.getWriter(), false, "Admin access required");
             return;
         }
 
-        // Read request body
-        StringBuilder sb = new StringBuilder();
-        BufferedReader reader = req.getReader();
-        String line;
-        while ((line = reader.readLine()) != null) {
-            sb.append(line);
+        JsonBody body;
+        try {
+            body = JsonBody.read(req);
+        } catch (JsonParseException e) {
+            resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            JsonWriter.writeResult(resp.getWriter(), false, "Invalid request body: " + e.getMessage());
+            return;
         }
-        String body = sb.toString();
 
-        // Parse JSON
-        String name = extractJsonValue(body, "name");
-        String priceStr = extractJsonValue(body, "price");
-        String image = extractJsonValue(body, "image");
-        String features = extractJsonValue(body, "features");
-        String type = extractJsonValue(body, "type");
-        String registrationNumber = extractJsonValue(body, "registrationNumber");
+        String name = body.getString("name");
+        String priceStr = body.getString("price");
+        String image = body.getString("image");
+        String features = body.getString("features");
+        String type = body.getString("type");
+        String registrationNumber = body.getString("registrationNumber");
 
         if (name == null || name.isEmpty() || priceStr == null || priceStr.isEmpty()) {
             resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-            resp.getWriter().write("{\"success\":false, \"message\":\"Name and price are required\"}");
+            JsonWriter.writeResult(resp.getWriter(), false, "Name and price are required");
             return;
         }
 
@@ -78,43 +84,14 @@ public class AdminCarServlet extends HttpServlet {
             Car car = new Car(0, name, price, image, features, type, registrationNumber);
             if (carDAO.addCar(car)) {
                 resp.setStatus(HttpServletResponse.SC_CREATED);
-                resp.getWriter().write("{\"success\":true, \"message\":\"Car added successfully\"}");
+                JsonWriter.writeResult(resp.getWriter(), true, "Car added successfully");
             } else {
                 resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-                resp.getWriter().write("{\"success\":false, \"message\":\"Failed to add car\"}");
+                JsonWriter.writeResult(resp.getWriter(), false, "Failed to add car");
             }
         } catch (NumberFormatException e) {
             resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-            resp.getWriter().write("{\"success\":false, \"message\":\"Invalid price format\"}");
-        }
-    }
-
-    private String extractJsonValue(String json, String key) {
-        String pattern = "\"" + key + "\":";
-        int start = json.indexOf(pattern);
-        if (start == -1)
-            return null;
-        start += pattern.length();
-
-        while (start < json.length() && Character.isWhitespace(json.charAt(start))) {
-            start++;
-        }
-
-        if (start >= json.length())
-            return null;
-
-        if (json.charAt(start) == '"') {
-            start++;
-            int end = json.indexOf("\"", start);
-            if (end == -1)
-                return null;
-            return json.substring(start, end);
-        } else {
-            int end = start;
-            while (end < json.length() && (Character.isLetterOrDigit(json.charAt(end)) || json.charAt(end) == '.')) {
-                end++;
-            }
-            return json.substring(start, end).trim();
+            JsonWriter.writeResult(resp.getWriter(), false, "Invalid price format");
         }
     }
 
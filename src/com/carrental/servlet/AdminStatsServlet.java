@@ -0,0 +1,199 @@
+package com.carrental.servlet;
+
+import com.carrental.dao.BookingStats;
+import com.carrental.dao.BookingStatsReport;
+import com.carrental.model.User;
+import com.carrental.util.DaoExecutor;
+import com.carrental.util.json.JsonWriter;
+import com.carrental.util.log.Log;
+import com.carrental.util.log.Logger;
+
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+
+/**
+ * Admin booking stats, read from the summary tables kept by {@link BookingStats}.
+ *
+ * GET /api/admin/stats?grain=day|week|month&amp;from=&amp;to= returns every
+ * period between the two dates (defaults: the last 30 days, 12 weeks or 12
+ * months, month being the default grain) with all-time totals and per-car
+ * utilization. POST /api/admin/stats/rebuild recomputes the tables from the
+ * bookings.
+ */
+@WebServlet(urlPatterns = { "/api/admin/stats", "/api/admin/stats/rebuild" }, asyncSupported = true)
+public class AdminStatsServlet extends HttpServlet {
+    private static final Logger log = Log.get(AdminStatsServlet.class);
+
+    private static final int MAX_PERIODS = 400;
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        if (!"/api/admin/stats".equals(req.getServletPath())) {
+            resp.sendError(HttpServletResponse.SC_METHOD_NOT_ALLOWED);
+            return;
+        }
+        DaoExecutor.dispatch(req, resp, this::handleGet);
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        if (!"/api/admin/stats/rebuild".equals(req.getServletPath())) {
+            resp.sendError(HttpServletResponse.SC_METHOD_NOT_ALLOWED);
+            return;
+        }
+        DaoExecutor.dispatch(req, resp, this::handleRebuild);
+    }
+
+    private void handleGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        resp.setContentType("application/json");
+        resp.setCharacterEncoding("UTF-8");
+        if (!isAdmin(req, resp)) {
+            return;
+        }
+
+        String grainParam = req.getParameter("grain");
+        BookingStats.Grain grain = grainParam == null ? BookingStats.Grain.MONTH : BookingStats.Grain.parse(grainParam);
+        if (grain == null) {
+            resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            JsonWriter.writeResult(resp.getWriter(), false, "grain must be day, week or month");
+            return;
+        }
+        LocalDate from;
+        LocalDate to;
+        try {
+            String toParam = req.getParameter("to");
+            String fromParam = req.getParameter("from");
+            to = grain.start(toParam != null ? LocalDate.parse(toParam) : LocalDate.now());
+            from = fromParam != null ? grain.start(LocalDate.parse(fromParam))
+                    : grain.plus(to, grain == BookingStats.Grain.DAY ? -29 : -11);
+        } catch (DateTimeException e) {
+            resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            JsonWriter.writeResult(resp.getWriter(), false, "Dates must be formatted as YYYY-MM-DD");
+            return;
+        }
+        if (from.isAfter(to) || periodCount(grain, from, to) > MAX_PERIODS) {
+            resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            JsonWriter.writeResult(resp.getWriter(), false,
+                    "from must not be after to, and the range may hold at most " + MAX_PERIODS + " periods");
+            return;
+        }
+
+        BookingStatsReport report;
+        try {
+            report = BookingStats.query(grain, from, to);
+        } catch (SQLException e) {
+            log.error("Failed to load booking stats", e, "grain", grain, "from", from, "to", to);
+            resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            JsonWriter.writeResult(resp.getWriter(), false, "Failed to load stats");
+            return;
+        }
+        resp.setHeader("Cache-Control", "no-store");
+        writeReport(resp.getWriter(), report);
+    }
+
+    private void handleRebuild(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        resp.setContentType("application/json");
+        resp.setCharacterEncoding("UTF-8");
+        if (!isAdmin(req, resp)) {
+            return;
+        }
+        long started = System.nanoTime();
+        try {
+            int bookings = BookingStats.rebuild();
+            new JsonWriter(resp.getWriter()).beginObject()
+                    .field("success", true)
+                    .field("bookings", bookings)
+                    .field("millis", (System.nanoTime() - started) / 1_000_000)
+                    .endObject().flush();
+        } catch (SQLException e) {
+            log.error("Failed to rebuild booking stats", e);
+            resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            JsonWriter.writeResult(resp.getWriter(), false, "Failed to rebuild stats");
+        }
+    }
+
+    private boolean isAdmin(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        HttpSession session = req.getSession(false);
+        User user = session != null ? (User) session.getAttribute("user") : null;
+        if (user == null || !"ADMIN".equals(user.getRole())) {
+            resp.setStatus(HttpServletResponse.SC_FORBIDDEN);
+            JsonWriter.writeResult(resp.getWriter(), false, "Admin access required");
+            return false;
+        }
+        return true;
+    }
+
+    private static long periodCount(BookingStats.Grain grain, LocalDate from, LocalDate to) {
+        switch (grain) {
+        case DAY:
+            return ChronoUnit.DAYS.between(from, to) + 1;
+        case WEEK:
+            return ChronoUnit.WEEKS.between(from, to) + 1;
+        default:
+            return ChronoUnit.MONTHS.between(from, to) + 1;
+        }
+    }
+
+    private void writeReport(PrintWriter out, BookingStatsReport report) throws IOException {
+        JsonWriter json = new JsonWriter(out);
+        json.beginObject()
+                .field("success", true)
+                .field("grain", report.getGrain().name().toLowerCase())
+                .field("from", report.getFrom())
+                .field("to", report.getTo())
+                .name("totals");
+        writePeriod(json, report.getTotals(), false);
+        json.name("periods").beginArray();
+        for (BookingStatsReport.Period period : report.getPeriods()) {
+            writePeriod(json, period, true);
+        }
+        json.endArray().name("cars").beginArray();
+        for (Map.Entry<Integer, Integer> car : report.getCarDays().entrySet()) {
+            json.beginObject()
+                    .field("carId", car.getKey())
+                    .field("days", car.getValue())
+                    .field("utilization", (double) car.getValue() / report.getDays(), 4)
+                    .endObject();
+        }
+        json.endArray().endObject().flush();
+    }
+
+    private void writePeriod(JsonWriter json, BookingStatsReport.Period period, boolean withUtilization)
+            throws IOException {
+        json.beginObject();
+        if (period.getStart() != null) {
+            json.field("start", period.getStart());
+        }
+        json.field("bookings", period.getBookings())
+                .name("revenue").rawValue(money(period.getRevenue()))
+                .name("paidRevenue").rawValue(money(period.getPaidRevenue()));
+        if (withUtilization) {
+            json.field("utilizationDays", period.getUtilizationDays());
+        }
+        json.name("statuses").beginObject();
+        for (Map.Entry<String, Long> e : period.getStatuses().entrySet()) {
+            json.field(e.getKey(), e.getValue());
+        }
+        json.endObject().name("paymentStatuses").beginObject();
+        for (Map.Entry<String, Long> e : period.getPaymentStatuses().entrySet()) {
+            json.field(e.getKey(), e.getValue());
+        }
+        json.endObject().endObject();
+    }
+
+    private static String money(BigDecimal amount) {
+        return amount.setScale(2).toPlainString();
+    }
+}
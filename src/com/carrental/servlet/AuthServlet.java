@@ -2,6 +2,12 @@ package com.carrental.servlet;
 
 import com.carrental.dao.UserDAO;
 import com.carrental.model.User;
+import com.carrental.util.DaoExecutor;
+import com.carrental.util.json.JsonBody;
+import com.carrental.util.json.JsonParseException;
+import com.carrental.util.json.JsonWriter;
+import com.carrental.util.log.Log;
+import com.carrental.util.log.Logger;
 
 import jakarta.servlet.ServletException;
 import jakarta.servlet.annotation.WebServlet;
@@ -9,17 +15,24 @@ import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpSession;
-import java.io.BufferedReader;
 import java.io.IOException;
+import java.util.concurrent.RejectedExecutionException;
 
-@WebServlet("/api/auth/*")
+@WebServlet(urlPatterns = "/api/auth/*", asyncSupported = true)
 public class AuthServlet extends HttpServlet {
+    private static final Logger log = Log.get(AuthServlet.class);
+
     private UserDAO userDAO = new UserDAO();
 
     @Override
     protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        // Only the user lookup and insert take a database slot, not the password hashing
+        DaoExecutor.dispatchUngated(req, resp, this::handlePost);
+    }
+
+    private void handlePost(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
         String path = req.getPathInfo();
-        System.out.println("AuthServlet: Received request for path: " + path); // LOG
+        log.debug("Auth request", "path", path);
 
         resp.setContentType("application/json");
         resp.setCharacterEncoding("UTF-8");
@@ -37,12 +50,11 @@ public class AuthServlet extends HttpServlet {
 
     private void handleRegister(HttpServletRequest req, HttpServletResponse resp) throws IOException {
         try {
-            String body = readBody(req);
-            System.out.println("AuthServlet: Register body: " + body); // LOG
-            String name = extractJsonValue(body, "name");
-            String email = extractJsonValue(body, "email");
-            String password = extractJsonValue(body, "password");
-            String role = extractJsonValue(body, "role");
+            JsonBody body = JsonBody.read(req);
+            String name = body.getString("name");
+            String email = body.getString("email");
+            String password = body.getString("password");
+            String role = body.getString("role");
 
             // SECURITY: Force USER role for registrations (admin@example.com is hardcoded
             // in DB)
@@ -52,152 +64,101 @@ public class AuthServlet extends HttpServlet {
             if (name == null || name.isEmpty() || email == null || email.isEmpty() || password == null
                     || password.isEmpty()) {
                 resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-                resp.getWriter().write("{\"success\":false, \"message\":\"All fields are required\"}");
+                JsonWriter.writeResult(resp.getWriter(), false, "All fields are required");
                 return;
             }
 
             User user = new User(0, name, email, password, role);
             if (userDAO.registerUser(user)) {
                 resp.setStatus(HttpServletResponse.SC_CREATED);
-                resp.getWriter()
-                        .write("{\"success\":true, \"message\":\"User registered successfully\", \"role\":\"USER\"}");
+                new JsonWriter(resp.getWriter()).beginObject()
+                        .field("success", true)
+                        .field("message", "User registered successfully")
+                        .field("role", "USER")
+                        .endObject();
             } else {
                 resp.setStatus(HttpServletResponse.SC_CONFLICT);
-                resp.getWriter().write("{\"success\":false, \"message\":\"Email already exists\"}");
+                JsonWriter.writeResult(resp.getWriter(), false, "Email already exists");
             }
+        } catch (JsonParseException e) {
+            resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            JsonWriter.writeResult(resp.getWriter(), false, "Invalid request body: " + e.getMessage());
+        } catch (RejectedExecutionException e) {
+            sendBusy(resp);
         } catch (Exception e) {
-            e.printStackTrace();
+            log.error("Registration failed", e);
             resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-            resp.getWriter().write("{\"success\":false, \"message\":\"Registration error: " + e.getMessage() + "\"}");
+            JsonWriter.writeResult(resp.getWriter(), false, "Registration error: " + e.getMessage());
         }
     }
 
     private void handleLogin(HttpServletRequest req, HttpServletResponse resp) throws IOException {
         try {
-            String body = readBody(req);
-            System.out.println("AuthServlet: Login body: " + body); // LOG
-            String email = extractJsonValue(body, "email");
-            String password = extractJsonValue(body, "password");
+            JsonBody body = JsonBody.read(req);
+            String email = body.getString("email");
+            String password = body.getString("password");
 
-            System.out.println("AuthServlet: Login attempt for email: " + email); // LOG
+            log.debug("Login attempt", "email", email);
 
             if (email == null || email.isEmpty() || password == null || password.isEmpty()) {
                 resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-                resp.getWriter().write("{\"success\":false, \"message\":\"Email and password are required\"}");
+                JsonWriter.writeResult(resp.getWriter(), false, "Email and password are required");
                 return;
             }
 
             User user = userDAO.loginUser(email, password);
             if (user != null) {
                 // SECURITY: Only admin@example.com can be an ADMIN
-                if ("ADMIN".equals(user.getRole()) && !"admin@example.com".equals(email)) {
-                    System.out.println("AuthServlet: Unauthorized admin login attempt for: " + email); // LOG
+                if ("ADMIN".equals(user.getRole()) && !"admin@example.com".equalsIgnoreCase(email.trim())) {
+                    log.warn("Rejected admin login from non-admin email", "email", email);
                     resp.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
-                    resp.getWriter().write(
-                            "{\"success\":false, \"message\":\"Only admin@example.com can access admin features\"}");
+                    JsonWriter.writeResult(resp.getWriter(), false, "Only admin@example.com can access admin features");
                     return;
                 }
-                System.out.println("AuthServlet: Login successful for user: " + user.getName()); // LOG
+                log.info("Login successful", "userId", user.getId());
                 HttpSession session = req.getSession();
                 session.setAttribute("user", user);
 
                 resp.setStatus(HttpServletResponse.SC_OK);
-                String username = escapeJson(user.getName());
-                String userRole = escapeJson(user.getRole());
-                resp.getWriter().write(String.format(
-                        "{\"success\":true, \"id\":%d, \"username\":\"%s\", \"role\":\"%s\", \"email\":\"%s\", \"message\":\"Login successful\"}",
-                        user.getId(), username, userRole, email));
+                new JsonWriter(resp.getWriter()).beginObject()
+                        .field("success", true)
+                        .field("id", user.getId())
+                        .field("username", user.getName() != null ? user.getName() : "")
+                        .field("role", user.getRole() != null ? user.getRole() : "")
+                        .field("email", email)
+                        .field("message", "Login successful")
+                        .endObject();
             } else {
-                System.out.println("AuthServlet: Login failed (invalid credentials)"); // LOG
+                log.info("Login failed, invalid credentials", "email", email);
                 resp.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
-                resp.getWriter().write("{\"success\":false, \"message\":\"Invalid email or password\"}");
+                JsonWriter.writeResult(resp.getWriter(), false, "Invalid email or password");
             }
+        } catch (JsonParseException e) {
+            resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            JsonWriter.writeResult(resp.getWriter(), false, "Invalid request body: " + e.getMessage());
+        } catch (RejectedExecutionException e) {
+            sendBusy(resp);
         } catch (Exception e) {
-            e.printStackTrace();
+            log.error("Login failed", e);
             resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-            resp.getWriter().write("{\"success\":false, \"message\":\"Login error: " + e.getMessage() + "\"}");
+            JsonWriter.writeResult(resp.getWriter(), false, "Login error: " + e.getMessage());
         }
     }
 
-    private String escapeJson(String str) {
-        if (str == null)
-            return "";
-        return str.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n").replace("\r", "\\r");
-    }
-
     private void handleLogout(HttpServletRequest req, HttpServletResponse resp) throws IOException {
         HttpSession session = req.getSession(false);
         if (session != null) {
             session.invalidate();
         }
         resp.setStatus(HttpServletResponse.SC_OK);
-        resp.getWriter().write("{\"success\":true, \"message\":\"Logged out\"}");
+        JsonWriter.writeResult(resp.getWriter(), true, "Logged out");
     }
 
-    private String readBody(HttpServletRequest req) throws IOException {
-        StringBuilder sb = new StringBuilder();
-        BufferedReader reader = req.getReader();
-        String line;
-        while ((line = reader.readLine()) != null) {
-            sb.append(line);
-        }
-        return sb.toString();
-    }
-
-    private String extractJsonValue(String json, String key) {
-        if (json == null || json.isEmpty())
-            return null;
-
-        String pattern = "\"" + key + "\"";
-        int start = json.indexOf(pattern);
-        if (start == -1)
-            return null;
-
-        start += pattern.length();
-        while (start < json.length() && json.charAt(start) != ':') {
-            if (json.charAt(start) == '"')
-                return null; // Malformed
-            start++;
-        }
-        if (start >= json.length())
-            return null;
-        start++; // Skip ':'
-
-        // Skip whitespace
-        while (start < json.length() && Character.isWhitespace(json.charAt(start))) {
-            start++;
-        }
-
-        if (start >= json.length())
-            return null;
-
-        // Check if string
-        if (json.charAt(start) == '"') {
-            start++;
-            int end = start;
-            while (end < json.length()) {
-                if (json.charAt(end) == '"' && json.charAt(end - 1) != '\\') {
-                    break;
-                }
-                end++;
-            }
-            if (end >= json.length())
-                return null;
-            String value = json.substring(start, end);
-            return value.replace("\\\"", "\"").replace("\\\\", "\\");
-        } else {
-            // Number, boolean, or null
-            int end = start;
-            while (end < json.length() &&
-                    (Character.isLetterOrDigit(json.charAt(end)) ||
-                            json.charAt(end) == '.' || json.charAt(end) == '@' ||
-                            json.charAt(end) == '-' || json.charAt(end) == '+')) {
-                end++;
-            }
-            String value = json.substring(start, end).trim();
-            if (value.equals("null"))
-                return null;
-            return value;
-        }
+    // The password hashing pool or the database slots are saturated; ask the client to come back shortly
+    private void sendBusy(HttpServletResponse resp) throws IOException {
+        log.warn("Password hashing or database slots busy, rejecting request");
+        resp.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        resp.setHeader("Retry-After", "1");
+        JsonWriter.writeResult(resp.getWriter(), false, "Too many sign-ins in progress, please retry");
     }
 }
@@ -0,0 +1,53 @@
+package com.carrental.servlet;
+
+import com.carrental.events.BookingEvents;
+import com.carrental.model.User;
+import com.carrental.util.json.JsonWriter;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
+import java.io.IOException;
+
+// Server-Sent Events stream of booking changes for the admin dashboard. The connection
+// stays open; EventBroadcaster writes to it without holding a request thread
+@WebServlet(urlPatterns = "/api/bookings/events", asyncSupported = true)
+public class BookingEventsServlet extends HttpServlet {
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        HttpSession session = req.getSession(false);
+        User user = session != null ? (User) session.getAttribute("user") : null;
+        if (user == null || !"ADMIN".equals(user.getRole())) {
+            resp.setStatus(user == null ? HttpServletResponse.SC_UNAUTHORIZED : HttpServletResponse.SC_FORBIDDEN);
+            resp.setContentType("application/json");
+            resp.setCharacterEncoding("UTF-8");
+            JsonWriter.writeResult(resp.getWriter(), false, "Admin access required");
+            return;
+        }
+
+        // EventSource resends the last id it saw as a header; the parameter is for other clients
+        String lastEventId = req.getHeader("Last-Event-ID");
+        if (lastEventId == null) {
+            lastEventId = req.getParameter("lastEventId");
+        }
+
+        resp.setContentType("text/event-stream");
+        resp.setCharacterEncoding("UTF-8");
+        resp.setHeader("Cache-Control", "no-cache");
+        // Stops nginx-style proxies from buffering the stream
+        resp.setHeader("X-Accel-Buffering", "no");
+        AsyncContext async = req.startAsync(req, resp);
+        if (!BookingEvents.get().subscribe(async, lastEventId)) {
+            resp.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            resp.setHeader("Retry-After", "10");
+            resp.setContentType("application/json");
+            JsonWriter.writeResult(resp.getWriter(), false, "Too many event streams open");
+            async.complete();
+        }
+    }
+}
@@ -1,8 +1,24 @@
 package com.carrental.servlet;
 
+import com.carrental.dao.BookingConflictException;
 import com.carrental.dao.BookingDAO;
+import com.carrental.dao.BookingPage;
+import com.carrental.dao.BookingQuery;
+import com.carrental.dao.BookingTransition;
+import com.carrental.dao.CarCatalogCache;
+import com.carrental.dao.TransitionResult;
+import com.carrental.events.BookingEvents;
+import com.carrental.idempotency.IdempotencyStore;
 import com.carrental.model.Booking;
+import com.carrental.model.Car;
 import com.carrental.model.User;
+import com.carrental.pricing.PricingEngine;
+import com.carrental.util.DaoExecutor;
+import com.carrental.util.json.JsonBody;
+import com.carrental.util.json.JsonParseException;
+import com.carrental.util.json.JsonWriter;
+import com.carrental.util.log.Log;
+import com.carrental.util.log.Logger;
 
 import jakarta.servlet.ServletException;
 import jakarta.servlet.annotation.WebServlet;
@@ -10,17 +26,30 @@ import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpSession;
-import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.StringWriter;
 import java.sql.Date;
-import java.util.List;
+import java.sql.SQLException;
 
-@WebServlet("/api/bookings/*")
+@WebServlet(urlPatterns = "/api/bookings/*", asyncSupported = true)
 public class BookingServlet extends HttpServlet {
+    private static final Logger log = Log.get(BookingServlet.class);
+
     private BookingDAO bookingDAO = new BookingDAO();
 
     @Override
     protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        // A retry whose first attempt has finished is answered here, without a database slot
+        HttpSession session = req.getSession(false);
+        User user = session != null ? (User) session.getAttribute("user") : null;
+        String idempotencyKey = user != null ? idempotencyKey(req, user) : null;
+        if (idempotencyKey != null && IdempotencyStore.get().replay(idempotencyKey, resp)) {
+            return;
+        }
+        DaoExecutor.dispatch(req, resp, this::handlePost);
+    }
+
+    private void handlePost(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
 
         resp.setContentType("application/json");
         resp.setCharacterEncoding("UTF-8");
@@ -29,14 +58,51 @@ public class BookingServlet extends HttpServlet {
         HttpSession session = req.getSession(false);
         if (session == null || session.getAttribute("user") == null) {
             resp.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
-            resp.getWriter().write("{\"success\":false, \"message\":\"Unauthorized\"}");
+            JsonWriter.writeResult(resp.getWriter(), false, "Unauthorized");
             return;
         }
 
         User user = (User) session.getAttribute("user");
+        String header = req.getHeader(IdempotencyStore.HEADER);
+        if (header != null && !IdempotencyStore.isValidKey(header)) {
+            resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            JsonWriter.writeResult(resp.getWriter(), false,
+                    "Invalid " + IdempotencyStore.HEADER + ": use 1 to 255 printable characters");
+            return;
+        }
+        String idempotencyKey = idempotencyKey(req, user);
+        if (idempotencyKey != null) {
+            IdempotencyStore.get().run(idempotencyKey, req, resp, (r, w) -> handleAction(r, w, user));
+        } else {
+            handleAction(req, resp, user);
+        }
+    }
+
+    // Scopes a client's Idempotency-Key to the user and action; null when the
+    // request has none or the action does not take one
+    private String idempotencyKey(HttpServletRequest req, User user) {
+        String header = req.getHeader(IdempotencyStore.HEADER);
+        if (header == null || !IdempotencyStore.isValidKey(header)) {
+            return null;
+        }
+        String path = req.getPathInfo();
+        String action;
+        if (path == null || path.equals("/")) {
+            action = "create";
+        } else if (path.contains("/request-payment")) {
+            action = "request-payment/" + extractIdFromPath(path);
+        } else if (path.contains("/mark-paid")) {
+            action = "mark-paid/" + extractIdFromPath(path);
+        } else {
+            return null;
+        }
+        return user.getId() + " " + action + " " + header;
+    }
+
+    private void handleAction(HttpServletRequest req, HttpServletResponse resp, User user)
+            throws ServletException, IOException {
         String path = req.getPathInfo();
 
-        // Handle payment request endpoints
         // Handle payment request endpoints
         if (path != null && path.contains("/request-payment")) {
             handlePaymentRequest(req, resp, user);
@@ -50,23 +116,22 @@ public class BookingServlet extends HttpServlet {
         }
 
         try {
-            String body = readBody(req);
-            System.out.println("BookingServlet received body: " + body); // DEBUG LOG
+            JsonBody body = JsonBody.read(req);
 
-            String carIdStr = extractJsonValue(body, "carId");
-            String pickupDateTimeStr = extractJsonValue(body, "pickupDateTime");
-            String dropoffDateTimeStr = extractJsonValue(body, "dropoffDateTime");
-            String driverDobStr = extractJsonValue(body, "driverDob");
-            String licensePath = extractJsonValue(body, "licensePath");
-            String totalPriceStr = extractJsonValue(body, "totalPrice");
+            String carIdStr = body.getString("carId");
+            String pickupDateTimeStr = body.getString("pickupDateTime");
+            String dropoffDateTimeStr = body.getString("dropoffDateTime");
+            String driverDobStr = body.getString("driverDob");
+            String licensePath = body.getString("licensePath");
+            String totalPriceStr = body.getString("totalPrice");
 
-            System.out.println("Extracted: carId=" + carIdStr + ", pickup=" + pickupDateTimeStr + ", dropoff="
-                    + dropoffDateTimeStr + ", dob=" + driverDobStr); // DEBUG LOG
+            log.debug("Booking request", "userId", user.getId(), "carId", carIdStr, "pickup", pickupDateTimeStr,
+                    "dropoff", dropoffDateTimeStr);
 
             if (carIdStr == null || pickupDateTimeStr == null || dropoffDateTimeStr == null || driverDobStr == null) {
-                System.out.println("Missing required fields!"); // DEBUG LOG
+                log.debug("Booking request missing required fields", "userId", user.getId());
                 resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-                resp.getWriter().write("{\"success\":false, \"message\":\"Missing required fields\"}");
+                JsonWriter.writeResult(resp.getWriter(), false, "Missing required fields");
                 return;
             }
 
@@ -76,19 +141,10 @@ public class BookingServlet extends HttpServlet {
             java.time.LocalDateTime pickup = java.time.LocalDateTime.parse(pickupDateTimeStr);
             java.time.LocalDateTime dropoff = java.time.LocalDateTime.parse(dropoffDateTimeStr);
 
-            if (!pickup.isBefore(dropoff)) {
-                resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-                resp.getWriter().write("{\"success\":false, \"message\":\"Pickup must be before dropoff\"}");
-                return;
-            }
-
-            // Time constraints: between 09:00 and 21:00
-            int pickupHour = pickup.getHour();
-            int dropoffHour = dropoff.getHour();
-            if (pickupHour < 9 || pickupHour > 21 || dropoffHour < 9 || dropoffHour > 21) {
+            String periodError = validatePeriod(pickup, dropoff);
+            if (periodError != null) {
                 resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-                resp.getWriter().write(
-                        "{\"success\":false, \"message\":\"Pickup and dropoff must be between 09:00 and 21:00\"}");
+                JsonWriter.writeResult(resp.getWriter(), false, periodError);
                 return;
             }
 
@@ -97,39 +153,18 @@ public class BookingServlet extends HttpServlet {
             java.time.Period age = java.time.Period.between(dob, java.time.LocalDate.now());
             if (age.getYears() < 18) {
                 resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-                resp.getWriter().write("{\"success\":false, \"message\":\"Driver must be at least 18 years old\"}");
+                JsonWriter.writeResult(resp.getWriter(), false, "Driver must be at least 18 years old");
                 return;
             }
 
-            // Compute price based on car base price and weekend multiplier
-            com.carrental.dao.CarDAO carDAO = new com.carrental.dao.CarDAO();
-            com.carrental.model.Car car = carDAO.getCarById(carId);
+            // Price on the server with the same engine as /api/quote; a client-sent total is ignored
+            Car car = CarCatalogCache.get().getCar(carId);
             if (car == null) {
                 resp.setStatus(HttpServletResponse.SC_NOT_FOUND);
-                resp.getWriter().write("{\"success\":false, \"message\":\"Vehicle not found\"}");
+                JsonWriter.writeResult(resp.getWriter(), false, "Vehicle not found");
                 return;
             }
-            double basePrice = car.getPrice();
-
-            // Calculate number of days (ceil of hours/24)
-            long hours = java.time.Duration.between(pickup, dropoff).toHours();
-            long days = Math.max(1, (hours + 23) / 24);
-
-            double weekendMultiplier = 1.25; // +25% on weekends
-            double computedTotal = 0.0;
-            java.time.LocalDate cursor = pickup.toLocalDate();
-            for (int i = 0; i < days; i++) {
-                java.time.DayOfWeek dow = cursor.getDayOfWeek();
-                double dayPrice = basePrice;
-                if (dow == java.time.DayOfWeek.SATURDAY || dow == java.time.DayOfWeek.SUNDAY) {
-                    dayPrice *= weekendMultiplier;
-                }
-                computedTotal += dayPrice;
-                cursor = cursor.plusDays(1);
-            }
-
-            double totalPrice = computedTotal;
-            // override if caller sent a price but we'll rely on computed
+            double totalPrice = PricingEngine.getDefault().quote(car, pickup, dropoff).getTotal();
             // create Booking object
             Booking booking = new Booking();
             booking.setUserId(user.getId());
@@ -143,23 +178,44 @@ public class BookingServlet extends HttpServlet {
             booking.setStatus("PENDING"); // owner must accept
 
             bookingDAO.createBooking(booking);
+            booking.setCarName(car.getName());
+            booking.setCustomerName(user.getName());
+            publishCreated(booking);
             resp.setStatus(HttpServletResponse.SC_CREATED);
-            resp.getWriter().write(
-                    "{\"success\":true, \"message\":\"Booking created successfully (pending owner approval)\", \"totalPrice\":"
-                            + totalPrice + "}");
+            new JsonWriter(resp.getWriter()).beginObject()
+                    .field("success", true)
+                    .field("id", booking.getId())
+                    .field("message", "Booking created successfully (pending owner approval)")
+                    .field("totalPrice", totalPrice)
+                    .endObject();
+        } catch (JsonParseException e) {
+            resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            JsonWriter.writeResult(resp.getWriter(), false, "Invalid request body: " + e.getMessage());
+        } catch (BookingConflictException e) {
+            resp.setStatus(HttpServletResponse.SC_CONFLICT);
+            JsonWriter.writeResult(resp.getWriter(), false, "Vehicle is already booked for the selected dates");
+        } catch (SQLException e) {
+            // A server error, so a retry with the same Idempotency-Key runs again
+            log.error("Failed to save booking", e, "userId", user.getId());
+            resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            JsonWriter.writeResult(resp.getWriter(), false, "Failed to create booking");
         } catch (IllegalArgumentException e) {
-            e.printStackTrace();
+            log.warn("Invalid booking request", "userId", user.getId(), "error", e.getMessage());
             resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-            resp.getWriter().write("{\"success\":false, \"message\":\"Invalid date or number format\"}");
+            JsonWriter.writeResult(resp.getWriter(), false, "Invalid date or number format");
         } catch (Exception e) {
-            e.printStackTrace();
+            log.error("Booking request failed", e, "userId", user.getId());
             resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-            resp.getWriter().write("{\"success\":false, \"message\":\"Invalid request data: " + e.getMessage() + "\"}");
+            JsonWriter.writeResult(resp.getWriter(), false, "Invalid request data: " + e.getMessage());
         }
     }
 
     @Override
     protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        DaoExecutor.dispatch(req, resp, this::handleGet);
+    }
+
+    private void handleGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
 
         resp.setContentType("application/json");
         resp.setCharacterEncoding("UTF-8");
@@ -168,86 +224,125 @@ public class BookingServlet extends HttpServlet {
         HttpSession session = req.getSession(false);
         if (session == null || session.getAttribute("user") == null) {
             resp.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
-            resp.getWriter().write("{\"success\":false, \"message\":\"Unauthorized\"}");
+            JsonWriter.writeResult(resp.getWriter(), false, "Unauthorized");
             return;
         }
 
         User user = (User) session.getAttribute("user");
-        List<Booking> bookings;
-        if ("ADMIN".equals(user.getRole())) {
-            bookings = bookingDAO.getAllBookings();
-        } else {
-            bookings = bookingDAO.getBookingsByUserId(user.getId());
-        }
+        boolean admin = "ADMIN".equals(user.getRole());
 
-        StringBuilder json = new StringBuilder("[");
-        com.carrental.dao.CarDAO carDAO = new com.carrental.dao.CarDAO();
-        for (int i = 0; i < bookings.size(); i++) {
-            Booking b = bookings.get(i);
-            com.carrental.model.Car car = carDAO.getCarById(b.getCarId());
-            String carName = car != null ? car.getName() : "Unknown Car";
-
-            json.append(String.format(
-                    "{\"id\":%d, \"carId\":%d, \"carName\":\"%s\", \"startDate\":\"%s\", \"endDate\":\"%s\", \"totalPrice\":%.2f, \"status\":\"%s\", \"paymentStatus\":\"%s\", \"drivingLicensePath\":\"%s\"}",
-                    b.getId(), b.getCarId(), carName,
-                    b.getStartDate() != null ? b.getStartDate().toString() : "",
-                    b.getEndDate() != null ? b.getEndDate().toString() : "",
-                    b.getTotalPrice(),
-                    b.getStatus() != null ? b.getStatus() : "PENDING",
-                    b.getPaymentStatus() != null ? b.getPaymentStatus() : "UNPAID",
-                    b.getDrivingLicensePath() != null ? b.getDrivingLicensePath().replace("\\", "\\\\") : ""));
-            if (i < bookings.size() - 1) {
-                json.append(",");
+        // Optional filters; limit/cursor switch to the paged {"items":[...], "nextCursor":...} shape
+        BookingQuery query = new BookingQuery();
+        BookingPage page;
+        try {
+            if (!admin) {
+                query.setUserId(user.getId());
+            }
+            String status = req.getParameter("status");
+            if (status != null && !status.isEmpty()) {
+                for (String s : status.split(",")) {
+                    query.addStatus(s.trim());
+                }
+            }
+            String paymentStatus = req.getParameter("paymentStatus");
+            if (paymentStatus != null && !paymentStatus.isEmpty()) {
+                query.setPaymentStatus(paymentStatus);
+            }
+            String carId = req.getParameter("carId");
+            if (carId != null && !carId.isEmpty()) {
+                query.setCarId(Integer.parseInt(carId));
+            }
+            String from = req.getParameter("from");
+            if (from != null && !from.isEmpty()) {
+                query.setFrom(Date.valueOf(from));
+            }
+            String to = req.getParameter("to");
+            if (to != null && !to.isEmpty()) {
+                query.setTo(Date.valueOf(to));
             }
+            String limit = req.getParameter("limit");
+            String cursor = req.getParameter("cursor");
+            if ((limit != null && !limit.isEmpty()) || (cursor != null && !cursor.isEmpty())) {
+                query.setLimit(limit != null && !limit.isEmpty() ? Integer.parseInt(limit) : BookingQuery.DEFAULT_LIMIT);
+                query.setCursor(cursor);
+            }
+        } catch (IllegalArgumentException e) {
+            resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            JsonWriter.writeResult(resp.getWriter(), false, "Invalid filter or cursor");
+            return;
+        }
+
+        try {
+            page = bookingDAO.findBookings(query);
+        } catch (SQLException e) {
+            log.error("Failed to list bookings", e, "userId", user.getId());
+            resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            JsonWriter.writeResult(resp.getWriter(), false, "Failed to load bookings");
+            return;
+        }
+
+        JsonWriter json = new JsonWriter(resp.getWriter());
+        if (query.isPaged()) {
+            json.beginObject().name("items");
+        }
+        json.beginArray();
+        for (Booking b : page.getItems()) {
+            writeBooking(json, b, admin);
+        }
+        json.endArray();
+        if (query.isPaged()) {
+            json.field("nextCursor", page.getNextCursor()).endObject();
         }
-        json.append("]");
-        resp.getWriter().write(json.toString());
     }
 
-    private String readBody(HttpServletRequest req) throws IOException {
-        StringBuilder sb = new StringBuilder();
-        BufferedReader reader = req.getReader();
-        String line;
-        while ((line = reader.readLine()) != null) {
-            sb.append(line);
+    // One booking in the listing shape; admins also see who made it
+    public static void writeBooking(JsonWriter json, Booking b, boolean admin) throws IOException {
+        json.beginObject()
+                .field("id", b.getId())
+                .field("carId", b.getCarId())
+                .field("carName", b.getCarName() != null ? b.getCarName() : "Unknown Car")
+                .field("startDate", b.getStartDate() != null ? b.getStartDate().toLocalDate() : null)
+                .field("endDate", b.getEndDate() != null ? b.getEndDate().toLocalDate() : null)
+                .field("totalPrice", b.getTotalPrice(), 2)
+                .field("status", b.getStatus() != null ? b.getStatus() : "PENDING")
+                .field("paymentStatus", b.getPaymentStatus() != null ? b.getPaymentStatus() : "UNPAID")
+                .field("drivingLicensePath", b.getDrivingLicensePath() != null ? b.getDrivingLicensePath() : "");
+        if (admin) {
+            json.field("userId", b.getUserId())
+                    .field("customerName", b.getCustomerName() != null ? b.getCustomerName() : "");
         }
-        return sb.toString();
+        json.endObject();
     }
 
-    private String extractJsonValue(String json, String key) {
-        String pattern = "\"" + key + "\":";
-        int start = json.indexOf(pattern);
-        if (start == -1)
-            return null;
-        start += pattern.length();
+    // Live updates for admin dashboards, see BookingEventsServlet
+    private static void publishCreated(Booking booking) throws IOException {
+        StringWriter data = new StringWriter();
+        writeBooking(new JsonWriter(data), booking, true);
+        BookingEvents.get().publish(BookingEvents.CREATED, data.toString());
+    }
 
-        // Check if value is string (starts with quote)
-        char firstChar = json.charAt(start);
-        while (Character.isWhitespace(firstChar)) {
-            start++;
-            firstChar = json.charAt(start);
+    private static void publishChange(String event, int bookingId, String field, String value) throws IOException {
+        StringWriter data = new StringWriter();
+        JsonWriter json = new JsonWriter(data).beginObject().field("id", bookingId);
+        if (field != null) {
+            json.field(field, value);
         }
+        json.endObject();
+        BookingEvents.get().publish(event, data.toString());
+    }
 
-        if (firstChar == '"') {
-            start++;
-            int end = json.indexOf("\"", start);
-            return json.substring(start, end);
-        } else {
-            // Number or boolean
-            int end = start;
-            while (end < json.length() && (Character.isDigit(json.charAt(end)) || json.charAt(end) == '.')) {
-                end++;
-            }
-            // Handle comma or closing brace
-            int comma = json.indexOf(",", start);
-            int brace = json.indexOf("}", start);
-            if (comma != -1 && comma < brace)
-                end = comma;
-            else if (brace != -1)
-                end = brace;
-
-            return json.substring(start, end).trim();
+    /** Booking-hours policy shared with /api/quote; returns an error message or null. */
+    public static String validatePeriod(java.time.LocalDateTime pickup, java.time.LocalDateTime dropoff) {
+        if (!pickup.isBefore(dropoff)) {
+            return "Pickup must be before dropoff";
+        }
+        // Time constraints: between 09:00 and 21:00
+        int pickupHour = pickup.getHour();
+        int dropoffHour = dropoff.getHour();
+        if (pickupHour < 9 || pickupHour > 21 || dropoffHour < 9 || dropoffHour > 21) {
+            return "Pickup and dropoff must be between 09:00 and 21:00";
         }
+        return null;
     }
 
     // Helper to extract ID from path
@@ -269,28 +364,23 @@ public class BookingServlet extends HttpServlet {
             // Only admin can request payments
             if (!"ADMIN".equals(user.getRole())) {
                 resp.setStatus(HttpServletResponse.SC_FORBIDDEN);
-                resp.getWriter().write("{\"success\":false, \"message\":\"Only admin can request payment\"}");
+                JsonWriter.writeResult(resp.getWriter(), false, "Only admin can request payment");
                 return;
             }
 
             int bookingId = extractIdFromPath(req.getPathInfo());
             if (bookingId == -1) {
                 resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-                resp.getWriter().write("{\"success\":false, \"message\":\"Invalid booking ID\"}");
+                JsonWriter.writeResult(resp.getWriter(), false, "Invalid booking ID");
                 return;
             }
 
-            if (bookingDAO.updatePaymentStatus(bookingId, "PAYMENT_REQUESTED")) {
-                resp.setStatus(HttpServletResponse.SC_OK);
-                resp.getWriter().write("{\"success\":true, \"message\":\"Payment request sent to customer\"}");
-            } else {
-                resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-                resp.getWriter().write("{\"success\":false, \"message\":\"Failed to request payment\"}");
-            }
+            applyTransition(resp, bookingId, BookingTransition.REQUEST_PAYMENT,
+                    "Payment request sent to customer", "Failed to request payment");
         } catch (Exception e) {
-            e.printStackTrace();
+            log.error("Payment request failed", e, "path", req.getPathInfo());
             resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-            resp.getWriter().write("{\"success\":false, \"message\":\"Error: " + e.getMessage() + "\"}");
+            JsonWriter.writeResult(resp.getWriter(), false, "Error: " + e.getMessage());
         }
     }
 
@@ -300,21 +390,16 @@ public class BookingServlet extends HttpServlet {
             int bookingId = extractIdFromPath(req.getPathInfo());
             if (bookingId == -1) {
                 resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-                resp.getWriter().write("{\"success\":false, \"message\":\"Invalid booking ID\"}");
+                JsonWriter.writeResult(resp.getWriter(), false, "Invalid booking ID");
                 return;
             }
 
-            if (bookingDAO.updatePaymentStatus(bookingId, "PAID")) {
-                resp.setStatus(HttpServletResponse.SC_OK);
-                resp.getWriter().write("{\"success\":true, \"message\":\"Payment confirmed\"}");
-            } else {
-                resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-                resp.getWriter().write("{\"success\":false, \"message\":\"Failed to confirm payment\"}");
-            }
+            applyTransition(resp, bookingId, BookingTransition.MARK_PAID,
+                    "Payment confirmed", "Failed to confirm payment");
         } catch (Exception e) {
-            e.printStackTrace();
+            log.error("Mark paid failed", e, "path", req.getPathInfo());
             resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-            resp.getWriter().write("{\"success\":false, \"message\":\"Error: " + e.getMessage() + "\"}");
+            JsonWriter.writeResult(resp.getWriter(), false, "Error: " + e.getMessage());
         }
     }
 
@@ -324,7 +409,7 @@ public class BookingServlet extends HttpServlet {
             int bookingId = extractIdFromPath(req.getPathInfo());
             if (bookingId == -1) {
                 resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-                resp.getWriter().write("{\"success\":false, \"message\":\"Invalid booking ID\"}");
+                JsonWriter.writeResult(resp.getWriter(), false, "Invalid booking ID");
                 return;
             }
 
@@ -336,22 +421,64 @@ public class BookingServlet extends HttpServlet {
             // We'll trust the ID for now or rely on frontend to send correct ID.
             // Ideally we should check if booking belongs to user.
 
-            if (bookingDAO.updateStatus(bookingId, "CANCELLED")) {
-                resp.setStatus(HttpServletResponse.SC_OK);
-                resp.getWriter().write("{\"success\":true, \"message\":\"Booking cancelled\"}");
-            } else {
-                resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-                resp.getWriter().write("{\"success\":false, \"message\":\"Failed to cancel booking\"}");
-            }
+            applyTransition(resp, bookingId, BookingTransition.CANCEL,
+                    "Booking cancelled", "Failed to cancel booking");
         } catch (Exception e) {
-            e.printStackTrace();
+            log.error("Cancellation failed", e, "path", req.getPathInfo());
             resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-            resp.getWriter().write("{\"success\":false, \"message\":\"Error: " + e.getMessage() + "\"}");
+            JsonWriter.writeResult(resp.getWriter(), false, "Error: " + e.getMessage());
+        }
+    }
+
+    // Runs a state machine transition and writes its outcome: 404 for an
+    // unknown booking, 409 with the current state when it is not allowed
+    // (or another request got there first)
+    private void applyTransition(HttpServletResponse resp, int bookingId, BookingTransition transition,
+            String successMessage, String failureMessage) throws IOException {
+        TransitionResult result;
+        try {
+            result = bookingDAO.transition(bookingId, transition);
+        } catch (SQLException e) {
+            log.error("Booking transition failed", e, "bookingId", bookingId, "transition", transition);
+            resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            JsonWriter.writeResult(resp.getWriter(), false, failureMessage);
+            return;
+        }
+
+        Booking booking = result.getBooking();
+        switch (result.getOutcome()) {
+        case APPLIED:
+            if (transition.isPayment()) {
+                publishChange(BookingEvents.PAYMENT, bookingId, "paymentStatus", transition.getTarget());
+            } else {
+                publishChange(BookingEvents.STATUS, bookingId, "status", transition.getTarget());
+            }
+            resp.setStatus(HttpServletResponse.SC_OK);
+            JsonWriter.writeResult(resp.getWriter(), true, successMessage);
+            break;
+        case NOT_FOUND:
+            resp.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            JsonWriter.writeResult(resp.getWriter(), false, "Booking not found");
+            break;
+        default:
+            resp.setStatus(HttpServletResponse.SC_CONFLICT);
+            new JsonWriter(resp.getWriter()).beginObject()
+                    .field("success", false)
+                    .field("message", failureMessage + ": booking is " + booking.getStatus()
+                            + ", payment " + booking.getPaymentStatus())
+                    .field("status", booking.getStatus())
+                    .field("paymentStatus", booking.getPaymentStatus())
+                    .endObject().flush();
+            break;
         }
     }
 
     @Override
     protected void doDelete(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        DaoExecutor.dispatch(req, resp, this::handleDelete);
+    }
+
+    private void handleDelete(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
         resp.setContentType("application/json");
         resp.setCharacterEncoding("UTF-8");
 
@@ -359,14 +486,14 @@ public class BookingServlet extends HttpServlet {
         HttpSession session = req.getSession(false);
         if (session == null || session.getAttribute("user") == null) {
             resp.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
-            resp.getWriter().write("{\"success\":false, \"message\":\"Unauthorized\"}");
+            JsonWriter.writeResult(resp.getWriter(), false, "Unauthorized");
             return;
         }
 
         User user = (User) session.getAttribute("user");
         if (!"ADMIN".equals(user.getRole())) {
             resp.setStatus(HttpServletResponse.SC_FORBIDDEN);
-            resp.getWriter().write("{\"success\":false, \"message\":\"Only admin can delete bookings\"}");
+            JsonWriter.writeResult(resp.getWriter(), false, "Only admin can delete bookings");
             return;
         }
 
@@ -374,21 +501,22 @@ public class BookingServlet extends HttpServlet {
             int bookingId = extractIdFromPath(req.getPathInfo());
             if (bookingId == -1) {
                 resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-                resp.getWriter().write("{\"success\":false, \"message\":\"Invalid booking ID\"}");
+                JsonWriter.writeResult(resp.getWriter(), false, "Invalid booking ID");
                 return;
             }
 
             if (bookingDAO.deleteBooking(bookingId)) {
+                publishChange(BookingEvents.DELETED, bookingId, null, null);
                 resp.setStatus(HttpServletResponse.SC_OK);
-                resp.getWriter().write("{\"success\":true, \"message\":\"Booking deleted\"}");
+                JsonWriter.writeResult(resp.getWriter(), true, "Booking deleted");
             } else {
                 resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-                resp.getWriter().write("{\"success\":false, \"message\":\"Failed to delete booking\"}");
+                JsonWriter.writeResult(resp.getWriter(), false, "Failed to delete booking");
             }
         } catch (Exception e) {
-            e.printStackTrace();
+            log.error("Booking delete failed", e, "path", req.getPathInfo());
             resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-            resp.getWriter().write("{\"success\":false, \"message\":\"Error: " + e.getMessage() + "\"}");
+            JsonWriter.writeResult(resp.getWriter(), false, "Error: " + e.getMessage());
         }
     }
 }
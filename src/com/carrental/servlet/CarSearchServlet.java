@@ -0,0 +1,162 @@
+package com.carrental.servlet;
+
+import com.carrental.dao.CarCatalogCache;
+import com.carrental.model.Car;
+import com.carrental.search.CarSearchIndex;
+import com.carrental.search.CarSearchQuery;
+import com.carrental.search.CarSearchResult;
+import com.carrental.util.DaoExecutor;
+import com.carrental.util.json.JsonWriter;
+import com.carrental.util.log.Log;
+import com.carrental.util.log.Logger;
+
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * GET /api/cars/search: full-text and faceted search over the fleet, served
+ * from {@link CarSearchIndex}.
+ *
+ * Parameters: q (words in name, features or type; the last one may be
+ * partial), type and price (facet values, comma-separated or repeated),
+ * minPrice, maxPrice, sort (relevance, name, price or -price), limit (default
+ * 20, at most 100) and offset. The response carries the total, the page of
+ * cars in the GET /api/cars shape and per-type and per-price-bucket counts.
+ * Runs on the request thread while the index is built. After a bulk import
+ * invalidates it, the search that rebuilds it from the catalog, which may
+ * read the database, is dispatched to {@link DaoExecutor}.
+ */
+@WebServlet(urlPatterns = "/api/cars/search", asyncSupported = true)
+public class CarSearchServlet extends HttpServlet {
+    private static final Logger log = Log.get(CarSearchServlet.class);
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        resp.setContentType("application/json");
+        resp.setCharacterEncoding("UTF-8");
+
+        CarSearchQuery query = new CarSearchQuery();
+        try {
+            query.setText(req.getParameter("q"));
+            for (String type : values(req, "type")) {
+                query.addType(type);
+            }
+            for (String label : values(req, "price")) {
+                int bucket = CarSearchIndex.parsePriceBucket(label);
+                if (bucket < 0) {
+                    throw new IllegalArgumentException("Unknown price bucket: " + label);
+                }
+                query.addPriceBucket(bucket);
+            }
+            query.setMinPrice(doubleParam(req, "minPrice"));
+            query.setMaxPrice(doubleParam(req, "maxPrice"));
+            query.setSort(sort(req.getParameter("sort")));
+            String limit = req.getParameter("limit");
+            if (limit != null) {
+                query.setLimit(Integer.parseInt(limit));
+            }
+            String offset = req.getParameter("offset");
+            if (offset != null) {
+                query.setOffset(Integer.parseInt(offset));
+            }
+        } catch (IllegalArgumentException e) {
+            // Includes NumberFormatException
+            resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            JsonWriter.writeResult(resp.getWriter(), false, "Invalid search: " + e.getMessage());
+            return;
+        }
+
+        CarSearchResult result = CarSearchIndex.get().searchIfBuilt(query);
+        if (result != null) {
+            writeResult(resp, query, result);
+        } else {
+            DaoExecutor.dispatch(req, resp, (request, response) -> rebuildAndSearch(response, query));
+        }
+    }
+
+    private void rebuildAndSearch(HttpServletResponse resp, CarSearchQuery query) throws IOException {
+        CarSearchResult result;
+        try {
+            result = CarSearchIndex.get().search(query);
+        } catch (SQLException e) {
+            log.error("Failed to build car search index", e);
+            resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            JsonWriter.writeResult(resp.getWriter(), false, "Failed to search cars");
+            return;
+        }
+        writeResult(resp, query, result);
+    }
+
+    private static void writeResult(HttpServletResponse resp, CarSearchQuery query, CarSearchResult result)
+            throws IOException {
+        JsonWriter json = new JsonWriter(resp.getWriter());
+        json.beginObject()
+                .field("success", true)
+                .field("total", result.getTotal())
+                .field("offset", query.getOffset())
+                .field("limit", query.getLimit())
+                .name("cars").beginArray();
+        for (Car car : result.getCars()) {
+            CarCatalogCache.writeCar(json, car);
+        }
+        json.endArray().name("facets").beginObject().name("type").beginObject();
+        for (Map.Entry<String, Integer> e : result.getTypeCounts().entrySet()) {
+            json.field(e.getKey(), e.getValue());
+        }
+        json.endObject().name("price").beginArray();
+        int[] priceCounts = result.getPriceCounts();
+        for (int i = 0; i < priceCounts.length; i++) {
+            json.beginObject()
+                    .field("bucket", CarSearchIndex.getPriceBucketLabel(i))
+                    .field("count", priceCounts[i])
+                    .endObject();
+        }
+        json.endArray().endObject().endObject().flush();
+    }
+
+    // Accepts both ?type=CAR&type=BIKE and ?type=CAR,BIKE
+    private static List<String> values(HttpServletRequest req, String name) {
+        List<String> values = new ArrayList<>();
+        String[] params = req.getParameterValues(name);
+        if (params == null) {
+            return values;
+        }
+        for (String param : params) {
+            for (String value : param.split(",")) {
+                if (!value.trim().isEmpty()) {
+                    values.add(value.trim());
+                }
+            }
+        }
+        return values;
+    }
+
+    private static Double doubleParam(HttpServletRequest req, String name) {
+        String value = req.getParameter(name);
+        return value == null || value.isEmpty() ? null : Double.valueOf(value);
+    }
+
+    private static CarSearchQuery.Sort sort(String value) {
+        if (value == null || value.isEmpty() || "relevance".equals(value)) {
+            return CarSearchQuery.Sort.RELEVANCE;
+        }
+        switch (value) {
+        case "name":
+            return CarSearchQuery.Sort.NAME;
+        case "price":
+            return CarSearchQuery.Sort.PRICE_ASC;
+        case "-price":
+            return CarSearchQuery.Sort.PRICE_DESC;
+        default:
+            throw new IllegalArgumentException("Unknown sort: " + value);
+        }
+    }
+}
@@ -1,78 +1,168 @@
 package com.carrental.servlet;
 
+import com.carrental.dao.CarCatalogCache;
 import com.carrental.dao.CarDAO;
+import com.carrental.dao.CarPage;
+import com.carrental.dao.CarQuery;
 import com.carrental.model.Car;
+import com.carrental.util.DaoExecutor;
+import com.carrental.util.GzipResponseWrapper;
+import com.carrental.util.json.JsonBody;
+import com.carrental.util.json.JsonParseException;
+import com.carrental.util.json.JsonWriter;
+import com.carrental.util.log.Log;
+import com.carrental.util.log.Logger;
 
 import jakarta.servlet.ServletException;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.util.List;
+import java.sql.SQLException;
 
-@WebServlet("/api/cars")
+@WebServlet(urlPatterns = "/api/cars", asyncSupported = true)
 public class CarServlet extends HttpServlet {
+    private static final Logger log = Log.get(CarServlet.class);
+
     private CarDAO carDAO = new CarDAO();
 
-    // GET: Return all cars
+    // Any of these switch GET to the paged {"items":[...], "nextCursor":...} listing
+    private static final String[] LISTING_PARAMS = {
+            "type", "minPrice", "maxPrice", "registration", "sort", "cursor", "limit" };
+
+    // GET: Return all cars from the catalog cache, honouring If-None-Match. Stays on the
+    // request thread: a cache hit never touches H2, so there is nothing to offload.
+    // Filtered or paged listings query H2 and run off the request thread
     @Override
     protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        for (String param : LISTING_PARAMS) {
+            String value = req.getParameter(param);
+            if (value != null && !value.isEmpty()) {
+                DaoExecutor.dispatch(req, resp, this::handleListing);
+                return;
+            }
+        }
+
+        CarCatalogCache.Snapshot catalog;
+        try {
+            catalog = CarCatalogCache.get();
+        } catch (SQLException e) {
+            log.error("Failed to load car catalog", e);
+            resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            resp.setContentType("application/json");
+            resp.setCharacterEncoding("UTF-8");
+            JsonWriter.writeResult(resp.getWriter(), false, "Failed to load cars");
+            return;
+        }
+
+        // Serve the snapshot's pre-gzipped copy when the client takes it
+        boolean gzip = catalog.getJson().length > GzipResponseWrapper.MIN_BYTES
+                && GzipResponseWrapper.acceptsGzip(req.getHeader("Accept-Encoding"));
+        String etag = gzip ? catalog.getGzipEtag() : catalog.getEtag();
+        resp.setHeader("ETag", etag);
+        resp.setHeader("Vary", "Accept-Encoding");
+        // Clients may keep a copy but must revalidate; unchanged catalogs cost a 304
+        resp.setHeader("Cache-Control", "no-cache");
+        if (etagMatches(req.getHeader("If-None-Match"), etag)) {
+            resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        byte[] json = gzip ? catalog.getGzipJson() : catalog.getJson();
+        if (gzip) {
+            resp.setHeader("Content-Encoding", "gzip");
+        }
+        resp.setContentType("application/json");
+        resp.setCharacterEncoding("UTF-8");
+        resp.setContentLength(json.length);
+        resp.getOutputStream().write(json);
+    }
 
-        List<Car> cars = carDAO.getAllCars();
-
-        // Manual JSON construction with proper escaping
-        StringBuilder json = new StringBuilder("[");
-        for (int i = 0; i < cars.size(); i++) {
-            Car c = cars.get(i);
-            String name = escapeJson(c.getName() != null ? c.getName() : "");
-            String image = escapeJson(c.getImage() != null ? c.getImage() : "");
-            String features = escapeJson(c.getFeatures() != null ? c.getFeatures() : "");
-            String type = escapeJson(c.getType() != null ? c.getType() : "CAR");
-            String reg = escapeJson(c.getRegistrationNumber() != null ? c.getRegistrationNumber() : "");
-            json.append(
-                    String.format(
-                            "{\"id\":%d, \"name\":\"%s\", \"price\":%.2f, \"image\":\"%s\", \"features\":\"%s\", \"type\":\"%s\", \"registrationNumber\":\"%s\"}",
-                            c.getId(), name, c.getPrice(), image, features, type, reg));
-            if (i < cars.size() - 1)
-                json.append(",");
-        }
-        json.append("]");
+    private void handleListing(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
 
         resp.setContentType("application/json");
         resp.setCharacterEncoding("UTF-8");
-        PrintWriter out = resp.getWriter();
-        out.print(json.toString());
-        out.flush();
+        CarQuery query = new CarQuery();
+        try {
+            query.setType(param(req, "type"));
+            String minPrice = param(req, "minPrice");
+            if (minPrice != null) {
+                query.setMinPrice(Double.valueOf(minPrice));
+            }
+            String maxPrice = param(req, "maxPrice");
+            if (maxPrice != null) {
+                query.setMaxPrice(Double.valueOf(maxPrice));
+            }
+            query.setRegistrationPrefix(param(req, "registration"));
+            String sort = param(req, "sort");
+            if (sort != null) {
+                query.setSort(CarQuery.Sort.fromParam(sort));
+            }
+            String limit = param(req, "limit");
+            if (limit != null) {
+                query.setLimit(Integer.parseInt(limit));
+            }
+            query.setCursor(param(req, "cursor"));
+        } catch (IllegalArgumentException e) {
+            // Includes NumberFormatException
+            resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            JsonWriter.writeResult(resp.getWriter(), false, "Invalid filter or cursor");
+            return;
+        }
+
+        CarPage page;
+        try {
+            page = carDAO.findCars(query);
+        } catch (SQLException e) {
+            log.error("Failed to list cars", e);
+            resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            JsonWriter.writeResult(resp.getWriter(), false, "Failed to load cars");
+            return;
+        }
+
+        JsonWriter json = new JsonWriter(resp.getWriter());
+        json.beginObject().name("items").beginArray();
+        for (Car car : page.getItems()) {
+            CarCatalogCache.writeCar(json, car);
+        }
+        json.endArray().field("nextCursor", page.getNextCursor()).endObject().flush();
+    }
+
+    private static String param(HttpServletRequest req, String name) {
+        String value = req.getParameter(name);
+        return value == null || value.trim().isEmpty() ? null : value.trim();
     }
 
     // POST: Add a new car
     @Override
     protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        DaoExecutor.dispatch(req, resp, this::handlePost);
+    }
+
+    private void handlePost(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
 
         resp.setContentType("application/json");
         resp.setCharacterEncoding("UTF-8");
-        StringBuilder sb = new StringBuilder();
-        BufferedReader reader = req.getReader();
-        String line;
-        while ((line = reader.readLine()) != null) {
-            sb.append(line);
-        }
-        String body = sb.toString();
-
-        // Simple manual JSON parsing (assuming flat JSON)
-        String name = extractJsonValue(body, "name");
-        String priceStr = extractJsonValue(body, "price");
-        String image = extractJsonValue(body, "image");
-        String features = extractJsonValue(body, "features");
-        String type = extractJsonValue(body, "type");
-        String registrationNumber = extractJsonValue(body, "registrationNumber");
+        JsonBody body;
+        try {
+            body = JsonBody.read(req);
+        } catch (JsonParseException e) {
+            resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            JsonWriter.writeResult(resp.getWriter(), false, "Invalid request body: " + e.getMessage());
+            return;
+        }
+
+        String name = body.getString("name");
+        String priceStr = body.getString("price");
+        String image = body.getString("image");
+        String features = body.getString("features");
+        String type = body.getString("type");
+        String registrationNumber = body.getString("registrationNumber");
 
         if (name == null || name.isEmpty() || priceStr == null || priceStr.isEmpty()) {
             resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-            resp.getWriter().write("{\"success\":false, \"message\":\"Name and price are required\"}");
+            JsonWriter.writeResult(resp.getWriter(), false, "Name and price are required");
             return;
         }
 
@@ -94,20 +184,24 @@ public class CarServlet extends HttpServlet {
             Car car = new Car(0, name, Double.parseDouble(priceStr), image, features, type, registrationNumber);
             if (carDAO.addCar(car)) {
                 resp.setStatus(HttpServletResponse.SC_CREATED);
-                resp.getWriter().write("{\"success\":true, \"message\":\"Car added successfully\"}");
+                JsonWriter.writeResult(resp.getWriter(), true, "Car added successfully");
             } else {
                 resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-                resp.getWriter().write("{\"success\":false, \"message\":\"Failed to add car\"}");
+                JsonWriter.writeResult(resp.getWriter(), false, "Failed to add car");
             }
         } catch (NumberFormatException e) {
             resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-            resp.getWriter().write("{\"success\":false, \"message\":\"Invalid price format\"}");
+            JsonWriter.writeResult(resp.getWriter(), false, "Invalid price format");
         }
     }
 
     // DELETE: Delete a car
     @Override
     protected void doDelete(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        DaoExecutor.dispatch(req, resp, this::handleDelete);
+    }
+
+    private void handleDelete(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
 
         resp.setContentType("application/json");
         resp.setCharacterEncoding("UTF-8");
@@ -116,7 +210,7 @@ public class CarServlet extends HttpServlet {
             int id = Integer.parseInt(idStr);
             if (carDAO.deleteCar(id)) {
                 resp.setStatus(HttpServletResponse.SC_OK);
-                resp.getWriter().write("{\"message\":\"Car deleted\"}");
+                new JsonWriter(resp.getWriter()).beginObject().field("message", "Car deleted").endObject();
             } else {
                 resp.setStatus(HttpServletResponse.SC_NOT_FOUND);
             }
@@ -125,42 +219,20 @@ public class CarServlet extends HttpServlet {
         }
     }
 
-    private String extractJsonValue(String json, String key) {
-        String pattern = "\"" + key + "\":";
-        int start = json.indexOf(pattern);
-        if (start == -1)
-            return null;
-        start += pattern.length();
-
-        while (start < json.length() && Character.isWhitespace(json.charAt(start))) {
-            start++;
+    static boolean etagMatches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
         }
-
-        if (start >= json.length())
-            return null;
-
-        if (json.charAt(start) == '"') {
-            start++;
-            int end = json.indexOf("\"", start);
-            if (end == -1)
-                return null;
-            return json.substring(start, end);
-        } else {
-            int end = start;
-            while (end < json.length() && (Character.isLetterOrDigit(json.charAt(end)) || json.charAt(end) == '.')) {
-                end++;
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            // If-None-Match uses weak comparison
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
             }
-            return json.substring(start, end).trim();
         }
-    }
-
-    private String escapeJson(String str) {
-        if (str == null)
-            return "";
-        return str.replace("\\", "\\\\")
-                .replace("\"", "\\\"")
-                .replace("\n", "\\n")
-                .replace("\r", "\\r")
-                .replace("\t", "\\t");
+        return false;
     }
 }
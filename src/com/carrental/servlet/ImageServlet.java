@@ -0,0 +1,71 @@
+package com.carrental.servlet;
+
+import com.carrental.image.ThumbnailService;
+
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Serves car image thumbnails (see {@link ThumbnailService}) as /img/&lt;name&gt;.
+ *
+ * Names carry a hash of the original, so responses are cacheable for a year
+ * without revalidation. When the connector supports it Tomcat sends the file
+ * with sendfile, which it implements with FileChannel.transferTo straight to
+ * the socket; otherwise the file is transferred through the response stream.
+ */
+@WebServlet("/img/*")
+public class ImageServlet extends HttpServlet {
+
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        String path = req.getPathInfo();
+        File file = path != null ? ThumbnailService.resolve(path.substring(1)) : null;
+        if (file == null) {
+            resp.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        String etag = "\"" + file.getName() + "\"";
+        resp.setHeader("Cache-Control", "public, max-age=31536000, immutable");
+        resp.setHeader("ETag", etag);
+        if (CarServlet.etagMatches(req.getHeader("If-None-Match"), etag)) {
+            resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        long length = file.length();
+        resp.setContentType("image/jpeg");
+        resp.setContentLengthLong(length);
+        if ("GET".equals(req.getMethod()) && Boolean.TRUE.equals(req.getAttribute(SENDFILE_SUPPORTED))) {
+            req.setAttribute(SENDFILE_FILENAME, file.getAbsolutePath());
+            req.setAttribute(SENDFILE_START, 0L);
+            req.setAttribute(SENDFILE_END, length);
+            return;
+        }
+        try (FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(resp.getOutputStream());
+            long position = 0;
+            while (position < length) {
+                long sent = in.transferTo(position, length - position, out);
+                if (sent <= 0) {
+                    break;
+                }
+                position += sent;
+            }
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package com.carrental.servlet;
+
+import com.carrental.dao.CarCatalogCache;
+import com.carrental.dao.CarDAO;
+import com.carrental.events.BookingEvents;
+import com.carrental.events.EventBroadcaster;
+import com.carrental.filter.RateLimitFilter;
+import com.carrental.idempotency.IdempotencyStore;
+import com.carrental.metrics.LatencyHistogram;
+import com.carrental.metrics.Metrics;
+import com.carrental.metrics.RouteMetrics;
+import com.carrental.model.User;
+import com.carrental.util.ConnectionPool;
+import com.carrental.util.DBConnection;
+import com.carrental.util.DaoExecutor;
+import com.carrental.util.RateLimiter;
+import com.carrental.util.json.JsonWriter;
+import com.carrental.util.log.Log;
+
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * GET /api/metrics (admin only): per-route request metrics plus connection
+ * pool, async handler, catalog cache and logging stats. JSON by default;
+ * Prometheus text exposition with ?format=prometheus or an Accept header
+ * asking for text/plain.
+ */
+@WebServlet("/api/metrics")
+public class MetricsServlet extends HttpServlet {
+
+    private static final double[] QUANTILES = { 0.5, 0.95, 0.99 };
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+
+        HttpSession session = req.getSession(false);
+        User user = session != null ? (User) session.getAttribute("user") : null;
+        if (user == null || !"ADMIN".equals(user.getRole())) {
+            resp.setContentType("application/json");
+            resp.setCharacterEncoding("UTF-8");
+            resp.setStatus(HttpServletResponse.SC_FORBIDDEN);
+            JsonWriter.writeResult(resp.getWriter(), false, "Admin access required");
+            return;
+        }
+
+        resp.setHeader("Cache-Control", "no-store");
+        String format = req.getParameter("format");
+        String accept = req.getHeader("Accept");
+        if ("prometheus".equals(format)
+                || (format == null && accept != null && accept.contains("text/plain"))) {
+            resp.setContentType("text/plain; version=0.0.4");
+            resp.setCharacterEncoding("UTF-8");
+            writePrometheus(resp.getWriter());
+        } else {
+            resp.setContentType("application/json");
+            resp.setCharacterEncoding("UTF-8");
+            writeJson(resp.getWriter());
+        }
+    }
+
+    private void writeJson(PrintWriter out) throws IOException {
+        JsonWriter json = new JsonWriter(out);
+        json.beginObject()
+                .field("uptimeSeconds", (System.currentTimeMillis() - Metrics.getStartedAt()) / 1000)
+                .name("routes").beginObject();
+        for (RouteMetrics route : Metrics.getRoutes()) {
+            LatencyHistogram latency = route.getLatency();
+            json.name(route.getRoute()).beginObject()
+                    .field("requests", route.getRequests())
+                    .field("inFlight", route.getInFlight())
+                    .name("statuses").beginObject();
+            for (int status : route.getStatusCodes()) {
+                json.field(Integer.toString(status), route.getStatusCount(status));
+            }
+            json.endObject()
+                    .name("latencyMs").beginObject()
+                    .field("mean", latency.getCount() > 0 ? latency.getSumMicros() / 1000.0 / latency.getCount() : 0, 3)
+                    .field("p50", latency.quantileMicros(0.5) / 1000.0, 3)
+                    .field("p95", latency.quantileMicros(0.95) / 1000.0, 3)
+                    .field("p99", latency.quantileMicros(0.99) / 1000.0, 3)
+                    .field("max", latency.getMaxMicros() / 1000.0, 3)
+                    .endObject()
+                    .endObject();
+        }
+        json.endObject();
+
+        ConnectionPool.Stats pool = DBConnection.getPoolStats();
+        if (pool != null) {
+            json.name("dbPool").beginObject()
+                    .field("active", pool.getActive())
+                    .field("idle", pool.getIdle())
+                    .field("waiters", pool.getWaiters())
+                    .field("total", pool.getTotal())
+                    .field("maxSize", pool.getMaxSize())
+                    .field("acquired", pool.getAcquired())
+                    .field("timeouts", pool.getTimeouts())
+                    .field("created", pool.getCreated())
+                    .field("evicted", pool.getEvicted())
+                    .field("statementCacheHits", pool.getStatementCacheHits())
+                    .field("statementCacheMisses", pool.getStatementCacheMisses())
+                    .name("acquireLatencyMicros").beginObject();
+            // Acquisitions per bucket, keyed by its upper bound; the last has none
+            long[] bounds = pool.getLatencyBucketsMicros();
+            long[] counts = pool.getLatencyCounts();
+            for (int i = 0; i < counts.length; i++) {
+                json.field(i < bounds.length ? "<=" + bounds[i] : ">" + bounds[bounds.length - 1], counts[i]);
+            }
+            json.endObject()
+                    .endObject();
+        }
+        json.name("asyncHandlers").beginObject()
+                .field("virtualThreads", DaoExecutor.isVirtualThreads())
+                .field("inFlight", DaoExecutor.getInFlight())
+                .field("active", DaoExecutor.getActive())
+                .field("maxConcurrency", DaoExecutor.getMaxConcurrency())
+                .field("rejected", DaoExecutor.getRejected())
+                .endObject();
+        json.name("catalogCache").beginObject()
+                .field("version", CarDAO.getCatalogVersion())
+                .field("hits", CarCatalogCache.getHits())
+                .field("loads", CarCatalogCache.getLoads())
+                .endObject();
+        EventBroadcaster events = BookingEvents.get();
+        json.name("bookingEvents").beginObject()
+                .field("subscribers", events.getSubscriberCount())
+                .field("published", events.getLastSequence())
+                .field("evicted", events.getEvictedCount())
+                .endObject();
+        json.name("rateLimits").beginObject();
+        for (Map.Entry<String, RateLimiter> e : RateLimitFilter.getLimiters().entrySet()) {
+            json.name(e.getKey()).beginObject()
+                    .field("keys", e.getValue().size())
+                    .field("rejected", e.getValue().getRejected())
+                    .endObject();
+        }
+        json.endObject();
+        json.name("idempotency").beginObject()
+                .field("keys", IdempotencyStore.get().size())
+                .field("replays", IdempotencyStore.get().getReplays())
+                .endObject();
+        json.name("logging").beginObject()
+                .field("dropped", Log.getDropped())
+                .field("suppressedTraces", Log.getSuppressedTraces())
+                .endObject();
+        json.endObject();
+        json.flush();
+    }
+
+    // Lines end in \n whatever the platform, as the exposition format requires
+    private void writePrometheus(PrintWriter out) {
+        List<RouteMetrics> routes = Metrics.getRoutes();
+
+        out.print("# TYPE carrental_http_requests_total counter\n");
+        for (RouteMetrics route : routes) {
+            for (int status : route.getStatusCodes()) {
+                out.print("carrental_http_requests_total{route=\"" + route.getRoute() + "\",status=\"" + status
+                        + "\"} " + route.getStatusCount(status) + "\n");
+            }
+        }
+        out.print("# TYPE carrental_http_requests_in_flight gauge\n");
+        for (RouteMetrics route : routes) {
+            out.print("carrental_http_requests_in_flight{route=\"" + route.getRoute() + "\"} " + route.getInFlight() + "\n");
+        }
+        out.print("# TYPE carrental_http_request_duration_seconds summary\n");
+        for (RouteMetrics route : routes) {
+            LatencyHistogram latency = route.getLatency();
+            String label = "route=\"" + route.getRoute() + "\"";
+            for (double q : QUANTILES) {
+                out.print("carrental_http_request_duration_seconds{" + label + ",quantile=\"" + q + "\"} "
+                        + seconds(latency.quantileMicros(q)) + "\n");
+            }
+            out.print("carrental_http_request_duration_seconds_sum{" + label + "} " + seconds(latency.getSumMicros()) + "\n");
+            out.print("carrental_http_request_duration_seconds_count{" + label + "} " + latency.getCount() + "\n");
+        }
+        out.print("# TYPE carrental_http_request_duration_seconds_max gauge\n");
+        for (RouteMetrics route : routes) {
+            out.print("carrental_http_request_duration_seconds_max{route=\"" + route.getRoute() + "\"} "
+                    + seconds(route.getLatency().getMaxMicros()) + "\n");
+        }
+
+        ConnectionPool.Stats pool = DBConnection.getPoolStats();
+        if (pool != null) {
+            gauge(out, "carrental_db_pool_active", pool.getActive());
+            gauge(out, "carrental_db_pool_idle", pool.getIdle());
+            gauge(out, "carrental_db_pool_waiters", pool.getWaiters());
+            gauge(out, "carrental_db_pool_max_size", pool.getMaxSize());
+            counter(out, "carrental_db_pool_acquired_total", pool.getAcquired());
+            counter(out, "carrental_db_pool_timeouts_total", pool.getTimeouts());
+            counter(out, "carrental_db_pool_created_total", pool.getCreated());
+            counter(out, "carrental_db_pool_evicted_total", pool.getEvicted());
+            counter(out, "carrental_db_statement_cache_hits_total", pool.getStatementCacheHits());
+            counter(out, "carrental_db_statement_cache_misses_total", pool.getStatementCacheMisses());
+            long[] bounds = pool.getLatencyBucketsMicros();
+            long[] counts = pool.getLatencyCounts();
+            long cumulative = 0;
+            out.print("# TYPE carrental_db_pool_acquire_seconds histogram\n");
+            for (int i = 0; i < counts.length; i++) {
+                cumulative += counts[i];
+                String le = i < bounds.length ? BigDecimal.valueOf(bounds[i], 6).stripTrailingZeros().toPlainString() : "+Inf";
+                out.print("carrental_db_pool_acquire_seconds_bucket{le=\"" + le + "\"} " + cumulative + "\n");
+            }
+            out.print("carrental_db_pool_acquire_seconds_count " + cumulative + "\n");
+        }
+        gauge(out, "carrental_async_in_flight", DaoExecutor.getInFlight());
+        gauge(out, "carrental_async_active", DaoExecutor.getActive());
+        gauge(out, "carrental_async_max_concurrency", DaoExecutor.getMaxConcurrency());
+        counter(out, "carrental_async_rejected_total", DaoExecutor.getRejected());
+        gauge(out, "carrental_catalog_version", CarDAO.getCatalogVersion());
+        counter(out, "carrental_catalog_cache_hits_total", CarCatalogCache.getHits());
+        counter(out, "carrental_catalog_cache_loads_total", CarCatalogCache.getLoads());
+        EventBroadcaster events = BookingEvents.get();
+        gauge(out, "carrental_booking_event_subscribers", events.getSubscriberCount());
+        counter(out, "carrental_booking_events_published_total", events.getLastSequence());
+        counter(out, "carrental_booking_event_evictions_total", events.getEvictedCount());
+        out.print("# TYPE carrental_rate_limit_keys gauge\n");
+        for (Map.Entry<String, RateLimiter> e : RateLimitFilter.getLimiters().entrySet()) {
+            out.print("carrental_rate_limit_keys{route=\"" + e.getKey() + "\"} " + e.getValue().size() + "\n");
+        }
+        out.print("# TYPE carrental_rate_limited_total counter\n");
+        for (Map.Entry<String, RateLimiter> e : RateLimitFilter.getLimiters().entrySet()) {
+            out.print("carrental_rate_limited_total{route=\"" + e.getKey() + "\"} " + e.getValue().getRejected() + "\n");
+        }
+        gauge(out, "carrental_idempotency_keys", IdempotencyStore.get().size());
+        counter(out, "carrental_idempotency_replays_total", IdempotencyStore.get().getReplays());
+        counter(out, "carrental_log_dropped_total", Log.getDropped());
+        counter(out, "carrental_log_suppressed_traces_total", Log.getSuppressedTraces());
+        out.flush();
+    }
+
+    private static void gauge(PrintWriter out, String name, long value) {
+        out.print("# TYPE " + name + " gauge\n");
+        out.print(name + " " + value + "\n");
+    }
+
+    private static void counter(PrintWriter out, String name, long value) {
+        out.print("# TYPE " + name + " counter\n");
+        out.print(name + " " + value + "\n");
+    }
+
+    private static String seconds(long micros) {
+        return Double.toString(micros / 1_000_000.0);
+    }
+}
@@ -0,0 +1,101 @@
+package com.carrental.servlet;
+
+import com.carrental.dao.CarCatalogCache;
+import com.carrental.model.Car;
+import com.carrental.pricing.PricingEngine;
+import com.carrental.pricing.Quote;
+import com.carrental.util.json.JsonWriter;
+import com.carrental.util.log.Log;
+import com.carrental.util.log.Logger;
+
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+
+// GET /api/quote?carId=&pickupDateTime=&dropoffDateTime= prices a rental without booking it
+@WebServlet("/api/quote")
+public class QuoteServlet extends HttpServlet {
+    private static final Logger log = Log.get(QuoteServlet.class);
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+
+        resp.setContentType("application/json");
+        resp.setCharacterEncoding("UTF-8");
+
+        String carIdStr = req.getParameter("carId");
+        String pickupStr = req.getParameter("pickupDateTime");
+        String dropoffStr = req.getParameter("dropoffDateTime");
+        if (carIdStr == null || pickupStr == null || dropoffStr == null) {
+            resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            JsonWriter.writeResult(resp.getWriter(), false, "carId, pickupDateTime and dropoffDateTime are required");
+            return;
+        }
+
+        int carId;
+        LocalDateTime pickup;
+        LocalDateTime dropoff;
+        try {
+            carId = Integer.parseInt(carIdStr);
+            pickup = LocalDateTime.parse(pickupStr);
+            dropoff = LocalDateTime.parse(dropoffStr);
+        } catch (NumberFormatException | DateTimeParseException e) {
+            resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            JsonWriter.writeResult(resp.getWriter(), false, "Invalid date or number format");
+            return;
+        }
+
+        String periodError = BookingServlet.validatePeriod(pickup, dropoff);
+        if (periodError != null) {
+            resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            JsonWriter.writeResult(resp.getWriter(), false, periodError);
+            return;
+        }
+
+        Car car;
+        try {
+            car = CarCatalogCache.get().getCar(carId);
+        } catch (SQLException e) {
+            log.error("Failed to load car catalog", e, "carId", carId);
+            resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            JsonWriter.writeResult(resp.getWriter(), false, "Failed to load vehicle");
+            return;
+        }
+        if (car == null) {
+            resp.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            JsonWriter.writeResult(resp.getWriter(), false, "Vehicle not found");
+            return;
+        }
+
+        Quote quote = PricingEngine.getDefault().quote(car, pickup, dropoff);
+
+        // Same inputs give the same quote until the catalog changes; let the browser reuse it briefly
+        resp.setHeader("Cache-Control", "public, max-age=60");
+        JsonWriter json = new JsonWriter(resp.getWriter());
+        json.beginObject()
+                .field("success", true)
+                .field("carId", quote.getCarId())
+                .field("basePrice", quote.getBasePrice(), 2)
+                .field("days", quote.getDays())
+                .field("weekdayDays", quote.getWeekdayDays())
+                .field("weekendDays", quote.getWeekendDays())
+                .field("subtotal", quote.getSubtotal(), 2)
+                .name("adjustments").beginArray();
+        for (Quote.Adjustment adjustment : quote.getAdjustments()) {
+            json.beginObject()
+                    .field("label", adjustment.getLabel())
+                    .field("amount", adjustment.getAmount(), 2)
+                    .endObject();
+        }
+        json.endArray()
+                .field("totalPrice", quote.getTotal(), 2)
+                .endObject();
+        json.flush();
+    }
+}
@@ -0,0 +1,545 @@
+package com.carrental.util;
+
+import com.carrental.util.log.Log;
+import com.carrental.util.log.Logger;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded JDBC connection pool used by {@link DBConnection}.
+ *
+ * A fair semaphore caps the number of physical connections at maxSize; idle
+ * connections are kept on a LIFO deque, validated on borrow and evicted by a
+ * background thread once they have been idle longer than idleTimeoutMs (never
+ * dropping below minSize). Callers just close() the connection they borrowed to
+ * hand it back.
+ *
+ * Each connection also keeps up to statementCacheSize prepared statements,
+ * keyed by SQL and evicted least recently used. prepareStatement(sql) hands out
+ * the cached one when it is free, and closing it only clears its parameters, so
+ * a repeated query skips parsing and planning.
+ *
+ * Every borrow gets its own connection proxy and every checkout of a cached
+ * statement its own statement handle, so a handle kept after close() stays
+ * closed even once the connection or statement behind it is handed out again.
+ */
+public class ConnectionPool {
+    private static final Logger log = Log.get(ConnectionPool.class);
+
+    // Upper bounds (microseconds) of the acquire-latency histogram buckets; the
+    // last bucket catches everything above the final bound.
+    private static final long[] LATENCY_BUCKETS_MICROS = {
+            50, 100, 250, 500, 1_000, 5_000, 10_000, 50_000, 100_000, 500_000, 1_000_000 };
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int minSize;
+    private final int maxSize;
+    private final long acquireTimeoutMs;
+    private final long idleTimeoutMs;
+    private final int validationTimeoutSeconds;
+    private final int statementCacheSize;
+
+    private final Semaphore permits;
+    private final ConcurrentLinkedDeque<PooledConnection> idle = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger total = new AtomicInteger();
+    private final AtomicInteger waiters = new AtomicInteger();
+    private final AtomicLongArray latencyHistogram = new AtomicLongArray(LATENCY_BUCKETS_MICROS.length + 1);
+    // acquired, timeouts, created, evicted, statement cache hits, statement cache misses
+    private final AtomicLongArray counters = new AtomicLongArray(6);
+    private final ScheduledExecutorService evictor;
+    private volatile boolean closed;
+
+    public ConnectionPool(String url, String user, String password, int minSize, int maxSize,
+            long acquireTimeoutMs, long idleTimeoutMs, int validationTimeoutSeconds, int statementCacheSize) {
+        if (maxSize < 1 || minSize < 0 || minSize > maxSize) {
+            throw new IllegalArgumentException("Invalid pool size: min=" + minSize + ", max=" + maxSize);
+        }
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.acquireTimeoutMs = acquireTimeoutMs;
+        this.idleTimeoutMs = idleTimeoutMs;
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+        this.statementCacheSize = statementCacheSize;
+        this.permits = new Semaphore(maxSize, true);
+
+        this.evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "carrental-pool-evictor");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1_000, idleTimeoutMs / 2);
+        evictor.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /** Opens minSize connections up front so the first requests don't pay for them. */
+    public void warmUp() {
+        while (total.get() < minSize) {
+            try {
+                idle.offerFirst(new PooledConnection(openPhysical()));
+            } catch (SQLException e) {
+                log.warn("Warm-up failed", "error", e.getMessage());
+                return;
+            }
+        }
+    }
+
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        long start = System.nanoTime();
+        waiters.incrementAndGet();
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        } finally {
+            waiters.decrementAndGet();
+        }
+        if (!acquired) {
+            counters.incrementAndGet(1);
+            throw new SQLTimeoutException("Timed out after " + acquireTimeoutMs + " ms waiting for a database connection");
+        }
+
+        try {
+            PooledConnection pooled;
+            while ((pooled = idle.pollFirst()) != null) {
+                if (isUsable(pooled.physical)) {
+                    break;
+                }
+                discard(pooled);
+            }
+            if (pooled == null) {
+                pooled = new PooledConnection(openPhysical());
+            }
+            Connection proxy = pooled.lease();
+            active.incrementAndGet();
+            counters.incrementAndGet(0);
+            recordLatency((System.nanoTime() - start) / 1_000);
+            return proxy;
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /** Closes idle connections and stops the evictor; leased connections close when returned. */
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        evictor.shutdownNow();
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            discard(pooled);
+        }
+    }
+
+    public Stats getStats() {
+        long[] histogram = new long[latencyHistogram.length()];
+        for (int i = 0; i < histogram.length; i++) {
+            histogram[i] = latencyHistogram.get(i);
+        }
+        return new Stats(active.get(), idle.size(), waiters.get(), total.get(), minSize, maxSize,
+                counters.get(0), counters.get(1), counters.get(2), counters.get(3), counters.get(4), counters.get(5),
+                LATENCY_BUCKETS_MICROS.clone(), histogram);
+    }
+
+    private void release(PooledConnection pooled) {
+        if (!pooled.leased) {
+            return;
+        }
+        pooled.leased = false;
+        active.decrementAndGet();
+        try {
+            pooled.reclaimStatements();
+            if (closed || pooled.physical.isClosed()) {
+                discard(pooled);
+                return;
+            }
+            if (!pooled.physical.getAutoCommit()) {
+                pooled.physical.rollback();
+                pooled.physical.setAutoCommit(true);
+            }
+            pooled.lastUsed = System.currentTimeMillis();
+            idle.offerFirst(pooled);
+        } catch (SQLException e) {
+            discard(pooled);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private boolean isUsable(Connection conn) {
+        try {
+            return !conn.isClosed() && conn.isValid(validationTimeoutSeconds);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private Connection openPhysical() throws SQLException {
+        Connection conn = DriverManager.getConnection(url, user, password);
+        total.incrementAndGet();
+        counters.incrementAndGet(2);
+        return conn;
+    }
+
+    private void discard(PooledConnection pooled) {
+        total.decrementAndGet();
+        try {
+            pooled.physical.close();
+        } catch (SQLException ignore) {
+        }
+    }
+
+    private void evictIdle() {
+        long cutoff = System.currentTimeMillis() - idleTimeoutMs;
+        // Oldest idle connections sit at the tail of the deque
+        PooledConnection pooled;
+        while (total.get() > minSize && (pooled = idle.peekLast()) != null && pooled.lastUsed < cutoff) {
+            if (idle.removeLastOccurrence(pooled)) {
+                counters.incrementAndGet(3);
+                discard(pooled);
+            }
+        }
+    }
+
+    private void recordLatency(long micros) {
+        int bucket = 0;
+        while (bucket < LATENCY_BUCKETS_MICROS.length && micros > LATENCY_BUCKETS_MICROS[bucket]) {
+            bucket++;
+        }
+        latencyHistogram.incrementAndGet(bucket);
+    }
+
+    private final class PooledConnection {
+        final Connection physical;
+        // Only touched by the thread holding the lease
+        final Map<String, CachedStatement> statements = new LinkedHashMap<String, CachedStatement>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+                if (size() <= statementCacheSize) {
+                    return false;
+                }
+                eldest.getValue().evict();
+                return true;
+            }
+        };
+        volatile boolean leased;
+        volatile long lastUsed = System.currentTimeMillis();
+
+        PooledConnection(Connection physical) {
+            this.physical = physical;
+        }
+
+        Connection lease() {
+            leased = true;
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[] { Connection.class }, new Lease(this));
+        }
+
+        // connection is the lease proxy asking, which the handle reports as its getConnection()
+        PreparedStatement prepareCached(String sql, Connection connection) throws SQLException {
+            CachedStatement cached = statements.get(sql);
+            if (cached != null && !cached.isCheckedOut()) {
+                counters.incrementAndGet(4);
+                return cached.checkOut(connection);
+            }
+            counters.incrementAndGet(5);
+            if (cached != null) {
+                // Already open further up the caller's stack; this one is not kept
+                return physical.prepareStatement(sql);
+            }
+            cached = new CachedStatement(this, physical.prepareStatement(sql));
+            statements.put(sql, cached);
+            return cached.checkOut(connection);
+        }
+
+        // Statements the last lessee left open are checked back in for it; their handles go dead
+        void reclaimStatements() throws SQLException {
+            for (CachedStatement cached : statements.values()) {
+                if (cached.isCheckedOut()) {
+                    cached.current = null;
+                    cached.physical.clearParameters();
+                    cached.physical.clearBatch();
+                }
+            }
+        }
+    }
+
+    /** One borrow of a pooled connection; its proxy goes dead on close(). */
+    private final class Lease implements InvocationHandler {
+        final PooledConnection pooled;
+        final AtomicBoolean open = new AtomicBoolean(true);
+
+        Lease(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (open.compareAndSet(true, false)) {
+                        release(pooled);
+                    }
+                    return null;
+                case "isClosed":
+                    return !open.get() || pooled.physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled[" + pooled.physical + "]";
+                case "prepareStatement":
+                    if (open.get() && statementCacheSize > 0 && args.length == 1) {
+                        return pooled.prepareCached((String) args[0], (Connection) proxy);
+                    }
+                    return forward(method, args);
+                default:
+                    return forward(method, args);
+            }
+        }
+
+        private Object forward(Method method, Object[] args) throws Throwable {
+            if (!open.get()) {
+                throw new SQLException("Connection has already been returned to the pool");
+            }
+            try {
+                return method.invoke(pooled.physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    /** A prepared statement kept open for reuse, handed out through one {@link StatementHandle} per checkout. */
+    private static final class CachedStatement {
+        final PooledConnection owner;
+        final PreparedStatement physical;
+        // The live checkout's handle, null while the statement sits in the cache. Volatile
+        // so a stale handle used from another thread still sees it has been replaced.
+        volatile StatementHandle current;
+        boolean evicted;
+
+        CachedStatement(PooledConnection owner, PreparedStatement physical) {
+            this.owner = owner;
+            this.physical = physical;
+        }
+
+        boolean isCheckedOut() {
+            return current != null;
+        }
+
+        PreparedStatement checkOut(Connection connection) {
+            StatementHandle handle = new StatementHandle(this, connection);
+            current = handle;
+            return handle.proxy;
+        }
+
+        // Dropped from the cache; closed now if free, otherwise when its user closes it
+        void evict() {
+            evicted = true;
+            if (current == null) {
+                closeQuietly();
+            }
+        }
+
+        void checkIn() {
+            current = null;
+            if (evicted) {
+                closeQuietly();
+                return;
+            }
+            try {
+                physical.clearParameters();
+                physical.clearBatch();
+            } catch (SQLException e) {
+                owner.statements.values().remove(this);
+                closeQuietly();
+            }
+        }
+
+        private void closeQuietly() {
+            try {
+                physical.close();
+            } catch (SQLException ignore) {
+            }
+        }
+    }
+
+    /** One checkout of a cached statement; close() hands it back and every later call on it fails. */
+    private static final class StatementHandle implements InvocationHandler {
+        final CachedStatement cached;
+        final Connection connection;
+        final PreparedStatement proxy;
+
+        StatementHandle(CachedStatement cached, Connection connection) {
+            this.cached = cached;
+            this.connection = connection;
+            this.proxy = (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                    new Class<?>[] { PreparedStatement.class }, this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            boolean live = cached.current == this;
+            switch (method.getName()) {
+                case "close":
+                    if (live) {
+                        cached.checkIn();
+                    }
+                    return null;
+                case "isClosed":
+                    return !live || cached.physical.isClosed();
+                case "getConnection":
+                    return connection;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Cached[" + cached.physical + "]";
+                default:
+                    if (!live) {
+                        throw new SQLException("Statement is closed");
+                    }
+                    try {
+                        return method.invoke(cached.physical, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+            }
+        }
+    }
+
+    /** Point-in-time snapshot of pool usage. */
+    public static class Stats {
+        private final int active;
+        private final int idle;
+        private final int waiters;
+        private final int total;
+        private final int minSize;
+        private final int maxSize;
+        private final long acquired;
+        private final long timeouts;
+        private final long created;
+        private final long evicted;
+        private final long statementCacheHits;
+        private final long statementCacheMisses;
+        private final long[] latencyBucketsMicros;
+        private final long[] latencyCounts;
+
+        Stats(int active, int idle, int waiters, int total, int minSize, int maxSize, long acquired, long timeouts,
+                long created, long evicted, long statementCacheHits, long statementCacheMisses,
+                long[] latencyBucketsMicros, long[] latencyCounts) {
+            this.active = active;
+            this.idle = idle;
+            this.waiters = waiters;
+            this.total = total;
+            this.minSize = minSize;
+            this.maxSize = maxSize;
+            this.acquired = acquired;
+            this.timeouts = timeouts;
+            this.created = created;
+            this.evicted = evicted;
+            this.statementCacheHits = statementCacheHits;
+            this.statementCacheMisses = statementCacheMisses;
+            this.latencyBucketsMicros = latencyBucketsMicros;
+            this.latencyCounts = latencyCounts;
+        }
+
+        public int getActive() {
+            return active;
+        }
+
+        public int getIdle() {
+            return idle;
+        }
+
+        public int getWaiters() {
+            return waiters;
+        }
+
+        public int getTotal() {
+            return total;
+        }
+
+        public int getMinSize() {
+            return minSize;
+        }
+
+        public int getMaxSize() {
+            return maxSize;
+        }
+
+        public long getAcquired() {
+            return acquired;
+        }
+
+        public long getTimeouts() {
+            return timeouts;
+        }
+
+        public long getCreated() {
+            return created;
+        }
+
+        public long getEvicted() {
+            return evicted;
+        }
+
+        /** prepareStatement(sql) calls served from a connection's statement cache. */
+        public long getStatementCacheHits() {
+            return statementCacheHits;
+        }
+
+        public long getStatementCacheMisses() {
+            return statementCacheMisses;
+        }
+
+        /** Upper bound of each histogram bucket; the final count has no upper bound. */
+        public long[] getLatencyBucketsMicros() {
+            return latencyBucketsMicros.clone();
+        }
+
+        public long[] getLatencyCounts() {
+            return latencyCounts.clone();
+        }
+
+        @Override
+        public String toString() {
+            return "active=" + active + ", idle=" + idle + ", waiters=" + waiters + ", total=" + total
+                    + ", acquired=" + acquired + ", timeouts=" + timeouts;
+        }
+    }
+}
@@ -1,123 +1,89 @@
 package com.carrental.util;
 
+import com.carrental.util.log.Log;
+import com.carrental.util.log.Logger;
+
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.sql.Statement;
 
 public class DBConnection {
-        // H2 Database URL
-        private static final String URL = "jdbc:h2:~/car_rental_db;DB_CLOSE_DELAY=-1";
+        private static final Logger log = Log.get(DBConnection.class);
+
+        // H2 Database URL, overridable with -Dcarrental.db.url (benchmarks use an in-memory database)
+        private static final String URL = System.getProperty("carrental.db.url", "jdbc:h2:~/car_rental_db;DB_CLOSE_DELAY=-1");
         private static final String USER = "sa";
         private static final String PASSWORD = "";
 
+        // Pool sizing, overridable with -Dcarrental.db.pool.<name>=<value>
+        private static final int POOL_MIN_SIZE = Integer.getInteger("carrental.db.pool.minSize", 2);
+        private static final int POOL_MAX_SIZE = Integer.getInteger("carrental.db.pool.maxSize", 16);
+        private static final long POOL_ACQUIRE_TIMEOUT_MS = Long.getLong("carrental.db.pool.acquireTimeoutMs", 5_000L);
+        private static final long POOL_IDLE_TIMEOUT_MS = Long.getLong("carrental.db.pool.idleTimeoutMs", 300_000L);
+        private static final int POOL_VALIDATION_TIMEOUT_S = Integer.getInteger("carrental.db.pool.validationTimeoutSeconds", 2);
+        private static final int POOL_STATEMENT_CACHE_SIZE = Integer.getInteger("carrental.db.pool.statementCacheSize", 64);
+
+        private static ConnectionPool pool;
+        // Set when the schema could not be brought up to date; getConnection then refuses to work
+        private static volatile SQLException initFailure;
+
         static {
                 try {
                         // Load H2 Driver
                         Class.forName("org.h2.Driver");
+                        pool = new ConnectionPool(URL, USER, PASSWORD, POOL_MIN_SIZE, POOL_MAX_SIZE,
+                                        POOL_ACQUIRE_TIMEOUT_MS, POOL_IDLE_TIMEOUT_MS, POOL_VALIDATION_TIMEOUT_S,
+                                        POOL_STATEMENT_CACHE_SIZE);
                         initDatabase();
+                        pool.warmUp();
                 } catch (ClassNotFoundException e) {
-                        e.printStackTrace();
+                        log.error("H2 driver not found", e);
                 }
         }
 
         public static Connection getConnection() throws SQLException {
-                return DriverManager.getConnection(URL, USER, PASSWORD);
+                if (pool == null) {
+                        throw new SQLException("H2 driver not available");
+                }
+                if (initFailure != null) {
+                        throw new SQLException("Database initialization failed", initFailure);
+                }
+                return pool.getConnection();
         }
 
-        private static void initDatabase() {
-                System.out.println("DBConnection: Initializing Database at " + URL); // LOG
-                String createUsersTable = "CREATE TABLE IF NOT EXISTS users (" +
-                                "id INT AUTO_INCREMENT PRIMARY KEY, " +
-                                "name VARCHAR(255), " +
-                                "email VARCHAR(255) UNIQUE, " +
-                                "password VARCHAR(255), " +
-                                "role VARCHAR(50))";
-
-                String createCarsTable = "CREATE TABLE IF NOT EXISTS cars (" +
-                                "id INT AUTO_INCREMENT PRIMARY KEY, " +
-                                "name VARCHAR(255), " +
-                                "price DOUBLE, " +
-                                "image TEXT, " +
-                                "features TEXT)";
-
-                String createBookingsTable = "CREATE TABLE IF NOT EXISTS bookings (" +
-                                "id INT AUTO_INCREMENT PRIMARY KEY, " +
-                                "user_id INT, " +
-                                "car_id INT, " +
-                                "start_date DATE, " +
-                                "end_date DATE, " +
-                                "total_price DOUBLE, " +
-                                "status VARCHAR(50), " +
-                                "payment_status VARCHAR(50) DEFAULT 'UNPAID', " +
-                                "FOREIGN KEY (user_id) REFERENCES users(id), " +
-                                "FOREIGN KEY (car_id) REFERENCES cars(id))";
+        public static ConnectionPool.Stats getPoolStats() {
+                return pool != null ? pool.getStats() : null;
+        }
+
+        public static void shutdown() {
+                if (pool != null) {
+                        log.info("Closing connection pool", "stats", pool.getStats());
+                        pool.close();
+                }
+        }
 
+        private static void initDatabase() {
+                log.info("Initializing database", "url", URL);
                 try (Connection conn = getConnection();
                                 Statement stmt = conn.createStatement()) {
-                        stmt.execute(createUsersTable);
-                        stmt.execute(createCarsTable);
-                        stmt.execute(createBookingsTable);
-
-                        // Ensure new columns for vehicle type and registration number exist (safe to
-                        // run)
-                        try {
-                                stmt.execute("ALTER TABLE cars ADD COLUMN IF NOT EXISTS registration_number VARCHAR(100)");
-                        } catch (SQLException ignore) {
-                        }
-                        try {
-                                stmt.execute("ALTER TABLE cars ADD COLUMN IF NOT EXISTS type VARCHAR(50) DEFAULT 'CAR'");
-                        } catch (SQLException ignore) {
-                        }
-                        // Ensure bookings table has extended columns
-                        try {
-                                stmt.execute("ALTER TABLE bookings ADD COLUMN IF NOT EXISTS pickup_datetime TIMESTAMP");
-                        } catch (SQLException ignore) {
-                        }
-                        try {
-                                stmt.execute("ALTER TABLE bookings ADD COLUMN IF NOT EXISTS dropoff_datetime TIMESTAMP");
-                        } catch (SQLException ignore) {
-                        }
-                        try {
-                                stmt.execute("ALTER TABLE bookings ADD COLUMN IF NOT EXISTS driving_license_path VARCHAR(1024)");
-                        } catch (SQLException ignore) {
-                        }
-                        try {
-                                stmt.execute("ALTER TABLE bookings ADD COLUMN IF NOT EXISTS created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP");
-                        } catch (SQLException ignore) {
-                        }
-                        try {
-                                stmt.execute("ALTER TABLE bookings ADD COLUMN IF NOT EXISTS payment_status VARCHAR(50) DEFAULT 'UNPAID'");
-                        } catch (SQLException ignore) {
-                        }
-
-                        // Migrate old column names if they exist
-                        try {
-                                stmt.execute("ALTER TABLE bookings ALTER COLUMN customer_id RENAME TO user_id");
-                                System.out.println("DBConnection: Renamed customer_id to user_id");
-                        } catch (SQLException ignore) {
-                        }
-                        try {
-                                stmt.execute("ALTER TABLE bookings ALTER COLUMN vehicle_id RENAME TO car_id");
-                                System.out.println("DBConnection: Renamed vehicle_id to car_id");
-                        } catch (SQLException ignore) {
-                        }
+                        int applied = SchemaMigrator.migrate(conn);
+                        log.info("Schema ready", "version", SchemaMigrator.currentVersion(conn), "applied", applied);
 
                         // Seed Data
                         java.sql.ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM users");
                         if (rs.next() && rs.getInt(1) == 0) {
-                                System.out.println("DBConnection: Seeding Users..."); // LOG
+                                log.info("Seeding users");
                                 stmt.execute(
                                                 "INSERT INTO users (name, email, password, role) VALUES ('Admin', 'admin@example.com', 'admin', 'ADMIN')");
                                 stmt.execute(
                                                 "INSERT INTO users (name, email, password, role) VALUES ('User', 'user@example.com', 'user', 'USER')");
                         } else {
-                                System.out.println("DBConnection: Users table already populated."); // LOG
+                                log.debug("Users table already populated");
                         }
 
                         rs = stmt.executeQuery("SELECT COUNT(*) FROM cars");
                         if (rs.next() && rs.getInt(1) == 0) {
-                                System.out.println("DBConnection: Seeding Cars..."); // LOG
+                                log.info("Seeding cars");
 
                                 // Economy Cars (₹ per day)
                                 stmt.execute(
@@ -147,12 +113,13 @@ public class DBConnection {
                                 stmt.execute(
                                                 "INSERT INTO cars (name, price, image, features) VALUES ('Volvo S60', 88.0, 'images/default.jpg', 'Safety Features, Android Auto, Apple CarPlay, Premium Sound, Panoramic Roof')");
 
-                                System.out.println("DBConnection: Cars seeded successfully!");
+                                log.info("Cars seeded");
                         }
 
-                        System.out.println("DBConnection: Database initialized successfully.");
+                        log.info("Database initialized");
                 } catch (SQLException e) {
-                        e.printStackTrace();
+                        log.error("Database initialization failed", e);
+                        initFailure = e;
                 }
         }
 }
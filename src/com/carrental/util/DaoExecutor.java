@@ -0,0 +1,257 @@
+package com.carrental.util;
+
+import com.carrental.util.log.Log;
+import com.carrental.util.log.Logger;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs servlet handlers off the container's request threads.
+ *
+ * {@link #dispatch} puts the request into async mode, hands the handler to
+ * the executor and returns, so the Tomcat thread is free at once; the worker
+ * completes the AsyncContext when the handler is done. If the AsyncContext
+ * times out first, the client gets a 503 and the handler's later writes are
+ * discarded (see {@link GuardedResponse}). On Java 21+ each task
+ * gets its own virtual thread; on older runtimes a bounded pool of platform
+ * threads stands in. Either way at most carrental.db.maxConcurrency handlers
+ * (default: the connection pool size) run at once, so a burst of requests
+ * queues here cheaply instead of timing out inside the connection pool.
+ * Handlers that spend most of their time off the database (password
+ * hashing) use {@link #dispatchUngated} and take a slot only around their
+ * queries with {@link #acquirePermit}.
+ *
+ * Other settings: carrental.async.timeoutMs (AsyncContext timeout, default
+ * 60000), carrental.async.permitTimeoutMs (how long a request waits for a slot
+ * before a 503, default 10000) and, for the fallback pool,
+ * carrental.async.threads (default 256) and carrental.async.queueSize
+ * (default 10000).
+ */
+public final class DaoExecutor {
+    private static final Logger log = Log.get(DaoExecutor.class);
+
+    private static final int MAX_CONCURRENCY = Integer.getInteger("carrental.db.maxConcurrency",
+            Integer.getInteger("carrental.db.pool.maxSize", 16));
+    private static final long ASYNC_TIMEOUT_MS = Long.getLong("carrental.async.timeoutMs", 60_000L);
+    private static final long PERMIT_TIMEOUT_MS = Long.getLong("carrental.async.permitTimeoutMs", 10_000L);
+
+    private static final Semaphore permits = new Semaphore(MAX_CONCURRENCY, true);
+    private static final AtomicInteger inFlight = new AtomicInteger();
+    private static final AtomicLong rejected = new AtomicLong();
+    // Set while the current thread holds a slot, so nested acquirePermit calls do not take a second
+    private static final ThreadLocal<Boolean> holdingPermit = new ThreadLocal<>();
+    private static final Permit NO_PERMIT = () -> { };
+    private static volatile boolean virtualThreads;
+    private static final ExecutorService executor = createExecutor();
+
+    /** The part of a servlet method that runs on the executor. */
+    public interface Handler {
+        void handle(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException;
+    }
+
+    /** A database slot held by the current thread, released by {@link #close}. */
+    public interface Permit extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private DaoExecutor() {
+    }
+
+    /**
+     * Runs the handler asynchronously. Falls back to running it inline when
+     * something in the filter chain does not support async.
+     */
+    public static void dispatch(HttpServletRequest req, HttpServletResponse resp, Handler handler)
+            throws ServletException, IOException {
+        dispatch(req, resp, handler, true);
+    }
+
+    /**
+     * Like {@link #dispatch}, but the handler runs without a database slot and
+     * must wrap its own database work in {@link #acquirePermit}.
+     */
+    public static void dispatchUngated(HttpServletRequest req, HttpServletResponse resp, Handler handler)
+            throws ServletException, IOException {
+        dispatch(req, resp, handler, false);
+    }
+
+    /**
+     * Takes a database slot for the current thread, waiting up to the permit
+     * timeout. Returns at once when the thread already holds one. Throws
+     * {@link RejectedExecutionException} when no slot frees up in time.
+     */
+    public static Permit acquirePermit() {
+        return acquirePermit(PERMIT_TIMEOUT_MS);
+    }
+
+    private static Permit acquirePermit(long timeoutMs) {
+        if (holdingPermit.get() != null) {
+            return NO_PERMIT;
+        }
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for a database slot");
+        }
+        if (!acquired) {
+            rejected.incrementAndGet();
+            throw new RejectedExecutionException("No database slot free");
+        }
+        holdingPermit.set(Boolean.TRUE);
+        return () -> {
+            holdingPermit.remove();
+            permits.release();
+        };
+    }
+
+    private static void dispatch(HttpServletRequest req, HttpServletResponse resp, Handler handler, boolean gated)
+            throws ServletException, IOException {
+        if (!req.isAsyncSupported()) {
+            handler.handle(req, resp);
+            return;
+        }
+        AsyncContext async = req.startAsync(req, resp);
+        async.setTimeout(ASYNC_TIMEOUT_MS);
+        String uri = req.getRequestURI();
+        GuardedResponse guarded = new GuardedResponse(async, resp, uri);
+        async.addListener(guarded);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ASYNC_TIMEOUT_MS);
+        inFlight.incrementAndGet();
+        try {
+            executor.execute(() -> run(req, guarded, handler, gated, deadline, uri));
+        } catch (RejectedExecutionException e) {
+            inFlight.decrementAndGet();
+            rejected.incrementAndGet();
+            sendBusy(guarded);
+            guarded.complete();
+        }
+    }
+
+    // After a timeout the container recycles req, so only the uri captured up front is logged
+    private static void run(HttpServletRequest req, GuardedResponse resp, Handler handler, boolean gated,
+            long deadline, String uri) {
+        Permit permit = null;
+        try {
+            if (gated) {
+                try {
+                    // Never wait past the async timeout: the client has had its answer by then
+                    long left = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                    permit = acquirePermit(Math.max(0, Math.min(PERMIT_TIMEOUT_MS, left)));
+                } catch (RejectedExecutionException e) {
+                    log.warn("No database slot free, rejecting request", "uri", uri);
+                    sendBusy(resp);
+                    return;
+                }
+            }
+            if (resp.isTimedOut()) {
+                return;
+            }
+            handler.handle(req, resp);
+        } catch (Exception e) {
+            if (resp.isTimedOut()) {
+                log.debug("Handler stopped after async timeout", "uri", uri, "error", e.getMessage());
+                return;
+            }
+            log.error("Async request failed", e, "uri", uri);
+            if (!resp.isCommitted()) {
+                resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            }
+        } finally {
+            if (permit != null) {
+                permit.close();
+            }
+            inFlight.decrementAndGet();
+            resp.complete();
+        }
+    }
+
+    private static void sendBusy(HttpServletResponse resp) {
+        if (resp.isCommitted()) {
+            return;
+        }
+        try {
+            resp.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            resp.setHeader("Retry-After", "1");
+            resp.setContentType("application/json");
+            resp.setCharacterEncoding("UTF-8");
+            resp.getWriter().write("{\"success\":false,\"message\":\"Server busy, please retry\"}");
+        } catch (IOException | IllegalStateException e) {
+            log.debug("Could not write busy response", "error", e.getMessage());
+        }
+    }
+
+    /** Handlers dispatched and not yet finished, including those waiting for a slot. */
+    public static int getInFlight() {
+        return inFlight.get();
+    }
+
+    public static int getMaxConcurrency() {
+        return MAX_CONCURRENCY;
+    }
+
+    /** Handlers currently holding a slot. */
+    public static int getActive() {
+        return MAX_CONCURRENCY - permits.availablePermits();
+    }
+
+    public static long getRejected() {
+        return rejected.get();
+    }
+
+    public static boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /** Stops accepting work and waits briefly for running handlers. */
+    public static void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static ExecutorService createExecutor() {
+        // Looked up reflectively so the app still builds and runs on Java 17
+        try {
+            Method factory = java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            ExecutorService virtual = (ExecutorService) factory.invoke(null);
+            virtualThreads = true;
+            log.info("Using virtual threads for request handlers", "maxConcurrency", MAX_CONCURRENCY);
+            return virtual;
+        } catch (ReflectiveOperationException e) {
+            int threads = Integer.getInteger("carrental.async.threads", 256);
+            int queueSize = Integer.getInteger("carrental.async.queueSize", 10_000);
+            AtomicInteger count = new AtomicInteger();
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(queueSize), r -> {
+                        Thread t = new Thread(r, "carrental-dao-" + count.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    });
+            pool.allowCoreThreadTimeOut(true);
+            log.info("Virtual threads unavailable, using a platform thread pool for request handlers",
+                    "threads", threads, "maxConcurrency", MAX_CONCURRENCY);
+            return pool;
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package com.carrental.util;
+
+import com.carrental.util.log.Log;
+import com.carrental.util.log.Logger;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+
+/**
+ * The response a {@link DaoExecutor} handler writes to, and the listener
+ * that ends it when the AsyncContext times out.
+ *
+ * After a timeout the container recycles the request and response while the
+ * worker may still be running. The timeout and every write take this
+ * object's lock, so once {@link #onTimeout} has answered with a 503 the
+ * worker's writes fail with an IOException and its status and header
+ * changes are dropped instead of landing on a recycled response.
+ */
+final class GuardedResponse extends HttpServletResponseWrapper implements AsyncListener {
+    private static final Logger log = Log.get(GuardedResponse.class);
+
+    private final AsyncContext async;
+    private final String uri;
+    private boolean timedOut;
+    private boolean completed;
+    private PrintWriter writer;
+    private ServletOutputStream stream;
+
+    GuardedResponse(AsyncContext async, HttpServletResponse response, String uri) {
+        super(response);
+        this.async = async;
+        this.uri = uri;
+    }
+
+    synchronized boolean isTimedOut() {
+        return timedOut;
+    }
+
+    /** Finishes the body and completes the AsyncContext, unless the timeout already did. */
+    synchronized void complete() {
+        if (timedOut || completed) {
+            return;
+        }
+        completed = true;
+        try {
+            // The container only finishes its own response; a compressing wrapper must end its stream first
+            GzipResponseWrapper.finish(getResponse());
+        } catch (IOException e) {
+            log.debug("Could not finish response body", "uri", uri, "error", e.getMessage());
+        }
+        async.complete();
+    }
+
+    @Override
+    public synchronized void onTimeout(AsyncEvent event) {
+        if (completed) {
+            return;
+        }
+        timedOut = true;
+        log.warn("Request timed out before its handler finished", "uri", uri);
+        HttpServletResponse response = (HttpServletResponse) getResponse();
+        if (!response.isCommitted()) {
+            response.reset();
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            response.setHeader("Retry-After", "1");
+        }
+        async.complete();
+    }
+
+    @Override
+    public void onComplete(AsyncEvent event) {
+    }
+
+    @Override
+    public void onError(AsyncEvent event) {
+    }
+
+    @Override
+    public void onStartAsync(AsyncEvent event) {
+    }
+
+    @Override
+    public synchronized PrintWriter getWriter() throws IOException {
+        if (writer == null) {
+            Writer target = super.getWriter();
+            writer = new PrintWriter(new Writer() {
+                @Override
+                public void write(char[] cbuf, int off, int len) throws IOException {
+                    synchronized (GuardedResponse.this) {
+                        checkLive();
+                        target.write(cbuf, off, len);
+                    }
+                }
+
+                @Override
+                public void flush() throws IOException {
+                    synchronized (GuardedResponse.this) {
+                        checkLive();
+                        target.flush();
+                    }
+                }
+
+                @Override
+                public void close() throws IOException {
+                    synchronized (GuardedResponse.this) {
+                        checkLive();
+                        target.close();
+                    }
+                }
+            });
+        }
+        return writer;
+    }
+
+    @Override
+    public synchronized ServletOutputStream getOutputStream() throws IOException {
+        if (stream == null) {
+            ServletOutputStream target = super.getOutputStream();
+            stream = new ServletOutputStream() {
+                @Override
+                public void write(int b) throws IOException {
+                    synchronized (GuardedResponse.this) {
+                        checkLive();
+                        target.write(b);
+                    }
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    synchronized (GuardedResponse.this) {
+                        checkLive();
+                        target.write(b, off, len);
+                    }
+                }
+
+                @Override
+                public void flush() throws IOException {
+                    synchronized (GuardedResponse.this) {
+                        checkLive();
+                        target.flush();
+                    }
+                }
+
+                @Override
+                public void close() throws IOException {
+                    synchronized (GuardedResponse.this) {
+                        checkLive();
+                        target.close();
+                    }
+                }
+
+                @Override
+                public boolean isReady() {
+                    return target.isReady();
+                }
+
+                @Override
+                public void setWriteListener(WriteListener listener) {
+                    target.setWriteListener(listener);
+                }
+            };
+        }
+        return stream;
+    }
+
+    @Override
+    public synchronized void flushBuffer() throws IOException {
+        checkLive();
+        super.flushBuffer();
+    }
+
+    @Override
+    public synchronized void sendError(int sc, String msg) throws IOException {
+        checkLive();
+        super.sendError(sc, msg);
+    }
+
+    @Override
+    public synchronized void sendError(int sc) throws IOException {
+        checkLive();
+        super.sendError(sc);
+    }
+
+    @Override
+    public synchronized boolean isCommitted() {
+        return timedOut || super.isCommitted();
+    }
+
+    @Override
+    public synchronized void setStatus(int sc) {
+        if (!timedOut) {
+            super.setStatus(sc);
+        }
+    }
+
+    @Override
+    public synchronized void setHeader(String name, String value) {
+        if (!timedOut) {
+            super.setHeader(name, value);
+        }
+    }
+
+    @Override
+    public synchronized void addHeader(String name, String value) {
+        if (!timedOut) {
+            super.addHeader(name, value);
+        }
+    }
+
+    @Override
+    public synchronized void setContentType(String type) {
+        if (!timedOut) {
+            super.setContentType(type);
+        }
+    }
+
+    @Override
+    public synchronized void setCharacterEncoding(String charset) {
+        if (!timedOut) {
+            super.setCharacterEncoding(charset);
+        }
+    }
+
+    private void checkLive() throws IOException {
+        if (timedOut) {
+            throw new IOException("Request timed out; response already sent");
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package com.carrental.util;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.ServletResponseWrapper;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Response that gzips its body once it grows past carrental.gzip.minBytes
+ * (default 1024).
+ *
+ * The first minBytes are held back; if the body ends (or is flushed) before
+ * then it goes out as is, with any Content-Length the servlet set. Past the
+ * threshold a JSON or plain-text body without its own Content-Encoding is
+ * streamed through a deflater and the Content-Length is dropped. Only wrap
+ * responses for clients that accept gzip, and call {@link #finish} before
+ * the response completes: for async requests the container will not do it.
+ */
+public class GzipResponseWrapper extends HttpServletResponseWrapper {
+
+    public static final int MIN_BYTES = Integer.getInteger("carrental.gzip.minBytes", 1024);
+
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    // Where the body goes once the encoding is decided; null until then
+    private OutputStream target;
+    private GZIPOutputStream gzip;
+    private long contentLength = -1;
+    private ServletOutputStream stream;
+    private PrintWriter writer;
+    private boolean finished;
+
+    public GzipResponseWrapper(HttpServletResponse response) {
+        super(response);
+    }
+
+    /** Whether an Accept-Encoding header allows gzip. */
+    public static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            if (!parts[0].trim().equalsIgnoreCase("gzip")) {
+                continue;
+            }
+            for (int i = 1; i < parts.length; i++) {
+                String param = parts[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        return Double.parseDouble(param.substring(2)) > 0;
+                    } catch (NumberFormatException e) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /** Finishes the body of a response that is, or wraps, a GzipResponseWrapper. */
+    public static void finish(ServletResponse response) throws IOException {
+        while (response instanceof ServletResponseWrapper) {
+            if (response instanceof GzipResponseWrapper) {
+                ((GzipResponseWrapper) response).finishResponse();
+                return;
+            }
+            response = ((ServletResponseWrapper) response).getResponse();
+        }
+    }
+
+    /** Writes out whatever is held back and ends the gzip stream. Idempotent. */
+    public void finishResponse() throws IOException {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        if (writer != null) {
+            writer.flush();
+        }
+        if (target == null) {
+            decide(false);
+        } else if (gzip != null) {
+            gzip.finish();
+        }
+    }
+
+    public boolean isCompressing() {
+        return gzip != null;
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+        if (writer != null) {
+            throw new IllegalStateException("getWriter() has already been called");
+        }
+        if (stream == null) {
+            stream = new Stream();
+        }
+        return stream;
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+        if (writer == null) {
+            if (stream != null) {
+                throw new IllegalStateException("getOutputStream() has already been called");
+            }
+            stream = new Stream();
+            writer = new PrintWriter(new OutputStreamWriter(stream, getCharacterEncoding()));
+        }
+        return writer;
+    }
+
+    @Override
+    public void setContentLength(int len) {
+        setContentLengthLong(len);
+    }
+
+    @Override
+    public void setContentLengthLong(long len) {
+        if (target == null) {
+            contentLength = len;
+        } else if (gzip == null) {
+            super.setContentLengthLong(len);
+        }
+    }
+
+    @Override
+    public void setHeader(String name, String value) {
+        if ("Content-Length".equalsIgnoreCase(name)) {
+            setContentLengthLong(value != null ? Long.parseLong(value.trim()) : -1);
+        } else {
+            super.setHeader(name, value);
+        }
+    }
+
+    @Override
+    public void addHeader(String name, String value) {
+        if ("Content-Length".equalsIgnoreCase(name)) {
+            setHeader(name, value);
+        } else {
+            super.addHeader(name, value);
+        }
+    }
+
+    @Override
+    public void setIntHeader(String name, int value) {
+        if ("Content-Length".equalsIgnoreCase(name)) {
+            setContentLengthLong(value);
+        } else {
+            super.setIntHeader(name, value);
+        }
+    }
+
+    @Override
+    public void addIntHeader(String name, int value) {
+        setIntHeader(name, value);
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+        if (writer != null) {
+            writer.flush();
+        }
+        if (target == null) {
+            decide(false);
+        }
+        target.flush();
+    }
+
+    @Override
+    public void resetBuffer() {
+        super.resetBuffer();
+        pending.reset();
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        pending.reset();
+        contentLength = -1;
+    }
+
+    @Override
+    public void sendError(int sc, String msg) throws IOException {
+        pending.reset();
+        finished = true;
+        super.sendError(sc, msg);
+    }
+
+    @Override
+    public void sendError(int sc) throws IOException {
+        pending.reset();
+        finished = true;
+        super.sendError(sc);
+    }
+
+    /** Picks the encoding for the whole body and releases what was held back. */
+    private void decide(boolean overThreshold) throws IOException {
+        OutputStream out = super.getOutputStream();
+        if (overThreshold && compressible()) {
+            setHeader("Content-Encoding", "gzip");
+            addHeader("Vary", "Accept-Encoding");
+            gzip = new GZIPOutputStream(out, 8192);
+            target = gzip;
+        } else {
+            if (contentLength >= 0) {
+                super.setContentLengthLong(contentLength);
+            }
+            target = out;
+        }
+        pending.writeTo(target);
+        pending.reset();
+    }
+
+    private static ServletOutputStream streamOf(ServletResponse response) {
+        try {
+            return response.getOutputStream();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private boolean compressible() {
+        if (containsHeader("Content-Encoding")) {
+            return false;
+        }
+        String type = getContentType();
+        return type != null && (type.startsWith("application/json") || type.startsWith("text/plain"));
+    }
+
+    private final class Stream extends ServletOutputStream {
+        @Override
+        public void write(int b) throws IOException {
+            if (target != null) {
+                target.write(b);
+                return;
+            }
+            pending.write(b);
+            if (pending.size() > MIN_BYTES) {
+                decide(true);
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (target != null) {
+                target.write(b, off, len);
+                return;
+            }
+            pending.write(b, off, len);
+            if (pending.size() > MIN_BYTES) {
+                decide(true);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (target == null) {
+                decide(false);
+            }
+            target.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            finishResponse();
+        }
+
+        @Override
+        public boolean isReady() {
+            return target == null || gzip != null || streamOf(getResponse()).isReady();
+        }
+
+        // Non-blocking writers (event streams) are passed through uncompressed
+        @Override
+        public void setWriteListener(WriteListener listener) {
+            if (gzip != null) {
+                throw new IllegalStateException("Non-blocking writes are not supported once compressing");
+            }
+            try {
+                if (target == null) {
+                    decide(false);
+                }
+                streamOf(getResponse()).setWriteListener(listener);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.carrental.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+/**
+ * Salted PBKDF2-HMAC-SHA256 password hashing on a small dedicated pool.
+ *
+ * Hashes are stored as {@code pbkdf2-sha256$<iterations>$<salt>$<hash>}
+ * (Base64). Hashing is deliberately slow, so it runs on its own bounded
+ * thread pool: a burst of logins or registrations can use at most those
+ * threads' worth of CPU, and once the queue is full further calls fail fast
+ * with {@link RejectedExecutionException} instead of piling up.
+ *
+ * Settings: carrental.auth.pbkdf2Iterations (default 310000),
+ * carrental.auth.hashThreads (default half the CPUs, at least 1) and
+ * carrental.auth.hashQueueSize (default 64).
+ */
+public final class PasswordHasher {
+
+    private static final String PREFIX = "pbkdf2-sha256";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+    private static final int ITERATIONS = Integer.getInteger("carrental.auth.pbkdf2Iterations", 310_000);
+
+    private static final SecureRandom random = new SecureRandom();
+    private static final ThreadPoolExecutor pool = createPool();
+    // Verified against when the account does not exist, so unknown emails take as long as wrong passwords
+    private static final String DUMMY_HASH = encode(ITERATIONS, new byte[SALT_BYTES],
+            pbkdf2("dummy".toCharArray(), new byte[SALT_BYTES], ITERATIONS));
+
+    private PasswordHasher() {
+    }
+
+    /** Returns a new salted hash of the password. */
+    public static String hash(String password) {
+        return await(() -> {
+            byte[] salt = new byte[SALT_BYTES];
+            random.nextBytes(salt);
+            return encode(ITERATIONS, salt, pbkdf2(password.toCharArray(), salt, ITERATIONS));
+        });
+    }
+
+    /**
+     * Checks a password against a stored value. Rows from before hashing hold
+     * the plain password; those still verify (see {@link #needsRehash}).
+     * A null stored value runs a dummy check and returns false.
+     */
+    public static boolean verify(String password, String stored) {
+        if (stored != null && !isHashed(stored)) {
+            return MessageDigest.isEqual(password.getBytes(StandardCharsets.UTF_8),
+                    stored.getBytes(StandardCharsets.UTF_8));
+        }
+        String target = stored != null ? stored : DUMMY_HASH;
+        boolean matches = await(() -> {
+            String[] parts = target.split("\\$");
+            if (parts.length != 4) {
+                return false;
+            }
+            int iterations = Integer.parseInt(parts[1]);
+            byte[] salt = Base64.getDecoder().decode(parts[2]);
+            byte[] expected = Base64.getDecoder().decode(parts[3]);
+            return MessageDigest.isEqual(expected, pbkdf2(password.toCharArray(), salt, iterations));
+        });
+        return stored != null && matches;
+    }
+
+    /** Whether a stored value is plain text or hashed with fewer iterations than configured. */
+    public static boolean needsRehash(String stored) {
+        if (!isHashed(stored)) {
+            return true;
+        }
+        try {
+            return Integer.parseInt(stored.split("\\$")[1]) < ITERATIONS;
+        } catch (RuntimeException e) {
+            return true;
+        }
+    }
+
+    public static boolean isHashed(String stored) {
+        return stored != null && stored.startsWith(PREFIX + "$");
+    }
+
+    /** Hash jobs queued or running. */
+    public static int getPending() {
+        return pool.getQueue().size() + pool.getActiveCount();
+    }
+
+    /** Stops accepting work and waits briefly for running hashes. */
+    public static void shutdown() {
+        pool.shutdown();
+        try {
+            if (!pool.awaitTermination(5, TimeUnit.SECONDS)) {
+                pool.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static <T> T await(Callable<T> job) {
+        Future<T> future = pool.submit(job);
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while hashing", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Password hashing failed", e.getCause());
+        }
+    }
+
+    private static byte[] pbkdf2(char[] password, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(password, salt, iterations, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("PBKDF2WithHmacSHA256 not available", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    private static String encode(int iterations, byte[] salt, byte[] hash) {
+        Base64.Encoder b64 = Base64.getEncoder().withoutPadding();
+        return PREFIX + "$" + iterations + "$" + b64.encodeToString(salt) + "$" + b64.encodeToString(hash);
+    }
+
+    private static ThreadPoolExecutor createPool() {
+        int threads = Integer.getInteger("carrental.auth.hashThreads",
+                Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+        int queueSize = Integer.getInteger("carrental.auth.hashQueueSize", 64);
+        AtomicInteger count = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueSize), r -> {
+                    Thread t = new Thread(r, "carrental-hash-" + count.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
@@ -0,0 +1,111 @@
+package com.carrental.util;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-key token buckets, checked without locks.
+ *
+ * A bucket holds up to capacity tokens and gains one every interval. It is
+ * kept as a single long: the time at which it will be full again (the
+ * "theoretical arrival time" of the generic cell rate algorithm). Taking a
+ * token is a read and one compareAndSet that pushes that time an interval
+ * further. A request is allowed while the time is at most capacity - 1
+ * intervals ahead of now.
+ *
+ * A bucket whose full time has passed is the same as no bucket, so sweeps
+ * may drop it without losing anything. Every 4096 checks, and when a new key
+ * finds maxKeys keys tracked, one thread sweeps. Sweeps run at most once a
+ * second. While the map is full, new keys share one overflow bucket, so
+ * memory stays bounded however many distinct keys arrive.
+ */
+public final class RateLimiter {
+    private static final int SWEEP_MASK = 4096 - 1;
+    private static final long SWEEP_INTERVAL_NANOS = 1_000_000_000L;
+
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final int maxKeys;
+    private final ConcurrentHashMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final AtomicLong overflow = new AtomicLong(System.nanoTime());
+    private final AtomicLong checks = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong nextSweep = new AtomicLong(System.nanoTime());
+
+    /**
+     * @param capacity  the burst: how many requests a key may make at once
+     * @param perMinute the sustained rate a key is refilled at
+     * @param maxKeys   how many keys are tracked before new ones share a bucket
+     */
+    public RateLimiter(int capacity, double perMinute, int maxKeys) {
+        if (capacity < 1 || perMinute <= 0 || maxKeys < 1) {
+            throw new IllegalArgumentException("capacity, perMinute and maxKeys must be positive");
+        }
+        this.intervalNanos = Math.max(1, (long) (60_000_000_000L / perMinute));
+        this.burstNanos = intervalNanos * (capacity - 1);
+        this.maxKeys = maxKeys;
+    }
+
+    /** Takes a token for the key; returns 0 if there was one, else the nanoseconds until there is. */
+    public long tryAcquire(String key) {
+        long now = System.nanoTime();
+        if ((checks.incrementAndGet() & SWEEP_MASK) == 0) {
+            sweep(now);
+        }
+        AtomicLong bucket = buckets.get(key);
+        if (bucket == null) {
+            bucket = newBucket(key, now);
+        }
+        while (true) {
+            long full = bucket.get();
+            long start = full - now < 0 ? now : full;
+            long wait = start - burstNanos - now;
+            if (wait > 0) {
+                rejected.incrementAndGet();
+                return wait;
+            }
+            if (bucket.compareAndSet(full, start + intervalNanos)) {
+                return 0;
+            }
+        }
+    }
+
+    /** Keys currently tracked. */
+    public int size() {
+        return buckets.size();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    private AtomicLong newBucket(String key, long now) {
+        if (buckets.size() >= maxKeys) {
+            sweep(now);
+            if (buckets.size() >= maxKeys) {
+                return overflow;
+            }
+        }
+        AtomicLong bucket = new AtomicLong(now);
+        AtomicLong raced = buckets.putIfAbsent(key, bucket);
+        return raced != null ? raced : bucket;
+    }
+
+    // Drops buckets that have refilled. A request racing with the removal may
+    // take its token from the dropped bucket, which lets at most one extra through
+    private void sweep(long now) {
+        long due = nextSweep.get();
+        if (now - due < 0 || !nextSweep.compareAndSet(due, now + SWEEP_INTERVAL_NANOS)) {
+            return;
+        }
+        Iterator<Map.Entry<String, AtomicLong>> it = buckets.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, AtomicLong> e = it.next();
+            if (e.getValue().get() - now <= 0) {
+                buckets.remove(e.getKey(), e.getValue());
+            }
+        }
+    }
+}
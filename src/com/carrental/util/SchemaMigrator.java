@@ -0,0 +1,285 @@
+package com.carrental.util;
+
+import com.carrental.util.log.Log;
+import com.carrental.util.log.Logger;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Ordered, versioned schema migrations recorded in a schema_version table.
+ *
+ * On startup only the migrations newer than the highest recorded version run,
+ * so a database that is already current costs a metadata lookup and a single
+ * SELECT, and no DDL. New schema changes are appended to {@link #MIGRATIONS}
+ * with the next version number; released migrations must never be edited.
+ *
+ * H2 commits every DDL statement on its own, so a migration that fails
+ * partway is not rolled back: the changes before the failure stay and the
+ * version is not recorded. Each step must therefore be idempotent (IF NOT
+ * EXISTS, updates that are no-ops the second time) so it can simply run
+ * again on the next startup.
+ */
+public final class SchemaMigrator {
+    private static final Logger log = Log.get(SchemaMigrator.class);
+
+    /** One schema change. */
+    interface Step {
+        void apply(Connection conn) throws SQLException;
+    }
+
+    static final class Migration {
+        final int version;
+        final String description;
+        final Step step;
+
+        Migration(int version, String description, Step step) {
+            this.version = version;
+            this.description = description;
+            this.step = step;
+        }
+    }
+
+    private static final List<Migration> MIGRATIONS;
+
+    static {
+        List<Migration> m = new ArrayList<>();
+
+        // Everything the app used to re-run on every boot. Statements are idempotent
+        // because databases created before versioning already have some of it.
+        m.add(new Migration(1, "baseline schema", conn -> {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("CREATE TABLE IF NOT EXISTS users ("
+                        + "id INT AUTO_INCREMENT PRIMARY KEY, "
+                        + "name VARCHAR(255), "
+                        + "email VARCHAR(255) UNIQUE, "
+                        + "password VARCHAR(255), "
+                        + "role VARCHAR(50))");
+                stmt.execute("CREATE TABLE IF NOT EXISTS cars ("
+                        + "id INT AUTO_INCREMENT PRIMARY KEY, "
+                        + "name VARCHAR(255), "
+                        + "price DOUBLE, "
+                        + "image TEXT, "
+                        + "features TEXT)");
+                if (columnExists(conn, "BOOKINGS", "CUSTOMER_ID")) {
+                    stmt.execute("ALTER TABLE bookings ALTER COLUMN customer_id RENAME TO user_id");
+                }
+                if (columnExists(conn, "BOOKINGS", "VEHICLE_ID")) {
+                    stmt.execute("ALTER TABLE bookings ALTER COLUMN vehicle_id RENAME TO car_id");
+                }
+                stmt.execute("CREATE TABLE IF NOT EXISTS bookings ("
+                        + "id INT AUTO_INCREMENT PRIMARY KEY, "
+                        + "user_id INT, "
+                        + "car_id INT, "
+                        + "start_date DATE, "
+                        + "end_date DATE, "
+                        + "total_price DOUBLE, "
+                        + "status VARCHAR(50), "
+                        + "payment_status VARCHAR(50) DEFAULT 'UNPAID', "
+                        + "FOREIGN KEY (user_id) REFERENCES users(id), "
+                        + "FOREIGN KEY (car_id) REFERENCES cars(id))");
+                stmt.execute("ALTER TABLE cars ADD COLUMN IF NOT EXISTS registration_number VARCHAR(100)");
+                stmt.execute("ALTER TABLE cars ADD COLUMN IF NOT EXISTS type VARCHAR(50) DEFAULT 'CAR'");
+                stmt.execute("ALTER TABLE bookings ADD COLUMN IF NOT EXISTS pickup_datetime TIMESTAMP");
+                stmt.execute("ALTER TABLE bookings ADD COLUMN IF NOT EXISTS dropoff_datetime TIMESTAMP");
+                stmt.execute("ALTER TABLE bookings ADD COLUMN IF NOT EXISTS driving_license_path VARCHAR(1024)");
+                stmt.execute("ALTER TABLE bookings ADD COLUMN IF NOT EXISTS created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP");
+                stmt.execute("ALTER TABLE bookings ADD COLUMN IF NOT EXISTS payment_status VARCHAR(50) DEFAULT 'UNPAID'");
+            }
+        }));
+
+        // Secondary indexes for the hot booking queries (the composite ones also
+        // serve plain user_id / car_id / status / created_at lookups) and a
+        // normalized email column for case-insensitive login lookups.
+        m.add(new Migration(2, "booking listing indexes and normalized user email", conn -> {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("UPDATE bookings SET created_at = CURRENT_TIMESTAMP WHERE created_at IS NULL");
+                stmt.execute("CREATE INDEX IF NOT EXISTS idx_bookings_created ON bookings(created_at, id)");
+                stmt.execute("CREATE INDEX IF NOT EXISTS idx_bookings_user_created ON bookings(user_id, created_at, id)");
+                stmt.execute("CREATE INDEX IF NOT EXISTS idx_bookings_status_created ON bookings(status, created_at, id)");
+                stmt.execute("CREATE INDEX IF NOT EXISTS idx_bookings_payment_created ON bookings(payment_status, created_at, id)");
+                stmt.execute("CREATE INDEX IF NOT EXISTS idx_bookings_car_created ON bookings(car_id, created_at, id)");
+                stmt.execute("ALTER TABLE users ADD COLUMN IF NOT EXISTS email_normalized VARCHAR(255) "
+                        + "GENERATED ALWAYS AS LOWER(TRIM(email))");
+                stmt.execute("CREATE INDEX IF NOT EXISTS idx_users_email_normalized ON users(email_normalized)");
+            }
+        }));
+
+        // Login looks users up by normalized email alone, so it must identify one row.
+        // The old UNIQUE on email was case-sensitive, so accounts may differ only in
+        // case or spacing. The oldest of each such group keeps the address; the others
+        // get a "duplicate-<id>:" prefix, which disables their login, and are logged
+        // for an admin to merge by hand.
+        m.add(new Migration(3, "unique normalized user email", conn -> {
+            try (Statement stmt = conn.createStatement()) {
+                disableDuplicateEmails(conn);
+                stmt.execute("DROP INDEX IF EXISTS idx_users_email_normalized");
+                stmt.execute("CREATE UNIQUE INDEX IF NOT EXISTS uq_users_email_normalized ON users(email_normalized)");
+            }
+        }));
+
+        // Summary tables maintained by BookingStats. They start empty; the first
+        // startup after this migration fills them from the existing bookings.
+        m.add(new Migration(4, "booking stats summary tables", conn -> {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("CREATE TABLE IF NOT EXISTS booking_stats ("
+                        + "grain CHAR(1) NOT NULL, "
+                        + "bucket DATE NOT NULL, "
+                        + "metric VARCHAR(80) NOT NULL, "
+                        + "val DECIMAL(19, 2) NOT NULL, "
+                        + "PRIMARY KEY (grain, bucket, metric))");
+                stmt.execute("CREATE TABLE IF NOT EXISTS car_utilization ("
+                        + "grain CHAR(1) NOT NULL, "
+                        + "bucket DATE NOT NULL, "
+                        + "car_id INT NOT NULL, "
+                        + "days INT NOT NULL, "
+                        + "PRIMARY KEY (grain, bucket, car_id))");
+            }
+        }));
+
+        // Indexes for the filtered, sorted car listing (CarDAO.findCars): every
+        // sort key with and without a leading type, descending price included
+        // since H2 does not scan indexes backwards. Old rows may predate the
+        // type column's default.
+        m.add(new Migration(5, "car listing indexes", conn -> {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("UPDATE cars SET type = 'CAR' WHERE type IS NULL");
+                stmt.execute("CREATE INDEX IF NOT EXISTS idx_cars_type ON cars(type, id)");
+                stmt.execute("CREATE INDEX IF NOT EXISTS idx_cars_name ON cars(name, id)");
+                stmt.execute("CREATE INDEX IF NOT EXISTS idx_cars_type_name ON cars(type, name, id)");
+                stmt.execute("CREATE INDEX IF NOT EXISTS idx_cars_price ON cars(price, id)");
+                stmt.execute("CREATE INDEX IF NOT EXISTS idx_cars_type_price ON cars(type, price, id)");
+                stmt.execute("CREATE INDEX IF NOT EXISTS idx_cars_price_desc ON cars(price DESC, id DESC)");
+                stmt.execute("CREATE INDEX IF NOT EXISTS idx_cars_type_price_desc ON cars(type, price DESC, id DESC)");
+                stmt.execute("CREATE INDEX IF NOT EXISTS idx_cars_registration ON cars(registration_number)");
+            }
+        }));
+
+        // Optimistic concurrency for BookingTransition: every status or
+        // payment change bumps the version. The conditional UPDATE compares
+        // the states as stored, so old NULLs get the values they were read as.
+        m.add(new Migration(6, "booking version column", conn -> {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("ALTER TABLE bookings ADD COLUMN IF NOT EXISTS version INT DEFAULT 0 NOT NULL");
+                stmt.execute("UPDATE bookings SET status = 'PENDING' WHERE status IS NULL");
+                stmt.execute("UPDATE bookings SET payment_status = 'UNPAID' WHERE payment_status IS NULL");
+            }
+        }));
+
+        // Finished responses by idempotency key, written only with
+        // -Dcarrental.idempotency.persist=true (see IdempotencyStore)
+        m.add(new Migration(7, "idempotency keys", conn -> {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("CREATE TABLE IF NOT EXISTS idempotency_keys ("
+                        + "idem_key VARCHAR(400) PRIMARY KEY, "
+                        + "status INT NOT NULL, "
+                        + "content_type VARCHAR(100), "
+                        + "body CLOB, "
+                        + "expires_at TIMESTAMP NOT NULL)");
+                stmt.execute("CREATE INDEX IF NOT EXISTS idx_idempotency_keys_expires ON idempotency_keys(expires_at)");
+            }
+        }));
+
+        MIGRATIONS = Collections.unmodifiableList(m);
+    }
+
+    private SchemaMigrator() {
+    }
+
+    /** Applies all pending migrations; returns how many ran. */
+    public static int migrate(Connection conn) throws SQLException {
+        if (!tableExists(conn, "SCHEMA_VERSION")) {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("CREATE TABLE IF NOT EXISTS schema_version ("
+                        + "version INT PRIMARY KEY, "
+                        + "description VARCHAR(255), "
+                        + "applied_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP)");
+            }
+        }
+        int current = currentVersion(conn);
+        int applied = 0;
+        boolean autoCommit = conn.getAutoCommit();
+        try {
+            for (Migration migration : MIGRATIONS) {
+                if (migration.version <= current) {
+                    continue;
+                }
+                log.info("Applying migration", "version", migration.version, "description", migration.description);
+                conn.setAutoCommit(false);
+                try {
+                    migration.step.apply(conn);
+                    try (PreparedStatement pstmt = conn.prepareStatement(
+                            "INSERT INTO schema_version (version, description) VALUES (?, ?)")) {
+                        pstmt.setInt(1, migration.version);
+                        pstmt.setString(2, migration.description);
+                        pstmt.executeUpdate();
+                    }
+                    conn.commit();
+                } catch (SQLException e) {
+                    // Only undoes changes since the step's last DDL; H2 committed the rest (see above)
+                    conn.rollback();
+                    throw new SQLException("Migration V" + migration.version + " failed: " + e.getMessage(), e);
+                }
+                applied++;
+            }
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+        return applied;
+    }
+
+    public static int currentVersion(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(version), 0) FROM schema_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    private static void disableDuplicateEmails(Connection conn) throws SQLException {
+        String sql = "SELECT id, email, email_normalized FROM users WHERE email_normalized IN ("
+                + "SELECT email_normalized FROM users WHERE email_normalized IS NOT NULL "
+                + "GROUP BY email_normalized HAVING COUNT(*) > 1) ORDER BY email_normalized, id";
+        try (Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery(sql);
+                PreparedStatement update = conn.prepareStatement("UPDATE users SET email = ? WHERE id = ?")) {
+            String group = null;
+            int keptId = 0;
+            while (rs.next()) {
+                int id = rs.getInt("id");
+                String email = rs.getString("email");
+                if (!rs.getString("email_normalized").equals(group)) {
+                    group = rs.getString("email_normalized");
+                    keptId = id;
+                    continue;
+                }
+                String disabled = "duplicate-" + id + ":" + email;
+                // The id prefix alone keeps it unique, so the address may be cut to fit the column
+                update.setString(1, disabled.length() > 255 ? disabled.substring(0, 255) : disabled);
+                update.setInt(2, id);
+                update.executeUpdate();
+                log.warn("Disabled user with a duplicate normalized email", "id", id, "email", email, "keptId", keptId);
+            }
+        }
+    }
+
+    static boolean tableExists(Connection conn, String table) throws SQLException {
+        DatabaseMetaData meta = conn.getMetaData();
+        try (ResultSet rs = meta.getTables(null, null, table, new String[] { "TABLE" })) {
+            return rs.next();
+        }
+    }
+
+    static boolean columnExists(Connection conn, String table, String column) throws SQLException {
+        DatabaseMetaData meta = conn.getMetaData();
+        try (ResultSet rs = meta.getColumns(null, null, table, column)) {
+            return rs.next();
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.carrental.util.csv;
+
+import java.io.IOException;
+
+/** Thrown when CSV input is malformed beyond recovery or a record exceeds the size cap. */
+public class CsvFormatException extends IOException {
+
+    public CsvFormatException(String message) {
+        super(message);
+    }
+}
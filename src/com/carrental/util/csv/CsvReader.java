@@ -0,0 +1,125 @@
+package com.carrental.util.csv;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming RFC 4180 reader: one record per call, straight from the Reader.
+ *
+ * Fields are separated by commas and may be quoted; quoted fields can hold
+ * commas, doubled quotes and line breaks. Both LF and CRLF end a record and
+ * blank lines are skipped. Only the current record is held in memory, and a
+ * record longer than the size cap is rejected.
+ */
+public final class CsvReader {
+
+    /** Default cap on one record's length, in characters. */
+    public static final int DEFAULT_MAX_RECORD_CHARS = 64 * 1024;
+
+    private final Reader reader;
+    private final int maxRecordChars;
+    private final char[] buf = new char[8192];
+    private final StringBuilder field = new StringBuilder(64);
+    private int pos;
+    private int limit;
+    private int line = 1;
+    private int recordLine;
+
+    public CsvReader(Reader reader) {
+        this(reader, DEFAULT_MAX_RECORD_CHARS);
+    }
+
+    public CsvReader(Reader reader, int maxRecordChars) {
+        this.reader = reader;
+        this.maxRecordChars = maxRecordChars;
+    }
+
+    /** Line on which the record last returned by {@link #readRecord()} started (1-based). */
+    public int getRecordLine() {
+        return recordLine;
+    }
+
+    /** Returns the next record's fields, or null at end of input. */
+    public List<String> readRecord() throws IOException {
+        int c = read();
+        while (c == '\r' || c == '\n') {
+            c = skipLineBreak(c);
+        }
+        if (c == -1) {
+            return null;
+        }
+        recordLine = line;
+        List<String> fields = new ArrayList<>();
+        int length = 0;
+        field.setLength(0);
+        boolean quoted = false;
+        while (true) {
+            if (quoted) {
+                if (c == -1) {
+                    throw new CsvFormatException("Unterminated quoted field in record starting on line " + recordLine);
+                }
+                if (c == '"') {
+                    c = read();
+                    if (c != '"') {
+                        quoted = false;
+                        continue;
+                    }
+                } else if (c == '\n') {
+                    line++;
+                }
+                field.append((char) c);
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\r' || c == '\n' || c == -1) {
+                fields.add(field.toString());
+                if (c != -1) {
+                    skipLineBreak(c);
+                    unread();
+                }
+                return fields;
+            } else if (c == '"' && field.length() == 0) {
+                quoted = true;
+            } else {
+                field.append((char) c);
+            }
+            if (++length > maxRecordChars) {
+                throw new CsvFormatException("Record starting on line " + recordLine + " exceeds "
+                        + maxRecordChars + " characters");
+            }
+            c = read();
+        }
+    }
+
+    // Consumes a line break starting with c and returns the character after it
+    private int skipLineBreak(int c) throws IOException {
+        line++;
+        int next = read();
+        if (c == '\r' && next == '\n') {
+            next = read();
+        }
+        return next;
+    }
+
+    private int read() throws IOException {
+        if (pos == limit) {
+            limit = reader.read(buf, 0, buf.length);
+            pos = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        return buf[pos++];
+    }
+
+    // Steps back over the last character read; it is always still in the buffer
+    // because read() only refills when the buffer is exhausted
+    private void unread() {
+        if (limit > 0 && pos > 0) {
+            pos--;
+        }
+    }
+}
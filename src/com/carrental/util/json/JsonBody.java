@@ -0,0 +1,264 @@
+package com.carrental.util.json;
+
+import jakarta.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Single-pass reader for the flat JSON objects the API accepts as request bodies.
+ *
+ * The body is tokenized once, straight from the request Reader, and each
+ * top-level field is handed to a {@link FieldHandler} (or collected into a map)
+ * as its raw text: strings are unescaped, numbers and booleans keep their
+ * literal spelling, and null values are reported as null. Nested objects and
+ * arrays are skipped. Bodies longer than the size cap are rejected.
+ */
+public final class JsonBody {
+
+    /** Default cap on request body length, in characters. */
+    public static final int DEFAULT_MAX_CHARS = 64 * 1024;
+
+    /** Receives each top-level field as it is parsed. */
+    public interface FieldHandler {
+        void field(String name, String value) throws JsonParseException;
+    }
+
+    private final Map<String, String> fields;
+
+    private JsonBody(Map<String, String> fields) {
+        this.fields = fields;
+    }
+
+    public static JsonBody read(HttpServletRequest req) throws IOException {
+        return parse(req.getReader(), DEFAULT_MAX_CHARS);
+    }
+
+    public static JsonBody parse(Reader reader, int maxChars) throws IOException {
+        Map<String, String> fields = new HashMap<>();
+        parse(reader, maxChars, (name, value) -> {
+            if (value != null) {
+                fields.put(name, value);
+            }
+        });
+        return new JsonBody(fields);
+    }
+
+    public static void parse(Reader reader, int maxChars, FieldHandler handler) throws IOException {
+        new Tokenizer(reader, maxChars).readObject(handler);
+    }
+
+    /** Returns the field's text, or null when it is absent or JSON null. */
+    public String getString(String name) {
+        return fields.get(name);
+    }
+
+    public boolean has(String name) {
+        return fields.containsKey(name);
+    }
+
+    public Map<String, String> asMap() {
+        return fields;
+    }
+
+    private static final class Tokenizer {
+        private final Reader reader;
+        private final int maxChars;
+        private final char[] buf = new char[2048];
+        private final StringBuilder text = new StringBuilder(64);
+        private int pos;
+        private int limit;
+        private int consumed;
+
+        Tokenizer(Reader reader, int maxChars) {
+            this.reader = reader;
+            this.maxChars = maxChars;
+        }
+
+        void readObject(FieldHandler handler) throws IOException {
+            int c = nextNonWhitespace();
+            if (c == -1) {
+                return; // empty body: no fields
+            }
+            if (c != '{') {
+                throw new JsonParseException("Request body must be a JSON object");
+            }
+            c = nextNonWhitespace();
+            if (c == '}') {
+                expectEnd();
+                return;
+            }
+            while (true) {
+                if (c != '"') {
+                    throw new JsonParseException("Expected field name");
+                }
+                String name = readString();
+                if (nextNonWhitespace() != ':') {
+                    throw new JsonParseException("Expected ':' after \"" + name + "\"");
+                }
+                handler.field(name, readValue(nextNonWhitespace()));
+                c = nextNonWhitespace();
+                if (c == '}') {
+                    expectEnd();
+                    return;
+                }
+                if (c != ',') {
+                    throw new JsonParseException("Expected ',' or '}'");
+                }
+                c = nextNonWhitespace();
+            }
+        }
+
+        private String readValue(int c) throws IOException {
+            switch (c) {
+                case '"':
+                    return readString();
+                case '{':
+                case '[':
+                    skipContainer(c);
+                    return null;
+                case -1:
+                    throw new JsonParseException("Unexpected end of body");
+                default:
+                    String literal = readLiteral(c);
+                    return "null".equals(literal) ? null : literal;
+            }
+        }
+
+        private String readString() throws IOException {
+            text.setLength(0);
+            while (true) {
+                // Copy unescaped runs straight out of the buffer
+                int start = pos;
+                while (pos < limit) {
+                    char ch = buf[pos];
+                    if (ch == '"' || ch == '\\') {
+                        break;
+                    }
+                    pos++;
+                }
+                text.append(buf, start, pos - start);
+                if (pos == limit) {
+                    if (!fill()) {
+                        throw new JsonParseException("Unterminated string");
+                    }
+                    continue;
+                }
+                char ch = buf[pos++];
+                if (ch == '"') {
+                    return text.toString();
+                }
+                int esc = next();
+                switch (esc) {
+                    case '"':
+                    case '\\':
+                    case '/':
+                        text.append((char) esc);
+                        break;
+                    case 'b':
+                        text.append('\b');
+                        break;
+                    case 'f':
+                        text.append('\f');
+                        break;
+                    case 'n':
+                        text.append('\n');
+                        break;
+                    case 'r':
+                        text.append('\r');
+                        break;
+                    case 't':
+                        text.append('\t');
+                        break;
+                    case 'u':
+                        int code = 0;
+                        for (int i = 0; i < 4; i++) {
+                            int digit = Character.digit(next(), 16);
+                            if (digit < 0) {
+                                throw new JsonParseException("Invalid \\u escape");
+                            }
+                            code = (code << 4) | digit;
+                        }
+                        text.append((char) code);
+                        break;
+                    default:
+                        throw new JsonParseException("Invalid escape sequence");
+                }
+            }
+        }
+
+        private String readLiteral(int first) throws IOException {
+            text.setLength(0);
+            text.append((char) first);
+            while (true) {
+                if (pos == limit && !fill()) {
+                    break;
+                }
+                char ch = buf[pos];
+                if (Character.isLetterOrDigit(ch) || ch == '-' || ch == '+' || ch == '.') {
+                    text.append(ch);
+                    pos++;
+                } else {
+                    break;
+                }
+            }
+            char lead = text.charAt(0);
+            if (!(lead == '-' || (lead >= '0' && lead <= '9') || lead == 't' || lead == 'f' || lead == 'n')) {
+                throw new JsonParseException("Unexpected character '" + lead + "'");
+            }
+            return text.toString();
+        }
+
+        private void skipContainer(int open) throws IOException {
+            int depth = 1;
+            while (depth > 0) {
+                int c = next();
+                if (c == -1) {
+                    throw new JsonParseException("Unterminated " + (open == '{' ? "object" : "array"));
+                } else if (c == '"') {
+                    readString();
+                } else if (c == '{' || c == '[') {
+                    depth++;
+                } else if (c == '}' || c == ']') {
+                    depth--;
+                }
+            }
+        }
+
+        private void expectEnd() throws IOException {
+            if (nextNonWhitespace() != -1) {
+                throw new JsonParseException("Unexpected content after JSON object");
+            }
+        }
+
+        private int nextNonWhitespace() throws IOException {
+            int c;
+            do {
+                c = next();
+            } while (c == ' ' || c == '\n' || c == '\r' || c == '\t');
+            return c;
+        }
+
+        private int next() throws IOException {
+            if (pos == limit && !fill()) {
+                return -1;
+            }
+            return buf[pos++];
+        }
+
+        private boolean fill() throws IOException {
+            int n = reader.read(buf, 0, buf.length);
+            if (n <= 0) {
+                return false;
+            }
+            consumed += n;
+            if (consumed > maxChars) {
+                throw new JsonParseException("Request body exceeds " + maxChars + " characters");
+            }
+            pos = 0;
+            limit = n;
+            return true;
+        }
+    }
+}
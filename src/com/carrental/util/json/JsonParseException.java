@@ -0,0 +1,11 @@
+package com.carrental.util.json;
+
+import java.io.IOException;
+
+/** Thrown when a request body is not a well-formed flat JSON object or exceeds the size cap. */
+public class JsonParseException extends IOException {
+
+    public JsonParseException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,335 @@
+package com.carrental.util.json;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Minimal streaming JSON writer used by the servlets.
+ *
+ * Output goes straight to the wrapped Writer (normally the response writer), so
+ * large listings start flushing as soon as the container buffer fills instead of
+ * being assembled in memory first. Strings are escaped in place and numbers and
+ * dates are rendered into a reusable scratch buffer rather than through
+ * String.format. Not thread-safe; use one instance per response.
+ */
+public final class JsonWriter implements Flushable {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final long[] POW10 = { 1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L };
+
+    private final Writer out;
+    private final char[] scratch = new char[32];
+    // first[depth] is true until the first element of the current container is written
+    private boolean[] first = new boolean[16];
+    private int depth;
+    private boolean afterName;
+
+    public JsonWriter(Writer out) {
+        this.out = out;
+    }
+
+    public JsonWriter beginObject() throws IOException {
+        beforeValue();
+        out.write('{');
+        push();
+        return this;
+    }
+
+    public JsonWriter endObject() throws IOException {
+        pop();
+        out.write('}');
+        return this;
+    }
+
+    public JsonWriter beginArray() throws IOException {
+        beforeValue();
+        out.write('[');
+        push();
+        return this;
+    }
+
+    public JsonWriter endArray() throws IOException {
+        pop();
+        out.write(']');
+        return this;
+    }
+
+    public JsonWriter name(String name) throws IOException {
+        if (depth == 0 || afterName) {
+            throw new IllegalStateException("name() must be called inside an object, before a value");
+        }
+        separator();
+        writeString(name);
+        out.write(':');
+        afterName = true;
+        return this;
+    }
+
+    public JsonWriter value(String value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+        beforeValue();
+        writeString(value);
+        return this;
+    }
+
+    public JsonWriter value(long value) throws IOException {
+        beforeValue();
+        writeLong(value);
+        return this;
+    }
+
+    public JsonWriter value(boolean value) throws IOException {
+        beforeValue();
+        out.write(value ? "true" : "false");
+        return this;
+    }
+
+    public JsonWriter value(double value) throws IOException {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return nullValue();
+        }
+        beforeValue();
+        if (value == (long) value && Math.abs(value) < 1e15) {
+            writeLong((long) value);
+        } else {
+            out.write(Double.toString(value));
+        }
+        return this;
+    }
+
+    /** Writes value rounded half-up to exactly {@code scale} decimals (0-6), e.g. 45.0 -> 45.00. */
+    public JsonWriter value(double value, int scale) throws IOException {
+        if (Double.isNaN(value) || Double.isInfinite(value) || Math.abs(value) >= 1e12) {
+            return value(value);
+        }
+        beforeValue();
+        long factor = POW10[scale];
+        long scaled = Math.round(Math.abs(value) * factor);
+        if (value < 0 && scaled != 0) {
+            out.write('-');
+        }
+        writeLong(scaled / factor);
+        if (scale > 0) {
+            out.write('.');
+            long fraction = scaled % factor;
+            for (int i = scale - 1; i >= 0; i--) {
+                scratch[i] = (char) ('0' + fraction % 10);
+                fraction /= 10;
+            }
+            out.write(scratch, 0, scale);
+        }
+        return this;
+    }
+
+    /** ISO yyyy-MM-dd. */
+    public JsonWriter value(LocalDate date) throws IOException {
+        if (date == null) {
+            return nullValue();
+        }
+        beforeValue();
+        out.write('"');
+        int n = formatDate(date.getYear(), date.getMonthValue(), date.getDayOfMonth(), 0);
+        out.write(scratch, 0, n);
+        out.write('"');
+        return this;
+    }
+
+    /** ISO yyyy-MM-ddTHH:mm:ss. */
+    public JsonWriter value(LocalDateTime dateTime) throws IOException {
+        if (dateTime == null) {
+            return nullValue();
+        }
+        beforeValue();
+        out.write('"');
+        int n = formatDate(dateTime.getYear(), dateTime.getMonthValue(), dateTime.getDayOfMonth(), 0);
+        scratch[n++] = 'T';
+        n = twoDigits(dateTime.getHour(), n);
+        scratch[n++] = ':';
+        n = twoDigits(dateTime.getMinute(), n);
+        scratch[n++] = ':';
+        n = twoDigits(dateTime.getSecond(), n);
+        out.write(scratch, 0, n);
+        out.write('"');
+        return this;
+    }
+
+    public JsonWriter nullValue() throws IOException {
+        beforeValue();
+        out.write("null");
+        return this;
+    }
+
+    /** Writes pre-serialized JSON as the next value. The caller is responsible for its validity. */
+    public JsonWriter rawValue(String json) throws IOException {
+        beforeValue();
+        out.write(json);
+        return this;
+    }
+
+    // Field shorthands for the common flat-object case
+
+    public JsonWriter field(String name, String value) throws IOException {
+        return name(name).value(value);
+    }
+
+    public JsonWriter field(String name, long value) throws IOException {
+        return name(name).value(value);
+    }
+
+    public JsonWriter field(String name, boolean value) throws IOException {
+        return name(name).value(value);
+    }
+
+    public JsonWriter field(String name, double value) throws IOException {
+        return name(name).value(value);
+    }
+
+    public JsonWriter field(String name, double value, int scale) throws IOException {
+        return name(name).value(value, scale);
+    }
+
+    public JsonWriter field(String name, LocalDate value) throws IOException {
+        return name(name).value(value);
+    }
+
+    public JsonWriter field(String name, LocalDateTime value) throws IOException {
+        return name(name).value(value);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    /** Writes the {"success":..., "message":...} envelope used by every API error and ack. */
+    public static void writeResult(Writer out, boolean success, String message) throws IOException {
+        new JsonWriter(out).beginObject().field("success", success).field("message", message).endObject();
+    }
+
+    private void beforeValue() throws IOException {
+        if (afterName) {
+            afterName = false;
+            return;
+        }
+        if (depth > 0) {
+            separator();
+        }
+    }
+
+    private void separator() throws IOException {
+        if (first[depth - 1]) {
+            first[depth - 1] = false;
+        } else {
+            out.write(',');
+        }
+    }
+
+    private void push() {
+        if (depth == first.length) {
+            boolean[] grown = new boolean[depth * 2];
+            System.arraycopy(first, 0, grown, 0, depth);
+            first = grown;
+        }
+        first[depth++] = true;
+    }
+
+    private void pop() {
+        if (depth == 0 || afterName) {
+            throw new IllegalStateException("Unbalanced JSON container");
+        }
+        depth--;
+    }
+
+    private void writeString(String s) throws IOException {
+        out.write('"');
+        int runStart = 0;
+        int len = s.length();
+        for (int i = 0; i < len; i++) {
+            char c = s.charAt(i);
+            if (c >= 0x20 && c != '"' && c != '\\' && c != '\u2028' && c != '\u2029') {
+                continue;
+            }
+            if (i > runStart) {
+                out.write(s, runStart, i - runStart);
+            }
+            runStart = i + 1;
+            switch (c) {
+                case '"':
+                    out.write("\\\"");
+                    break;
+                case '\\':
+                    out.write("\\\\");
+                    break;
+                case '\n':
+                    out.write("\\n");
+                    break;
+                case '\r':
+                    out.write("\\r");
+                    break;
+                case '\t':
+                    out.write("\\t");
+                    break;
+                case '\b':
+                    out.write("\\b");
+                    break;
+                case '\f':
+                    out.write("\\f");
+                    break;
+                default:
+                    scratch[0] = '\\';
+                    scratch[1] = 'u';
+                    scratch[2] = HEX[(c >> 12) & 0xF];
+                    scratch[3] = HEX[(c >> 8) & 0xF];
+                    scratch[4] = HEX[(c >> 4) & 0xF];
+                    scratch[5] = HEX[c & 0xF];
+                    out.write(scratch, 0, 6);
+            }
+        }
+        if (runStart < len) {
+            out.write(s, runStart, len - runStart);
+        }
+        out.write('"');
+    }
+
+    private void writeLong(long v) throws IOException {
+        if (v == Long.MIN_VALUE) {
+            out.write(Long.toString(v));
+            return;
+        }
+        int pos = scratch.length;
+        boolean negative = v < 0;
+        if (negative) {
+            v = -v;
+        }
+        do {
+            scratch[--pos] = (char) ('0' + v % 10);
+            v /= 10;
+        } while (v != 0);
+        if (negative) {
+            scratch[--pos] = '-';
+        }
+        out.write(scratch, pos, scratch.length - pos);
+    }
+
+    private int formatDate(int year, int month, int day, int n) {
+        scratch[n++] = (char) ('0' + (year / 1000) % 10);
+        scratch[n++] = (char) ('0' + (year / 100) % 10);
+        scratch[n++] = (char) ('0' + (year / 10) % 10);
+        scratch[n++] = (char) ('0' + year % 10);
+        scratch[n++] = '-';
+        n = twoDigits(month, n);
+        scratch[n++] = '-';
+        return twoDigits(day, n);
+    }
+
+    private int twoDigits(int v, int n) {
+        scratch[n++] = (char) ('0' + v / 10);
+        scratch[n++] = (char) ('0' + v % 10);
+        return n;
+    }
+}
@@ -0,0 +1,227 @@
+package com.carrental.util.log;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous logging facade.
+ *
+ * Log calls put an event on a bounded lock-free ring and return; a single
+ * daemon thread formats events and writes them to stdout in batches. When the
+ * ring is full the event is dropped and counted rather than blocking the
+ * caller. Stack traces are rate limited per exception type and throw site:
+ * within the interval, repeats are logged as one line with a suppressed count.
+ *
+ * Configured with system properties: carrental.log.level (DEBUG, INFO, WARN,
+ * ERROR; default INFO), carrental.log.bufferSize (events; default 8192) and
+ * carrental.log.traceIntervalMs (default 60000).
+ */
+public final class Log {
+
+    private static final DateTimeFormatter TIMESTAMP =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
+    private static final int MAX_TRACKED_TRACES = 256;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+
+    private static final LogLevel level = parseLevel(System.getProperty("carrental.log.level", "INFO"));
+    private static final long traceIntervalMs = Long.getLong("carrental.log.traceIntervalMs", 60_000L);
+    private static final LogRing ring = new LogRing(Integer.getInteger("carrental.log.bufferSize", 8192));
+    private static final AtomicLong dropped = new AtomicLong();
+    private static final AtomicLong suppressedTraces = new AtomicLong();
+    private static final Thread writerThread;
+    private static volatile boolean running = true;
+
+    // Writer thread only: last time a trace was printed, per exception type and site
+    private static final Map<String, long[]> traceHistory = new LinkedHashMap<String, long[]>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, long[]> eldest) {
+            return size() > MAX_TRACKED_TRACES;
+        }
+    };
+
+    static {
+        writerThread = new Thread(Log::drainLoop, "carrental-log-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    private Log() {
+    }
+
+    public static Logger get(Class<?> type) {
+        return new Logger(type.getSimpleName());
+    }
+
+    public static LogLevel getLevel() {
+        return level;
+    }
+
+    /** Events discarded because the ring was full. */
+    public static long getDropped() {
+        return dropped.get();
+    }
+
+    /** Stack traces collapsed to one line by the rate limit. */
+    public static long getSuppressedTraces() {
+        return suppressedTraces.get();
+    }
+
+    /** Writes out everything already queued and stops the writer; later events are written directly. */
+    public static void shutdown() {
+        running = false;
+        LockSupport.unpark(writerThread);
+        try {
+            writerThread.join(2000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    static boolean isEnabled(LogLevel eventLevel) {
+        return eventLevel.compareTo(level) >= 0;
+    }
+
+    static void enqueue(LogEvent event) {
+        if (!running) {
+            // No writer any more (webapp stopping); a direct write is fine this late
+            synchronized (Log.class) {
+                System.out.print(format(event));
+                System.out.flush();
+            }
+            return;
+        }
+        if (!ring.offer(event)) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    private static void drainLoop() {
+        Writer out = new OutputStreamWriter(System.out, StandardCharsets.UTF_8);
+        long reportedDrops = 0;
+        while (true) {
+            boolean stopping = !running;
+            int written = 0;
+            LogEvent event;
+            try {
+                while ((event = ring.poll()) != null) {
+                    out.write(format(event));
+                    written++;
+                }
+                long drops = dropped.get();
+                if (drops != reportedDrops) {
+                    out.write(TIMESTAMP.format(Instant.now()) + " WARN  [carrental-log-writer] Log: Dropped "
+                            + (drops - reportedDrops) + " events, log buffer full\n");
+                    reportedDrops = drops;
+                    written++;
+                }
+                if (written > 0) {
+                    out.flush();
+                }
+            } catch (IOException | RuntimeException e) {
+                // Nowhere better to report it; keep draining so producers never stall
+            }
+            if (stopping) {
+                return;
+            }
+            if (written == 0) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+    }
+
+    private static String format(LogEvent event) {
+        StringBuilder line = new StringBuilder(128);
+        line.append(TIMESTAMP.format(Instant.ofEpochMilli(event.timestamp))).append(' ');
+        String levelName = event.level.name();
+        line.append(levelName);
+        for (int i = levelName.length(); i < 6; i++) {
+            line.append(' ');
+        }
+        line.append('[').append(event.thread).append("] ").append(event.logger).append(": ").append(event.message);
+        Object[] fields = event.fields;
+        if (fields != null) {
+            for (int i = 0; i + 1 < fields.length; i += 2) {
+                line.append(' ').append(fields[i]).append('=');
+                appendValue(line, fields[i + 1]);
+            }
+        }
+        if (event.error != null) {
+            line.append(" error=");
+            appendValue(line, event.error.toString());
+            appendTrace(line, event.error, event.timestamp);
+        }
+        return line.append('\n').toString();
+    }
+
+    private static void appendValue(StringBuilder line, Object value) {
+        String text = String.valueOf(value);
+        boolean quote = text.isEmpty();
+        for (int i = 0; i < text.length() && !quote; i++) {
+            char c = text.charAt(i);
+            quote = c <= ' ' || c == '"' || c == '=';
+        }
+        if (!quote) {
+            line.append(text);
+            return;
+        }
+        line.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\') {
+                line.append('\\').append(c);
+            } else if (c == '\n') {
+                line.append("\\n");
+            } else if (c == '\r') {
+                line.append("\\r");
+            } else {
+                line.append(c);
+            }
+        }
+        line.append('"');
+    }
+
+    private static void appendTrace(StringBuilder line, Throwable error, long now) {
+        StackTraceElement[] frames = error.getStackTrace();
+        String key = error.getClass().getName() + "@" + (frames.length > 0 ? frames[0] : "?");
+        long[] history = traceHistory.get(key); // {lastPrinted, suppressedSince}
+        if (history != null && now - history[0] < traceIntervalMs) {
+            history[1]++;
+            suppressedTraces.incrementAndGet();
+            line.append(" trace=suppressed");
+            return;
+        }
+        if (history == null) {
+            history = new long[2];
+            traceHistory.put(key, history);
+        }
+        if (history[1] > 0) {
+            line.append(" suppressedSinceLastTrace=").append(history[1]);
+        }
+        history[0] = now;
+        history[1] = 0;
+        StringWriter trace = new StringWriter();
+        error.printStackTrace(new PrintWriter(trace));
+        line.append('\n').append(trace.toString().replace("\r\n", "\n").trim());
+    }
+
+    private static LogLevel parseLevel(String name) {
+        try {
+            return LogLevel.valueOf(name.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return LogLevel.INFO;
+        }
+    }
+}
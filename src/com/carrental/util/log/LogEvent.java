@@ -0,0 +1,22 @@
+package com.carrental.util.log;
+
+/** One log call, captured on the caller's thread and formatted by the writer. */
+final class LogEvent {
+    final long timestamp;
+    final LogLevel level;
+    final String logger;
+    final String thread;
+    final String message;
+    final Object[] fields;
+    final Throwable error;
+
+    LogEvent(LogLevel level, String logger, String message, Object[] fields, Throwable error) {
+        this.timestamp = System.currentTimeMillis();
+        this.level = level;
+        this.logger = logger;
+        this.thread = Thread.currentThread().getName();
+        this.message = message;
+        this.fields = fields;
+        this.error = error;
+    }
+}
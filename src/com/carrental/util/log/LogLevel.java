@@ -0,0 +1,5 @@
+package com.carrental.util.log;
+
+public enum LogLevel {
+    DEBUG, INFO, WARN, ERROR
+}
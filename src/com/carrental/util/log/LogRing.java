@@ -0,0 +1,69 @@
+package com.carrental.util.log;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free multi-producer, single-consumer ring buffer.
+ *
+ * Each slot carries a sequence number that says whether it is free for the
+ * producer claiming position p (seq == p) or holds an event for the consumer
+ * (seq == p + 1). Producers claim positions with one CAS and never wait: when
+ * the ring is full, {@link #offer} fails and the caller drops the event.
+ */
+final class LogRing {
+    private final int mask;
+    private final AtomicLongArray sequences;
+    private final AtomicReferenceArray<LogEvent> slots;
+    private final AtomicLong tail = new AtomicLong();
+    // Only read and written by the single consumer thread
+    private long head;
+
+    LogRing(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        mask = size - 1;
+        sequences = new AtomicLongArray(size);
+        slots = new AtomicReferenceArray<>(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+
+    boolean offer(LogEvent event) {
+        long position = tail.get();
+        while (true) {
+            int index = (int) position & mask;
+            long diff = sequences.get(index) - position;
+            if (diff == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    slots.lazySet(index, event);
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (diff < 0) {
+                return false; // full
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    /** Next event, or null when the ring is empty. Consumer thread only. */
+    LogEvent poll() {
+        int index = (int) head & mask;
+        if (sequences.get(index) != head + 1) {
+            return null;
+        }
+        LogEvent event = slots.get(index);
+        slots.lazySet(index, null);
+        sequences.set(index, head + mask + 1);
+        head++;
+        return event;
+    }
+}
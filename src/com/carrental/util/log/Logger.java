@@ -0,0 +1,52 @@
+package com.carrental.util.log;
+
+/**
+ * Named logger handed out by {@link Log#get(Class)}.
+ *
+ * Fields are passed as alternating key/value arguments after the message and
+ * rendered as key=value pairs, e.g.
+ * {@code log.info("Booking created", "id", id, "carId", carId)}. Calls below
+ * the configured level return immediately; the rest enqueue an event and
+ * return without doing any I/O.
+ */
+public final class Logger {
+    private final String name;
+
+    Logger(String name) {
+        this.name = name;
+    }
+
+    public boolean isDebugEnabled() {
+        return Log.isEnabled(LogLevel.DEBUG);
+    }
+
+    public void debug(String message, Object... fields) {
+        log(LogLevel.DEBUG, message, null, fields);
+    }
+
+    public void info(String message, Object... fields) {
+        log(LogLevel.INFO, message, null, fields);
+    }
+
+    public void warn(String message, Object... fields) {
+        log(LogLevel.WARN, message, null, fields);
+    }
+
+    public void warn(String message, Throwable error, Object... fields) {
+        log(LogLevel.WARN, message, error, fields);
+    }
+
+    public void error(String message, Object... fields) {
+        log(LogLevel.ERROR, message, null, fields);
+    }
+
+    public void error(String message, Throwable error, Object... fields) {
+        log(LogLevel.ERROR, message, error, fields);
+    }
+
+    private void log(LogLevel level, String message, Throwable error, Object[] fields) {
+        if (Log.isEnabled(level)) {
+            Log.enqueue(new LogEvent(level, name, message, fields, error));
+        }
+    }
+}
@@ -0,0 +1,955 @@
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.reflect.Method;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Open-model load generator for a running CarRental instance.
+ *
+ * Sessions arrive at a fixed average rate whether or not earlier ones have
+ * finished, the way real users do. Each arrival is one scenario from the mix:
+ * - browse: the catalog, a listing page, a search or a quote.
+ * - signup: register, then log in.
+ * - login: log in as one of the generated users.
+ * - book: quote, then book a car for a realistic period.
+ * - admin: list pending bookings, or request payment for one the generator
+ *   created.
+ *
+ * Every request is timed from the moment it was scheduled to start, not from
+ * when it was sent, so time spent waiting behind a slow server counts. This
+ * corrects for coordinated omission. The time from the actual send is
+ * reported next to it as the service time. An arrival dropped at
+ * --max-in-flight is charged to the endpoint its scenario starts with as a
+ * failure that took the full --timeout, so a saturated generator shows up
+ * in the error rates and percentiles instead of vanishing from them.
+ *
+ * Results per endpoint: throughput, status counts, error rate (5xx,
+ * timeouts, connection failures and dropped arrivals) and latency
+ * percentiles from log-linear histograms with under 1% error. A JSON report
+ * is written as well. Runs on virtual threads on Java 21+ and on a thread
+ * pool on older JVMs.
+ *
+ * Usage: java tools/LoadGenerator.java [--url http://localhost:8080]
+ *   [--rate 50] [--duration 60] [--warmup 10] [--arrival poisson|uniform]
+ *   [--mix browse=70,login=8,signup=2,book=15,admin=5] [--users 20]
+ *   [--timeout 10] [--max-in-flight 10000] [--seed 1] [--hdr]
+ *   [--out loadgen-report.json] [--admin-email admin@example.com]
+ *   [--admin-password admin]
+ *
+ * Start the server with -Dcarrental.ratelimit.enabled=false, or raised
+ * limits, unless the rate limits are what is being tested. Rate-limited
+ * requests are counted separately.
+ */
+public class LoadGenerator {
+
+    private static final Pattern ID = Pattern.compile("\"id\"\\s*:\\s*(\\d+)");
+    private static final Pattern NAME = Pattern.compile("\"name\"\\s*:\\s*\"([^\"]*)\"");
+
+    private final Options options;
+    private final HttpClient http;
+    private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+    private final List<Integer> carIds = new ArrayList<>();
+    private final List<String> searchWords = new ArrayList<>();
+    private final List<Session> users = new ArrayList<>();
+    private final ConcurrentLinkedQueue<Integer> createdBookings = new ConcurrentLinkedQueue<>();
+    private final String runId = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong signups = new AtomicLong();
+    private final LongAdder scheduled = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder finished = new LongAdder();
+    private Session admin;
+    private boolean virtualThreads;
+
+    public static void main(String[] args) throws Exception {
+        Options options;
+        try {
+            options = Options.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("See the comment at the top of tools/LoadGenerator.java for usage");
+            System.exit(2);
+            return;
+        }
+        new LoadGenerator(options).run();
+    }
+
+    LoadGenerator(Options options) {
+        this.options = options;
+        this.http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(options.timeoutSeconds))
+                .build();
+    }
+
+    void run() throws Exception {
+        setUp();
+        ExecutorService executor = createExecutor();
+        System.out.printf("Running %s arrivals at %.1f/s for %ds (+%ds warmup) on %s%n", options.arrival,
+                options.rate, options.durationSeconds, options.warmupSeconds,
+                virtualThreads ? "virtual threads" : "a thread pool");
+
+        Random random = new Random(options.seed);
+        Semaphore inFlight = new Semaphore(options.maxInFlight);
+        long intervalNanos = (long) (1_000_000_000L / options.rate);
+        long start = System.nanoTime() + 100_000_000L;
+        long measureFrom = start + TimeUnit.SECONDS.toNanos(options.warmupSeconds);
+        long end = measureFrom + TimeUnit.SECONDS.toNanos(options.durationSeconds);
+        long nextProgress = start + TimeUnit.SECONDS.toNanos(5);
+
+        long next = start;
+        while (next < end) {
+            parkUntil(next);
+            long intended = next;
+            boolean measured = intended >= measureFrom;
+            String scenario = options.pick(random.nextDouble());
+            if (measured) {
+                scheduled.increment();
+            }
+            if (!inFlight.tryAcquire()) {
+                // Past the in-flight cap the generator itself is the bottleneck; don't queue, but
+                // don't omit it either: it counts as a request that timed out
+                if (measured) {
+                    dropped.increment();
+                    endpoints.computeIfAbsent(firstEndpoint(scenario), Endpoint::new)
+                            .recordDropped(TimeUnit.SECONDS.toNanos(options.timeoutSeconds));
+                }
+            } else {
+                executor.execute(() -> {
+                    try {
+                        runScenario(scenario, intended, measured);
+                    } finally {
+                        inFlight.release();
+                        if (measured) {
+                            finished.increment();
+                        }
+                    }
+                });
+            }
+            next += "uniform".equals(options.arrival) ? intervalNanos
+                    : (long) (-Math.log(1 - random.nextDouble()) * intervalNanos);
+            long now = System.nanoTime();
+            if (now >= nextProgress) {
+                System.out.printf("  %3ds  scheduled %d  finished %d  in flight %d  dropped %d%n",
+                        TimeUnit.NANOSECONDS.toSeconds(now - start), scheduled.sum(), finished.sum(),
+                        options.maxInFlight - inFlight.availablePermits(), dropped.sum());
+                nextProgress += TimeUnit.SECONDS.toNanos(5);
+            }
+        }
+
+        executor.shutdown();
+        if (!executor.awaitTermination(options.timeoutSeconds * 2L + 5, TimeUnit.SECONDS)) {
+            System.out.println("Some requests were still running when the report was written");
+            executor.shutdownNow();
+        }
+        report(System.out);
+        Files.write(Paths.get(options.out), toJson().getBytes(StandardCharsets.UTF_8));
+        System.out.println("Report written to " + options.out);
+    }
+
+    // ---- setup ----
+
+    private void setUp() throws IOException, InterruptedException {
+        HttpResponse<String> cars = setupRequest(get("/api/cars"));
+        Matcher ids = ID.matcher(cars.body());
+        while (ids.find()) {
+            carIds.add(Integer.parseInt(ids.group(1)));
+        }
+        Matcher names = NAME.matcher(cars.body());
+        while (names.find()) {
+            String word = names.group(1).trim().split("\\s+")[0];
+            if (word.length() > 1) {
+                searchWords.add(word.toLowerCase());
+            }
+        }
+        if (carIds.isEmpty()) {
+            throw new IllegalStateException("No cars at " + options.url + "/api/cars; add some first");
+        }
+        if (searchWords.isEmpty()) {
+            searchWords.add("car");
+        }
+
+        if (options.weight("admin") > 0) {
+            admin = login(options.adminEmail, options.adminPassword);
+            if (admin == null) {
+                throw new IllegalStateException("Admin login failed for " + options.adminEmail);
+            }
+        }
+        if (options.weight("book") > 0 || options.weight("login") > 0) {
+            for (int i = 0; i < options.users; i++) {
+                String email = "load-" + runId + "-u" + i + "@example.com";
+                register(email);
+                Session session = login(email, Options.USER_PASSWORD);
+                if (session == null) {
+                    throw new IllegalStateException("Could not log in generated user " + email);
+                }
+                users.add(session);
+            }
+        }
+        System.out.printf("Setup: %d cars, %d users%s%n", carIds.size(), users.size(),
+                admin != null ? ", admin logged in" : "");
+    }
+
+    private void register(String email) throws IOException, InterruptedException {
+        setupRequest(post("/api/auth/register", null, "{\"name\":\"Load " + email.substring(0, email.indexOf('@'))
+                + "\",\"email\":\"" + email + "\",\"password\":\"" + Options.USER_PASSWORD + "\"}"));
+    }
+
+    private Session login(String email, String password) throws IOException, InterruptedException {
+        HttpResponse<String> resp = setupRequest(post("/api/auth/login", null,
+                "{\"email\":\"" + email + "\",\"password\":\"" + password + "\"}"));
+        String cookie = sessionCookie(resp);
+        return resp.statusCode() == 200 && cookie != null ? new Session(email, cookie) : null;
+    }
+
+    // Setup requests wait out rate limits instead of failing the run
+    private HttpResponse<String> setupRequest(HttpRequest request) throws IOException, InterruptedException {
+        while (true) {
+            HttpResponse<String> resp = http.send(request, HttpResponse.BodyHandlers.ofString());
+            if (resp.statusCode() != 429) {
+                return resp;
+            }
+            long seconds = resp.headers().firstValue("Retry-After").map(Long::parseLong).orElse(1L);
+            System.out.printf("Setup is rate limited, waiting %ds (start the server with "
+                    + "-Dcarrental.ratelimit.enabled=false to skip this)%n", seconds);
+            Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+        }
+    }
+
+    private static String sessionCookie(HttpResponse<String> resp) {
+        for (String header : resp.headers().allValues("set-cookie")) {
+            if (header.startsWith("JSESSIONID=")) {
+                int semicolon = header.indexOf(';');
+                return semicolon >= 0 ? header.substring(0, semicolon) : header;
+            }
+        }
+        return null;
+    }
+
+    private ExecutorService createExecutor() {
+        // Looked up reflectively so the tool also runs on Java 17
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            virtualThreads = true;
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, "loadgen");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    // ---- scenarios ----
+
+    private void runScenario(String scenario, long intended, boolean measured) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        switch (scenario) {
+        case "browse":
+            browse(random, intended, measured);
+            break;
+        case "signup":
+            String email = "load-" + runId + "-s" + signups.incrementAndGet() + "@example.com";
+            HttpResponse<String> registered = send("POST /api/auth/register", post("/api/auth/register", null,
+                    "{\"name\":\"Load signup\",\"email\":\"" + email + "\",\"password\":\""
+                            + Options.USER_PASSWORD + "\"}"), intended, measured);
+            if (registered != null && registered.statusCode() == 201) {
+                send("POST /api/auth/login", loginRequest(email, Options.USER_PASSWORD), System.nanoTime(), measured);
+            }
+            break;
+        case "login":
+            Session user = users.get(random.nextInt(users.size()));
+            send("POST /api/auth/login", loginRequest(user.email, Options.USER_PASSWORD), intended, measured);
+            break;
+        case "book":
+            book(random, intended, measured);
+            break;
+        case "admin":
+            Integer bookingId = random.nextBoolean() ? createdBookings.poll() : null;
+            if (bookingId != null) {
+                send("POST /api/bookings/{id}/request-payment",
+                        post("/api/bookings/" + bookingId + "/request-payment", admin, ""), intended, measured);
+            } else {
+                send("GET /api/bookings (admin)", get("/api/bookings?status=PENDING&limit=20", admin), intended,
+                        measured);
+            }
+            break;
+        default:
+            throw new IllegalStateException("Unknown scenario: " + scenario);
+        }
+    }
+
+    // Where a scenario's first request goes; names match the ones runScenario sends under
+    private String firstEndpoint(String scenario) {
+        switch (scenario) {
+        case "browse":
+            String[] browse = { "GET /api/cars", "GET /api/cars?sort&limit", "GET /api/cars/search", "GET /api/quote" };
+            return browse[ThreadLocalRandom.current().nextInt(browse.length)];
+        case "signup":
+            return "POST /api/auth/register";
+        case "login":
+            return "POST /api/auth/login";
+        case "book":
+            return "GET /api/quote";
+        default:
+            return "GET /api/bookings (admin)";
+        }
+    }
+
+    private void browse(ThreadLocalRandom random, long intended, boolean measured) {
+        switch (random.nextInt(4)) {
+        case 0:
+            send("GET /api/cars", get("/api/cars"), intended, measured);
+            break;
+        case 1:
+            String[] sorts = { "price", "-price", "name" };
+            send("GET /api/cars?sort&limit", get("/api/cars?sort=" + sorts[random.nextInt(sorts.length)]
+                    + "&limit=24"), intended, measured);
+            break;
+        case 2:
+            String word = searchWords.get(random.nextInt(searchWords.size()));
+            // Typing: the last word is often still a prefix
+            String q = random.nextInt(3) == 0 ? word.substring(0, Math.max(2, word.length() / 2)) : word;
+            send("GET /api/cars/search", get("/api/cars/search?q=" + URLEncoder.encode(q, StandardCharsets.UTF_8)),
+                    intended, measured);
+            break;
+        default:
+            LocalDateTime[] period = period(random);
+            send("GET /api/quote", get(quotePath(randomCar(random), period)), intended, measured);
+            break;
+        }
+    }
+
+    private void book(ThreadLocalRandom random, long intended, boolean measured) {
+        Session user = users.get(random.nextInt(users.size()));
+        int carId = randomCar(random);
+        LocalDateTime[] period = period(random);
+        HttpResponse<String> quote = send("GET /api/quote", get(quotePath(carId, period)), intended, measured);
+        if (quote == null || quote.statusCode() != 200) {
+            return;
+        }
+        int year = 1960 + random.nextInt(40);
+        String body = "{\"carId\":\"" + carId + "\",\"pickupDateTime\":\"" + period[0]
+                + "\",\"dropoffDateTime\":\"" + period[1] + "\",\"driverDob\":\"" + year + "-0"
+                + (1 + random.nextInt(9)) + "-1" + random.nextInt(10) + "\"}";
+        HttpRequest request = HttpRequest.newBuilder(uri("/api/bookings"))
+                .timeout(Duration.ofSeconds(options.timeoutSeconds))
+                .header("Content-Type", "application/json")
+                .header("Cookie", user.cookie)
+                .header("Idempotency-Key", UUID.randomUUID().toString())
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        HttpResponse<String> created = send("POST /api/bookings", request, System.nanoTime(), measured);
+        if (created != null && created.statusCode() == 201) {
+            Matcher id = ID.matcher(created.body());
+            if (id.find()) {
+                createdBookings.add(Integer.parseInt(id.group(1)));
+            }
+        }
+    }
+
+    private int randomCar(ThreadLocalRandom random) {
+        return carIds.get(random.nextInt(carIds.size()));
+    }
+
+    // Mostly short rentals starting within a month, some up to two weeks or four months out;
+    // pickup and dropoff inside the 09:00-21:00 desk hours
+    private static LocalDateTime[] period(ThreadLocalRandom random) {
+        double lead = random.nextDouble();
+        int daysAhead = 1 + (int) (lead * lead * 120);
+        int[] lengths = { 1, 1, 1, 2, 2, 2, 3, 3, 4, 5, 7, 7, 10, 14 };
+        int days = lengths[random.nextInt(lengths.length)];
+        int hour = 9 + random.nextInt(9);
+        LocalDateTime pickup = LocalDate.now().plusDays(daysAhead).atTime(hour, random.nextBoolean() ? 0 : 30);
+        LocalDateTime dropoff = pickup.plusDays(days).withHour(Math.min(21, hour + random.nextInt(4)));
+        return new LocalDateTime[] { pickup, dropoff };
+    }
+
+    private static String quotePath(int carId, LocalDateTime[] period) {
+        return "/api/quote?carId=" + carId + "&pickupDateTime=" + period[0] + "&dropoffDateTime=" + period[1];
+    }
+
+    // ---- requests ----
+
+    private URI uri(String path) {
+        return URI.create(options.url + path);
+    }
+
+    private HttpRequest get(String path) {
+        return get(path, null);
+    }
+
+    private HttpRequest get(String path, Session session) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri(path))
+                .timeout(Duration.ofSeconds(options.timeoutSeconds)).GET();
+        if (session != null) {
+            builder.header("Cookie", session.cookie);
+        }
+        return builder.build();
+    }
+
+    private HttpRequest post(String path, Session session, String json) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri(path))
+                .timeout(Duration.ofSeconds(options.timeoutSeconds))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json));
+        if (session != null) {
+            builder.header("Cookie", session.cookie);
+        }
+        return builder.build();
+    }
+
+    private HttpRequest loginRequest(String email, String password) {
+        return post("/api/auth/login", null, "{\"email\":\"" + email + "\",\"password\":\"" + password + "\"}");
+    }
+
+    // Sends and records one request; latency counts from the intended start. Null on a transport failure
+    private HttpResponse<String> send(String name, HttpRequest request, long intended, boolean measured) {
+        Endpoint endpoint = endpoints.computeIfAbsent(name, Endpoint::new);
+        long sent = System.nanoTime();
+        try {
+            HttpResponse<String> resp = http.send(request, HttpResponse.BodyHandlers.ofString());
+            if (measured) {
+                long done = System.nanoTime();
+                endpoint.record(resp.statusCode(), done - intended, done - sent);
+            }
+            return resp;
+        } catch (IOException e) {
+            if (measured) {
+                long done = System.nanoTime();
+                endpoint.recordFailure(done - intended, done - sent);
+            }
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private static void parkUntil(long deadline) {
+        long wait;
+        while ((wait = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(wait);
+        }
+    }
+
+    // ---- report ----
+
+    private List<Endpoint> sortedEndpoints() {
+        return new ArrayList<>(new TreeMap<>(endpoints).values());
+    }
+
+    private void report(PrintStream out) {
+        double seconds = options.durationSeconds;
+        out.println();
+        out.printf("Scheduled %d sessions, %d dropped at the in-flight cap%n", scheduled.sum(), dropped.sum());
+        if (dropped.sum() > 0) {
+            out.printf("Dropped sessions count as %ds timeouts on their first endpoint; the generator could not "
+                    + "keep up, so raise --max-in-flight or lower --rate%n", options.timeoutSeconds);
+        }
+        out.println("Response time in ms, from the scheduled start (coordinated omission corrected):");
+        out.printf("%-42s %8s %8s %7s %6s %9s %9s %9s %9s %9s %9s%n", "endpoint", "count", "req/s", "err%",
+                "429s", "p50", "p90", "p99", "p99.9", "max", "svc p99");
+        for (Endpoint e : sortedEndpoints()) {
+            long count = e.count();
+            out.printf("%-42s %8d %8.1f %6.2f%% %6d %9.2f %9.2f %9.2f %9.2f %9.2f %9.2f%n", e.name, count,
+                    count / seconds, e.errorRate() * 100, e.rateLimited.sum(), ms(e.response.percentile(0.5)),
+                    ms(e.response.percentile(0.9)), ms(e.response.percentile(0.99)),
+                    ms(e.response.percentile(0.999)), ms(e.response.max()), ms(e.service.percentile(0.99)));
+        }
+        if (options.hdr) {
+            for (Endpoint e : sortedEndpoints()) {
+                out.println();
+                out.println(e.name + " response time distribution:");
+                out.printf("%12s %14s %10s %14s%n", "Value(ms)", "Percentile", "TotalCount", "1/(1-Percentile)");
+                for (double[] row : e.response.distribution()) {
+                    out.printf("%12.3f %14.12f %10d %14.2f%n", row[0] / 1000.0, row[1], (long) row[2],
+                            row[1] < 1 ? 1 / (1 - row[1]) : Double.POSITIVE_INFINITY);
+                }
+            }
+        }
+    }
+
+    private String toJson() {
+        Json json = new Json();
+        json.begin()
+                .field("target", options.url)
+                .field("finishedAt", Instant.now().toString())
+                .field("arrival", options.arrival)
+                .field("targetRate", options.rate)
+                .field("durationSeconds", options.durationSeconds)
+                .field("warmupSeconds", options.warmupSeconds)
+                .field("virtualThreads", virtualThreads)
+                .name("mix").begin();
+        for (Map.Entry<String, Double> e : options.mix.entrySet()) {
+            json.field(e.getKey(), e.getValue());
+        }
+        json.end().name("sessions").begin()
+                .field("scheduled", scheduled.sum())
+                .field("finished", finished.sum())
+                .field("dropped", dropped.sum())
+                .field("perSecond", finished.sum() / (double) options.durationSeconds)
+                .end()
+                .name("endpoints").beginArray();
+        for (Endpoint e : sortedEndpoints()) {
+            long count = e.count();
+            json.begin()
+                    .field("name", e.name)
+                    .field("count", count)
+                    .field("throughput", count / (double) options.durationSeconds)
+                    .field("errors", e.errors())
+                    .field("errorRate", e.errorRate())
+                    .field("rateLimited", e.rateLimited.sum())
+                    .field("transportFailures", e.failures.sum())
+                    .field("dropped", e.dropped.sum())
+                    .name("statuses").begin();
+            for (Map.Entry<Integer, LongAdder> s : new TreeMap<>(e.statuses).entrySet()) {
+                json.field(Integer.toString(s.getKey()), s.getValue().sum());
+            }
+            json.end();
+            percentiles(json, "responseTimeMs", e.response);
+            percentiles(json, "serviceTimeMs", e.service);
+            json.name("responseTimeDistribution").beginArray();
+            for (double[] row : e.response.distribution()) {
+                json.beginArray().value(row[0] / 1000.0).value(row[1]).value((long) row[2]).endArray();
+            }
+            json.endArray().end();
+        }
+        json.endArray().end();
+        return json.toString();
+    }
+
+    private static void percentiles(Json json, String name, Histogram h) {
+        json.name(name).begin()
+                .field("mean", ms(h.mean()))
+                .field("p50", ms(h.percentile(0.5)))
+                .field("p90", ms(h.percentile(0.9)))
+                .field("p99", ms(h.percentile(0.99)))
+                .field("p99.9", ms(h.percentile(0.999)))
+                .field("max", ms(h.max()))
+                .end();
+    }
+
+    private static double ms(double micros) {
+        return Math.round(micros) / 1000.0;
+    }
+
+    // ---- types ----
+
+    static final class Session {
+        final String email;
+        final String cookie;
+
+        Session(String email, String cookie) {
+            this.email = email;
+            this.cookie = cookie;
+        }
+    }
+
+    static final class Endpoint {
+        final String name;
+        final Histogram response = new Histogram();
+        final Histogram service = new Histogram();
+        final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+        final LongAdder serverErrors = new LongAdder();
+        final LongAdder failures = new LongAdder();
+        final LongAdder rateLimited = new LongAdder();
+        final LongAdder dropped = new LongAdder();
+
+        Endpoint(String name) {
+            this.name = name;
+        }
+
+        void record(int status, long responseNanos, long serviceNanos) {
+            response.recordNanos(responseNanos);
+            service.recordNanos(serviceNanos);
+            statuses.computeIfAbsent(status, s -> new LongAdder()).increment();
+            if (status >= 500) {
+                serverErrors.increment();
+            } else if (status == 429) {
+                rateLimited.increment();
+            }
+        }
+
+        void recordFailure(long responseNanos, long serviceNanos) {
+            response.recordNanos(responseNanos);
+            service.recordNanos(serviceNanos);
+            failures.increment();
+        }
+
+        // Never sent, so there is no service time
+        void recordDropped(long timeoutNanos) {
+            response.recordNanos(timeoutNanos);
+            dropped.increment();
+        }
+
+        long count() {
+            return response.count();
+        }
+
+        long errors() {
+            return serverErrors.sum() + failures.sum() + dropped.sum();
+        }
+
+        double errorRate() {
+            long count = count();
+            return count > 0 ? errors() / (double) count : 0;
+        }
+    }
+
+    /**
+     * Log-linear histogram of microseconds in the style of HdrHistogram: each
+     * power of two is split into 128 buckets, so values are kept to within
+     * 0.8%. Recording is lock-free and allocation-free.
+     */
+    static final class Histogram {
+        private static final int SUB_BITS = 7;
+        private static final int SUB_BUCKETS = 1 << SUB_BITS;
+        private static final int MAX_EXPONENT = 40;
+        private static final int BUCKETS = (MAX_EXPONENT - SUB_BITS + 2) * SUB_BUCKETS;
+
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+
+        void recordNanos(long nanos) {
+            long micros = Math.max(0, nanos / 1000);
+            counts.incrementAndGet(bucketOf(micros));
+            count.increment();
+            sum.add(micros);
+            long seen = max.get();
+            while (micros > seen && !max.compareAndSet(seen, micros)) {
+                seen = max.get();
+            }
+        }
+
+        long count() {
+            return count.sum();
+        }
+
+        double mean() {
+            long n = count.sum();
+            return n > 0 ? sum.sum() / (double) n : 0;
+        }
+
+        long max() {
+            return max.get();
+        }
+
+        /** The value at quantile q (0 to 1), as the middle of its bucket. */
+        double percentile(double q) {
+            long total = count();
+            if (total == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(q * total));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts.get(i);
+                if (seen >= rank) {
+                    return Math.min(middleOf(i), max());
+                }
+            }
+            return max();
+        }
+
+        /**
+         * Rows of {value, percentile, total count} at HdrHistogram's reporting
+         * ticks: five per halving of the distance to 100%.
+         */
+        List<double[]> distribution() {
+            List<double[]> rows = new ArrayList<>();
+            long total = count();
+            if (total == 0) {
+                return rows;
+            }
+            for (int half = 0; ; half++) {
+                double from = 1 - Math.pow(0.5, half);
+                double to = 1 - Math.pow(0.5, half + 1);
+                for (int tick = 0; tick < 5; tick++) {
+                    double q = from + (to - from) * tick / 5;
+                    rows.add(new double[] { percentile(q), q, Math.ceil(q * total) });
+                }
+                if (1 / (1 - to) > total) {
+                    break;
+                }
+            }
+            rows.add(new double[] { max(), 1.0, total });
+            return rows;
+        }
+
+        static int bucketOf(long micros) {
+            if (micros < SUB_BUCKETS) {
+                return (int) micros;
+            }
+            int exponent = Math.min(63 - Long.numberOfLeadingZeros(micros), MAX_EXPONENT);
+            int shift = exponent - SUB_BITS;
+            int sub = (int) ((micros >>> shift) & (SUB_BUCKETS - 1));
+            return Math.min((shift + 1) * SUB_BUCKETS + sub, BUCKETS - 1);
+        }
+
+        static double middleOf(int bucket) {
+            if (bucket < SUB_BUCKETS) {
+                return bucket;
+            }
+            int shift = bucket / SUB_BUCKETS - 1;
+            long low = ((long) (SUB_BUCKETS + bucket % SUB_BUCKETS)) << shift;
+            return low + ((1L << shift) - 1) / 2.0;
+        }
+    }
+
+    /** Just enough of a JSON writer for the report. */
+    static final class Json {
+        private final StringBuilder out = new StringBuilder();
+        private boolean first = true;
+
+        Json begin() {
+            comma();
+            out.append('{');
+            first = true;
+            return this;
+        }
+
+        Json end() {
+            out.append('}');
+            first = false;
+            return this;
+        }
+
+        Json beginArray() {
+            comma();
+            out.append('[');
+            first = true;
+            return this;
+        }
+
+        Json endArray() {
+            out.append(']');
+            first = false;
+            return this;
+        }
+
+        Json name(String name) {
+            comma();
+            string(name);
+            out.append(':');
+            first = true;
+            return this;
+        }
+
+        Json field(String name, String value) {
+            return name(name).value(value);
+        }
+
+        Json field(String name, double value) {
+            return name(name).value(value);
+        }
+
+        Json field(String name, long value) {
+            return name(name).value(value);
+        }
+
+        Json field(String name, boolean value) {
+            name(name);
+            out.append(value);
+            first = false;
+            return this;
+        }
+
+        Json value(String value) {
+            comma();
+            string(value);
+            first = false;
+            return this;
+        }
+
+        Json value(double value) {
+            comma();
+            out.append(Double.isFinite(value) ? Double.toString(value) : "null");
+            first = false;
+            return this;
+        }
+
+        Json value(long value) {
+            comma();
+            out.append(value);
+            first = false;
+            return this;
+        }
+
+        private void comma() {
+            if (!first) {
+                out.append(',');
+            }
+        }
+
+        private void string(String s) {
+            out.append('"');
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                if (c == '"' || c == '\\') {
+                    out.append('\\').append(c);
+                } else if (c < 0x20) {
+                    out.append(String.format("\\u%04x", (int) c));
+                } else {
+                    out.append(c);
+                }
+            }
+            out.append('"');
+        }
+
+        @Override
+        public String toString() {
+            return out.toString();
+        }
+    }
+
+    static final class Options {
+        static final String USER_PASSWORD = "load-test-password";
+
+        String url = "http://localhost:8080";
+        double rate = 50;
+        int durationSeconds = 60;
+        int warmupSeconds = 10;
+        String arrival = "poisson";
+        final Map<String, Double> mix = new LinkedHashMap<>();
+        int users = 20;
+        int timeoutSeconds = 10;
+        int maxInFlight = 10_000;
+        long seed = 1;
+        boolean hdr;
+        String out = "loadgen-report.json";
+        String adminEmail = "admin@example.com";
+        String adminPassword = "admin";
+        private double totalWeight;
+
+        static Options parse(String[] args) {
+            Options o = new Options();
+            String mix = "browse=70,login=8,signup=2,book=15,admin=5";
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                if ("--hdr".equals(arg)) {
+                    o.hdr = true;
+                    continue;
+                }
+                if (i + 1 >= args.length) {
+                    throw new IllegalArgumentException("Missing value for " + arg);
+                }
+                String value = args[++i];
+                switch (arg) {
+                case "--url":
+                    o.url = value.endsWith("/") ? value.substring(0, value.length() - 1) : value;
+                    break;
+                case "--rate":
+                    o.rate = Double.parseDouble(value);
+                    break;
+                case "--duration":
+                    o.durationSeconds = Integer.parseInt(value);
+                    break;
+                case "--warmup":
+                    o.warmupSeconds = Integer.parseInt(value);
+                    break;
+                case "--arrival":
+                    o.arrival = value;
+                    break;
+                case "--mix":
+                    mix = value;
+                    break;
+                case "--users":
+                    o.users = Integer.parseInt(value);
+                    break;
+                case "--timeout":
+                    o.timeoutSeconds = Integer.parseInt(value);
+                    break;
+                case "--max-in-flight":
+                    o.maxInFlight = Integer.parseInt(value);
+                    break;
+                case "--seed":
+                    o.seed = Long.parseLong(value);
+                    break;
+                case "--out":
+                    o.out = value;
+                    break;
+                case "--admin-email":
+                    o.adminEmail = value;
+                    break;
+                case "--admin-password":
+                    o.adminPassword = value;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + arg);
+                }
+            }
+            for (String part : mix.split(",")) {
+                String[] kv = part.split("=");
+                if (kv.length != 2 || !kv[0].trim().matches("browse|signup|login|book|admin")) {
+                    throw new IllegalArgumentException("Bad --mix entry: " + part);
+                }
+                double weight = Double.parseDouble(kv[1].trim());
+                if (weight > 0) {
+                    o.mix.put(kv[0].trim(), weight);
+                    o.totalWeight += weight;
+                }
+            }
+            if (o.mix.isEmpty() || o.rate <= 0 || o.durationSeconds <= 0 || o.warmupSeconds < 0
+                    || o.users < 1 || o.maxInFlight < 1 || o.timeoutSeconds < 1) {
+                throw new IllegalArgumentException("--mix, --rate, --duration, --users, --timeout and "
+                        + "--max-in-flight must be positive");
+            }
+            if (!"poisson".equals(o.arrival) && !"uniform".equals(o.arrival)) {
+                throw new IllegalArgumentException("--arrival is poisson or uniform");
+            }
+            return o;
+        }
+
+        double weight(String scenario) {
+            return mix.getOrDefault(scenario, 0.0);
+        }
+
+        /** The scenario for a uniform draw in [0, 1). */
+        String pick(double draw) {
+            double target = draw * totalWeight;
+            String last = null;
+            for (Map.Entry<String, Double> e : mix.entrySet()) {
+                last = e.getKey();
+                target -= e.getValue();
+                if (target < 0) {
+                    return last;
+                }
+            }
+            return last;
+        }
+    }
+}